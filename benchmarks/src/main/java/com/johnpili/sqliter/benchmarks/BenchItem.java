@@ -0,0 +1,64 @@
+package com.johnpili.sqliter.benchmarks;
+
+import com.johnpili.sqliter.SqliteObjectAssembler;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Row of the benchmark table
+ *
+ * @author John Pili
+ */
+public class BenchItem {
+    public static final SqliteObjectAssembler<BenchItem> ASSEMBLER = new Assembler();
+
+    private long id;
+    private String name;
+    private double amount;
+    private int category;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public void setAmount(double amount) {
+        this.amount = amount;
+    }
+
+    public int getCategory() {
+        return category;
+    }
+
+    public void setCategory(int category) {
+        this.category = category;
+    }
+
+    private static final class Assembler implements SqliteObjectAssembler<BenchItem> {
+        @Override
+        public BenchItem assemble(ResultSet resultSet) throws SQLException {
+            BenchItem item = new BenchItem();
+            item.setId(resultSet.getLong(1));
+            item.setName(resultSet.getString(2));
+            item.setAmount(resultSet.getDouble(3));
+            item.setCategory(resultSet.getInt(4));
+            return item;
+        }
+    }
+}
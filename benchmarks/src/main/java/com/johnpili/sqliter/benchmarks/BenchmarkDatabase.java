@@ -0,0 +1,152 @@
+package com.johnpili.sqliter.benchmarks;
+
+import com.johnpili.sqliter.SqliteConfig;
+import com.johnpili.sqliter.SqlitePragmaProfile;
+import com.johnpili.sqliter.SqliteRepository;
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.io.File;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+
+/**
+ * Creates and seeds the database a benchmark runs against. The kind selects the configuration under test:
+ * <ul>
+ * <li>file: file-backed, one connection per operation (the library default)</li>
+ * <li>file-pooled: file-backed, pooled with the balanced pragma profile</li>
+ * <li>memory: private in-memory database, pooled so every operation sees the same database</li>
+ * </ul>
+ *
+ * @author John Pili
+ */
+public class BenchmarkDatabase {
+    public static final String FILE = "file";
+    public static final String FILE_POOLED = "file-pooled";
+    public static final String MEMORY = "memory";
+
+    public static final int CATEGORIES = 100;
+
+    public static final String CREATE_TABLE = "CREATE TABLE IF NOT EXISTS bench_item (id INTEGER PRIMARY KEY, name TEXT NOT NULL, amount REAL NOT NULL, category INTEGER NOT NULL)";
+    public static final String CREATE_INDEX = "CREATE INDEX IF NOT EXISTS idx_bench_item_category ON bench_item (category)";
+    public static final String INSERT = "INSERT INTO bench_item (name, amount, category) VALUES (?, ?, ?)";
+    public static final String UPDATE = "UPDATE bench_item SET amount = ? WHERE id = ?";
+    public static final String GET_BY_ID = "SELECT id, name, amount, category FROM bench_item WHERE id = ?";
+    public static final String GET_BY_CATEGORY = "SELECT id, name, amount, category FROM bench_item WHERE category = ?";
+
+    private final String kind;
+    private final File file;
+    private final SqliteRepository sqliteRepository;
+
+    private BenchmarkDatabase(String kind, File file, SqliteRepository sqliteRepository) {
+        this.kind = kind;
+        this.file = file;
+        this.sqliteRepository = sqliteRepository;
+    }
+
+    /**
+     * This method creates a fresh database of the given kind seeded with rowCount rows
+     *
+     * @param kind     String
+     * @param rowCount int
+     * @return BenchmarkDatabase
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public static BenchmarkDatabase open(String kind, int rowCount) throws SQLException, SqliteDriverNotFoundException {
+        return open(kind, rowCount, sqliteConfig -> {
+        });
+    }
+
+    /**
+     * This method creates a fresh database of the given kind and lets the caller adjust the configuration
+     * before the repository is created
+     *
+     * @param kind       String
+     * @param rowCount   int
+     * @param configurer Consumer&lt;SqliteConfig&gt;
+     * @return BenchmarkDatabase
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public static BenchmarkDatabase open(String kind, int rowCount, Consumer<SqliteConfig> configurer)
+            throws SQLException, SqliteDriverNotFoundException {
+        SqliteConfig sqliteConfig;
+        File file = null;
+        if (MEMORY.equals(kind)) {
+            sqliteConfig = new SqliteConfig(":memory:");
+            sqliteConfig.setPooled(true);
+        } else if (FILE.equals(kind) || FILE_POOLED.equals(kind)) {
+            try {
+                file = File.createTempFile("sqliter-bench-", ".db");
+            } catch (java.io.IOException ioException) {
+                throw new SQLException("Cannot create the benchmark database file", ioException);
+            }
+            sqliteConfig = new SqliteConfig(file.getAbsolutePath());
+            if (FILE_POOLED.equals(kind)) {
+                sqliteConfig.setPooled(true);
+                sqliteConfig.setPragmaProfile(SqlitePragmaProfile.balanced());
+            }
+        } else {
+            throw new IllegalArgumentException("Unknown database kind: " + kind);
+        }
+
+        configurer.accept(sqliteConfig);
+        BenchmarkDatabase database = new BenchmarkDatabase(kind, file, new SqliteRepository(sqliteConfig));
+        database.seed(rowCount);
+        return database;
+    }
+
+    public String getKind() {
+        return kind;
+    }
+
+    public SqliteRepository getRepository() {
+        return sqliteRepository;
+    }
+
+    public static Map<Integer, Object> insertParameters(long sequence) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(1, "item-" + sequence);
+        parameters.put(2, sequence * 0.25d);
+        parameters.put(3, (int) (sequence % CATEGORIES));
+        return parameters;
+    }
+
+    public static Map<Integer, Object> parameters(Object first) {
+        Map<Integer, Object> parameters = new HashMap<>();
+        parameters.put(1, first);
+        return parameters;
+    }
+
+    public static Map<Integer, Object> parameters(Object first, Object second) {
+        Map<Integer, Object> parameters = parameters(first);
+        parameters.put(2, second);
+        return parameters;
+    }
+
+    /**
+     * Closes the repository and deletes the database file together with its WAL and shared memory files
+     */
+    public void close() {
+        sqliteRepository.close();
+        if (file != null) {
+            for (String suffix : new String[]{"", "-wal", "-shm", "-journal"}) {
+                new File(file.getAbsolutePath() + suffix).delete();
+            }
+        }
+    }
+
+    private void seed(int rowCount) throws SQLException, SqliteDriverNotFoundException {
+        sqliteRepository.createTable(CREATE_TABLE);
+        sqliteRepository.createTable(CREATE_INDEX);
+        List<Map<Integer, Object>> rows = new ArrayList<>(rowCount);
+        for (int i = 0; i < rowCount; i++) {
+            rows.add(insertParameters(i));
+        }
+        sqliteRepository.updateBatch(INSERT, rows);
+    }
+}
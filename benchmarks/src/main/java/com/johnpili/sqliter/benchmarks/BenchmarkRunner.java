@@ -0,0 +1,49 @@
+package com.johnpili.sqliter.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Runs the benchmarks once per thread count and writes one JSON result file per run, so results of
+ * different releases can be compared with any JMH result tool. Every regular JMH command line option is accepted.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>sqliter.threads: comma separated thread counts, default 1,4</li>
+ * <li>sqliter.results: directory for the result files, default target/jmh</li>
+ * </ul>
+ *
+ * @author John Pili
+ */
+public class BenchmarkRunner {
+    public static void main(String[] args) throws RunnerException, CommandLineOptionException, IOException {
+        CommandLineOptions commandLineOptions = new CommandLineOptions(args);
+        if (commandLineOptions.shouldHelp() || commandLineOptions.shouldList()) {
+            org.openjdk.jmh.Main.main(args);
+            return;
+        }
+
+        File resultDirectory = new File(System.getProperty("sqliter.results", "target/jmh"));
+        if (!resultDirectory.isDirectory() && !resultDirectory.mkdirs()) {
+            throw new IllegalStateException("Cannot create " + resultDirectory);
+        }
+
+        for (String threads : System.getProperty("sqliter.threads", "1,4").split(",")) {
+            int threadCount = Integer.parseInt(threads.trim());
+            ChainedOptionsBuilder options = new OptionsBuilder()
+                    .parent(commandLineOptions)
+                    .threads(threadCount)
+                    .resultFormat(ResultFormatType.JSON)
+                    .result(new File(resultDirectory, "sqliter-threads-" + threadCount + ".json").getPath());
+            new Runner(options.build()).run();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.johnpili.sqliter.benchmarks;
+
+import com.johnpili.sqliter.SqliteRepository;
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+import org.openjdk.jmh.annotations.*;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Readers and writers running against the same database at the same time. Each group fixes the
+ * reader to writer ratio; the thread count passed to {@link BenchmarkRunner} scales the number of groups.
+ * JMH reports the read and write throughput of every group separately
+ *
+ * @author John Pili
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ConcurrentMixBenchmark {
+    @Param({BenchmarkDatabase.FILE, BenchmarkDatabase.FILE_POOLED, BenchmarkDatabase.MEMORY})
+    public String database;
+
+    @Param({"1000", "100000"})
+    public int rowCount;
+
+    private BenchmarkDatabase benchmarkDatabase;
+    private SqliteRepository sqliteRepository;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, SqliteDriverNotFoundException {
+        benchmarkDatabase = BenchmarkDatabase.open(database, rowCount);
+        sqliteRepository = benchmarkDatabase.getRepository();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        benchmarkDatabase.close();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(3)
+    public BenchItem readHeavyRead() throws SQLException, SqliteDriverNotFoundException {
+        return read();
+    }
+
+    @Benchmark
+    @Group("readHeavy")
+    @GroupThreads(1)
+    public int readHeavyWrite() throws SQLException, SqliteDriverNotFoundException {
+        return write();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public BenchItem balancedRead() throws SQLException, SqliteDriverNotFoundException {
+        return read();
+    }
+
+    @Benchmark
+    @Group("balanced")
+    @GroupThreads(2)
+    public int balancedWrite() throws SQLException, SqliteDriverNotFoundException {
+        return write();
+    }
+
+    private BenchItem read() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.getSingle(BenchmarkDatabase.GET_BY_ID, BenchmarkDatabase.parameters(randomId()), BenchItem.ASSEMBLER);
+    }
+
+    private int write() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.update(BenchmarkDatabase.UPDATE,
+                BenchmarkDatabase.parameters(ThreadLocalRandom.current().nextDouble(), randomId()));
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rowCount + 1L);
+    }
+}
@@ -0,0 +1,165 @@
+package com.johnpili.sqliter.benchmarks;
+
+import com.johnpili.sqliter.SqliteLatencyHistogram;
+import com.johnpili.sqliter.SqliteRepository;
+import com.johnpili.sqliter.SqliteRetryPolicy;
+import com.johnpili.sqliter.SqliteRetryStatistics;
+import com.johnpili.sqliter.SqliteTransactionMode;
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Multi-threaded stress run that measures how often operations fail with SQLITE_BUSY and what contention does
+ * to tail latency. Every reader/writer ratio runs against every database kind, once with busy errors thrown
+ * straight away and once with a SqliteRetryPolicy. Readers run getSingle, writers run a deferred
+ * read-modify-write transaction, the pattern that hits SQLITE_BUSY even with a busy timeout.
+ * <p>
+ * System properties:
+ * <ul>
+ * <li>sqliter.stress.ratios: comma separated readers:writers, default 7:1,4:4,1:7</li>
+ * <li>sqliter.stress.seconds: duration of every run, default 5</li>
+ * <li>sqliter.stress.busyTimeout: busy timeout in milliseconds, default 20</li>
+ * <li>sqliter.stress.rows: table size, default 10000</li>
+ * <li>sqliter.stress.databases: comma separated database kinds, default file,file-pooled</li>
+ * </ul>
+ *
+ * @author John Pili
+ */
+public class ContentionStressHarness {
+    private static final String GET_AMOUNT = "SELECT amount FROM bench_item WHERE id = ?";
+
+    public static void main(String[] args) throws Exception {
+        String[] ratios = System.getProperty("sqliter.stress.ratios", "7:1,4:4,1:7").split(",");
+        long seconds = Long.getLong("sqliter.stress.seconds", 5);
+        int busyTimeout = Integer.getInteger("sqliter.stress.busyTimeout", 20);
+        int rowCount = Integer.getInteger("sqliter.stress.rows", 10000);
+        String[] databases = System.getProperty("sqliter.stress.databases",
+                BenchmarkDatabase.FILE + "," + BenchmarkDatabase.FILE_POOLED).split(",");
+
+        System.out.printf("%-12s %-6s %-6s %10s %9s %9s %9s %9s %9s %9s %9s%n", "database", "ratio", "retry",
+                "ops/s", "busy%", "retries", "gaveUp", "read p99", "read max", "write p99", "write max");
+        for (String database : databases) {
+            for (String ratio : ratios) {
+                String[] parts = ratio.trim().split(":");
+                int readers = Integer.parseInt(parts[0]);
+                int writers = Integer.parseInt(parts[1]);
+                for (boolean retry : new boolean[]{false, true}) {
+                    run(database.trim(), readers, writers, retry, seconds, busyTimeout, rowCount);
+                }
+            }
+        }
+    }
+
+    private static void run(String database, int readers, int writers, boolean retry, long seconds, int busyTimeout, int rowCount)
+            throws SQLException, SqliteDriverNotFoundException, InterruptedException {
+        BenchmarkDatabase benchmarkDatabase = BenchmarkDatabase.open(database, rowCount, sqliteConfig -> {
+            sqliteConfig.setBusyTimeoutMillis(busyTimeout);
+            if (sqliteConfig.getPragmaProfile() != null) {
+                sqliteConfig.getPragmaProfile().setBusyTimeout(busyTimeout);
+            }
+            sqliteConfig.setMaxReadConnections(Math.max(1, readers));
+            sqliteConfig.setRetryPolicy(retry ? new SqliteRetryPolicy() : null);
+        });
+        try {
+            SqliteRepository sqliteRepository = benchmarkDatabase.getRepository();
+            Run run = new Run(sqliteRepository, rowCount, System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds));
+            List<Thread> threads = new ArrayList<>();
+            CountDownLatch start = new CountDownLatch(1);
+            for (int i = 0; i < readers + writers; i++) {
+                boolean writer = i >= readers;
+                Thread thread = new Thread(() -> run.work(start, writer), (writer ? "writer-" : "reader-") + i);
+                threads.add(thread);
+                thread.start();
+            }
+            long startedAt = System.nanoTime();
+            start.countDown();
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            double elapsedSeconds = (System.nanoTime() - startedAt) / 1e9;
+            long operations = run.readLatency.getCount() + run.writeLatency.getCount();
+            long attempted = operations + run.busyCount.sum();
+            SqliteRetryStatistics retryStatistics = sqliteRepository.getRetryStatistics();
+            System.out.printf("%-12s %-6s %-6s %10.0f %8.2f%% %9d %9d %9s %9s %9s %9s%n", database, readers + ":" + writers,
+                    retry ? "on" : "off", operations / elapsedSeconds,
+                    attempted == 0 ? 0 : 100.0 * run.busyCount.sum() / attempted,
+                    retryStatistics != null ? retryStatistics.getRetryCount() : 0,
+                    retryStatistics != null ? retryStatistics.getGiveUpCount() : run.busyCount.sum(),
+                    millis(run.readLatency.getPercentileNanos(99)), millis(run.readLatency.getMaxNanos()),
+                    millis(run.writeLatency.getPercentileNanos(99)), millis(run.writeLatency.getMaxNanos()));
+            if (run.failure.sum() > 0) {
+                System.out.println("  " + run.failure.sum() + " operations failed with other errors");
+            }
+        } finally {
+            benchmarkDatabase.close();
+        }
+    }
+
+    private static String millis(long nanos) {
+        return String.format("%.2fms", nanos / 1e6);
+    }
+
+    /**
+     * Shared state of one run. Only successful operations are recorded in the latency histograms,
+     * operations that still failed with a busy error count towards the busy rate
+     */
+    private static final class Run {
+        private final SqliteRepository sqliteRepository;
+        private final int rowCount;
+        private final long deadlineNanos;
+        private final SqliteLatencyHistogram readLatency = new SqliteLatencyHistogram();
+        private final SqliteLatencyHistogram writeLatency = new SqliteLatencyHistogram();
+        private final LongAdder busyCount = new LongAdder();
+        private final LongAdder failure = new LongAdder();
+
+        private Run(SqliteRepository sqliteRepository, int rowCount, long deadlineNanos) {
+            this.sqliteRepository = sqliteRepository;
+            this.rowCount = rowCount;
+            this.deadlineNanos = deadlineNanos;
+        }
+
+        private void work(CountDownLatch start, boolean writer) {
+            try {
+                start.await();
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+            while (System.nanoTime() < deadlineNanos) {
+                long id = ThreadLocalRandom.current().nextLong(1, rowCount + 1L);
+                long startedAt = System.nanoTime();
+                try {
+                    if (writer) {
+                        write(id);
+                        writeLatency.record(System.nanoTime() - startedAt);
+                    } else {
+                        sqliteRepository.getSingle(BenchmarkDatabase.GET_BY_ID, BenchmarkDatabase.parameters(id), BenchItem.ASSEMBLER);
+                        readLatency.record(System.nanoTime() - startedAt);
+                    }
+                } catch (SQLException sqlException) {
+                    if (SqliteRetryPolicy.isBusy(sqlException)) {
+                        busyCount.increment();
+                    } else {
+                        failure.increment();
+                    }
+                } catch (SqliteDriverNotFoundException driverNotFoundException) {
+                    throw new IllegalStateException(driverNotFoundException);
+                }
+            }
+        }
+
+        private void write(long id) throws SQLException, SqliteDriverNotFoundException {
+            sqliteRepository.runInTransaction(SqliteTransactionMode.DEFERRED, transaction -> {
+                Double amount = transaction.getSingle(GET_AMOUNT, BenchmarkDatabase.parameters(id), resultSet -> resultSet.getDouble(1));
+                return transaction.update(BenchmarkDatabase.UPDATE, BenchmarkDatabase.parameters(amount + 1, id));
+            });
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.johnpili.sqliter.benchmarks;
+
+import com.johnpili.sqliter.SqliteParameters;
+import com.johnpili.sqliter.SqliteRepository;
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Throughput of the single-statement, batch and streaming repository paths.
+ * Run with more threads (see {@link BenchmarkRunner}) to measure the same paths under contention
+ *
+ * @author John Pili
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RepositoryBenchmark {
+    private static final int BATCH_ROWS = 100;
+
+    @Param({BenchmarkDatabase.FILE, BenchmarkDatabase.FILE_POOLED, BenchmarkDatabase.MEMORY})
+    public String database;
+
+    @Param({"1000", "100000"})
+    public int rowCount;
+
+    private BenchmarkDatabase benchmarkDatabase;
+    private SqliteRepository sqliteRepository;
+    private final AtomicLong sequence = new AtomicLong();
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, SqliteDriverNotFoundException {
+        benchmarkDatabase = BenchmarkDatabase.open(database, rowCount);
+        sqliteRepository = benchmarkDatabase.getRepository();
+        sequence.set(rowCount);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        benchmarkDatabase.close();
+    }
+
+    @Benchmark
+    public int insert() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.insert(BenchmarkDatabase.INSERT, BenchmarkDatabase.insertParameters(sequence.incrementAndGet()));
+    }
+
+    @Benchmark
+    public int update() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.update(BenchmarkDatabase.UPDATE,
+                BenchmarkDatabase.parameters(ThreadLocalRandom.current().nextDouble(), randomId()));
+    }
+
+    @Benchmark
+    public BenchItem getSingle() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.getSingle(BenchmarkDatabase.GET_BY_ID, BenchmarkDatabase.parameters(randomId()), BenchItem.ASSEMBLER);
+    }
+
+    /**
+     * Same lookup bound through SqliteParameters instead of a map
+     */
+    @Benchmark
+    public BenchItem getSingleTyped() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.getSingleTyped(BenchmarkDatabase.GET_BY_ID, new SqliteParameters().bindLong(1, randomId()), BenchItem.ASSEMBLER);
+    }
+
+    /**
+     * Reads one category, which is rowCount / 100 rows
+     */
+    @Benchmark
+    public List<BenchItem> getList() throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.getList(BenchmarkDatabase.GET_BY_CATEGORY, BenchmarkDatabase.parameters(randomCategory()),
+                BenchItem.ASSEMBLER);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_ROWS)
+    public long[] insertBatch() throws SQLException, SqliteDriverNotFoundException {
+        List<Map<Integer, Object>> rows = new ArrayList<>(BATCH_ROWS);
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            rows.add(BenchmarkDatabase.insertParameters(sequence.incrementAndGet()));
+        }
+        return sqliteRepository.insertBatch(BenchmarkDatabase.INSERT, rows);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH_ROWS)
+    public int[] updateBatch() throws SQLException, SqliteDriverNotFoundException {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        List<Map<Integer, Object>> rows = new ArrayList<>(BATCH_ROWS);
+        for (int i = 0; i < BATCH_ROWS; i++) {
+            rows.add(BenchmarkDatabase.parameters(random.nextDouble(), randomId()));
+        }
+        return sqliteRepository.updateBatch(BenchmarkDatabase.UPDATE, rows);
+    }
+
+    @Benchmark
+    public double stream() throws SQLException, SqliteDriverNotFoundException {
+        try (Stream<BenchItem> items = sqliteRepository.stream(BenchmarkDatabase.GET_BY_CATEGORY,
+                BenchmarkDatabase.parameters(randomCategory()), BenchItem.ASSEMBLER)) {
+            return items.mapToDouble(BenchItem::getAmount).sum();
+        }
+    }
+
+    @Benchmark
+    public long forEach(Blackhole blackhole) throws SQLException, SqliteDriverNotFoundException {
+        return sqliteRepository.forEach(BenchmarkDatabase.GET_BY_CATEGORY, BenchmarkDatabase.parameters(randomCategory()),
+                BenchItem.ASSEMBLER, blackhole::consume);
+    }
+
+    private long randomId() {
+        return ThreadLocalRandom.current().nextLong(1, rowCount + 1L);
+    }
+
+    private int randomCategory() {
+        return ThreadLocalRandom.current().nextInt(BenchmarkDatabase.CATEGORIES);
+    }
+}
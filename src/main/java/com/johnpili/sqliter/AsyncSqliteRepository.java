@@ -0,0 +1,399 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Non-blocking facade over a SqliteRepository. Every operation runs on an executor and completes a
+ * CompletableFuture, so callers never block on SQLite. The number of operations submitted but not finished
+ * is capped by asyncMaxPending; operations over the cap fail straight away with a SQLTransientException
+ * instead of piling up connections or memory.
+ * <p>
+ * The default executor uses virtual threads when the JVM provides them (Java 21) and otherwise a fixed pool of
+ * daemon threads, one per pooled connection. Streams are not offered because they hold a connection until
+ * they are closed; use forEach instead
+ *
+ * @author John Pili
+ */
+public class AsyncSqliteRepository implements AutoCloseable {
+    private final SqliteRepository sqliteRepository;
+    private final Executor executor;
+    private final boolean ownsRepository;
+    private final boolean ownsExecutor;
+    private final int maxPending;
+    private final Semaphore pendingPermits;
+    private final LongAdder rejectedCount = new LongAdder();
+
+    public AsyncSqliteRepository(SqliteConfig sqliteConfig) {
+        this(new SqliteRepository(sqliteConfig), defaultExecutor(sqliteConfig), sqliteConfig.getAsyncMaxPending(), true, true);
+    }
+
+    public AsyncSqliteRepository(SqliteRepository sqliteRepository) {
+        this(sqliteRepository, defaultExecutor(sqliteRepository.getSqliteConfig()),
+                sqliteRepository.getSqliteConfig().getAsyncMaxPending(), false, true);
+    }
+
+    /**
+     * Runs the operations on a caller supplied executor. The executor is not shut down by close
+     *
+     * @param sqliteRepository SqliteRepository
+     * @param executor         Executor
+     */
+    public AsyncSqliteRepository(SqliteRepository sqliteRepository, Executor executor) {
+        this(sqliteRepository, executor, sqliteRepository.getSqliteConfig().getAsyncMaxPending(), false, false);
+    }
+
+    private AsyncSqliteRepository(SqliteRepository sqliteRepository, Executor executor, int maxPending,
+                                  boolean ownsRepository, boolean ownsExecutor) {
+        this.sqliteRepository = sqliteRepository;
+        this.executor = executor;
+        this.maxPending = Math.max(1, maxPending);
+        this.pendingPermits = new Semaphore(this.maxPending);
+        this.ownsRepository = ownsRepository;
+        this.ownsExecutor = ownsExecutor;
+    }
+
+    /**
+     * The blocking repository the operations run on
+     *
+     * @return SqliteRepository
+     */
+    public SqliteRepository getRepository() {
+        return sqliteRepository;
+    }
+
+    public CompletableFuture<Integer> insert(String sql, Map<Integer, Object> parameters) {
+        return submit(() -> sqliteRepository.insert(sql, parameters));
+    }
+
+    public CompletableFuture<Integer> insertTyped(String sql, SqliteParameters parameters) {
+        return submit(() -> sqliteRepository.insertTyped(sql, parameters));
+    }
+
+    public CompletableFuture<Integer> update(String sql, Map<Integer, Object> parameters) {
+        return submit(() -> sqliteRepository.update(sql, parameters));
+    }
+
+    public CompletableFuture<Integer> updateTyped(String sql, SqliteParameters parameters) {
+        return submit(() -> sqliteRepository.updateTyped(sql, parameters));
+    }
+
+    public CompletableFuture<Integer> delete(String sql, Map<Integer, Object> parameters) {
+        return submit(() -> sqliteRepository.delete(sql, parameters));
+    }
+
+    public CompletableFuture<Integer> deleteTyped(String sql, SqliteParameters parameters) {
+        return submit(() -> sqliteRepository.deleteTyped(sql, parameters));
+    }
+
+    public CompletableFuture<long[]> insertBatch(String sql, Collection<Map<Integer, Object>> parameterSets) {
+        return submit(() -> sqliteRepository.insertBatch(sql, parameterSets));
+    }
+
+    public CompletableFuture<int[]> updateBatch(String sql, Collection<Map<Integer, Object>> parameterSets) {
+        return submit(() -> sqliteRepository.updateBatch(sql, parameterSets));
+    }
+
+    public CompletableFuture<int[]> deleteBatch(String sql, Collection<Map<Integer, Object>> parameterSets) {
+        return submit(() -> sqliteRepository.deleteBatch(sql, parameterSets));
+    }
+
+    public CompletableFuture<Integer> upsert(String table, List<String> columns, List<String> conflictColumns, Collection<Object[]> rows) {
+        return submit(() -> sqliteRepository.upsert(table, columns, conflictColumns, rows));
+    }
+
+    public CompletableFuture<Integer> upsert(String table, List<String> columns, List<String> conflictColumns,
+                                             List<String> updateColumns, Collection<Object[]> rows) {
+        return submit(() -> sqliteRepository.upsert(table, columns, conflictColumns, updateColumns, rows));
+    }
+
+    /**
+     * The callback runs on an executor thread against the blocking transaction view
+     *
+     * @param callback SqliteTransactionCallback
+     * @return CompletableFuture&lt;T&gt;
+     */
+    public <T> CompletableFuture<T> runInTransaction(SqliteTransactionCallback<T> callback) {
+        return submit(() -> sqliteRepository.runInTransaction(callback));
+    }
+
+    public <T> CompletableFuture<T> runInTransaction(SqliteTransactionMode transactionMode, SqliteTransactionCallback<T> callback) {
+        return submit(() -> sqliteRepository.runInTransaction(transactionMode, callback));
+    }
+
+    public <T> CompletableFuture<T> getSingle(String sql, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getSingle(sql, sqliteObjectAssembler));
+    }
+
+    public <T> CompletableFuture<T> getSingle(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getSingle(sql, parameters, sqliteObjectAssembler));
+    }
+
+    public <T> CompletableFuture<T> getSingleTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getSingleTyped(sql, parameters, sqliteObjectAssembler));
+    }
+
+    public <T> CompletableFuture<List<T>> getList(String sql, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getList(sql, sqliteObjectAssembler));
+    }
+
+    public <T> CompletableFuture<List<T>> getList(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getList(sql, parameters, sqliteObjectAssembler));
+    }
+
+    public <T> CompletableFuture<List<T>> getListTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler sqliteObjectAssembler) {
+        return submit(() -> sqliteRepository.<T>getListTyped(sql, parameters, sqliteObjectAssembler));
+    }
+
+    /**
+     * The callback runs on an executor thread for every row; the future completes with the row count
+     *
+     * @param sql                   String
+     * @param parameters            Map&lt;Integer, Object&gt;
+     * @param sqliteObjectAssembler SqliteObjectAssembler
+     * @param callback              SqliteRowCallback
+     * @return CompletableFuture&lt;Long&gt;
+     */
+    public <T> CompletableFuture<Long> forEach(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler,
+                                               SqliteRowCallback<T> callback) {
+        return submit(() -> sqliteRepository.forEach(sql, parameters, sqliteObjectAssembler, callback));
+    }
+
+    /**
+     * The batch is filled on an executor thread and must not be touched until the future completes
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @param batch      SqliteColumnBatch
+     * @return CompletableFuture&lt;SqliteColumnBatch&gt;
+     */
+    public CompletableFuture<SqliteColumnBatch> getColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch) {
+        return submit(() -> sqliteRepository.getColumnBatch(sql, parameters, batch));
+    }
+
+    /**
+     * The callback runs on an executor thread for every full batch; the future completes with the row count
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @param batch      SqliteColumnBatch
+     * @param batchSize  int
+     * @param callback   SqliteRowCallback
+     * @return CompletableFuture&lt;Long&gt;
+     */
+    public CompletableFuture<Long> forEachColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch, int batchSize,
+                                                      SqliteRowCallback<SqliteColumnBatch> callback) {
+        return submit(() -> sqliteRepository.forEachColumnBatch(sql, parameters, batch, batchSize, callback));
+    }
+
+    /**
+     * The output stream is written on an executor thread; the future completes with the byte count or -1 for NULL
+     *
+     * @param table        String
+     * @param column       String
+     * @param rowId        long
+     * @param outputStream OutputStream
+     * @return CompletableFuture&lt;Long&gt;
+     */
+    public CompletableFuture<Long> readBlob(String table, String column, long rowId, OutputStream outputStream) {
+        return submit(() -> sqliteRepository.readBlob(table, column, rowId, outputStream));
+    }
+
+    /**
+     * The input stream is read on an executor thread; the future completes with the byte count
+     *
+     * @param table       String
+     * @param column      String
+     * @param rowId       long
+     * @param inputStream InputStream
+     * @param length      long
+     * @return CompletableFuture&lt;Long&gt;
+     */
+    public CompletableFuture<Long> writeBlob(String table, String column, long rowId, InputStream inputStream, long length) {
+        return submit(() -> sqliteRepository.writeBlob(table, column, rowId, inputStream, length));
+    }
+
+    /**
+     * Creating the pager does not touch the database, fetch its pages with {@link #nextPage(SqliteKeysetPager)}
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters or null
+     * @param keyColumn             String
+     * @param pageSize              int
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @param cursor                String or null
+     * @return SqliteKeysetPager&lt;T&gt;
+     */
+    public <T> SqliteKeysetPager<T> paginate(String sql, SqliteParameters parameters, String keyColumn, int pageSize,
+                                             SqliteObjectAssembler<T> sqliteObjectAssembler, String cursor) {
+        return sqliteRepository.paginate(sql, parameters, keyColumn, pageSize, sqliteObjectAssembler, cursor);
+    }
+
+    /**
+     * The page is fetched on an executor thread; the future completes with an empty list once the scan is exhausted.
+     * A pager must not be advanced again until the previous future completes
+     *
+     * @param pager SqliteKeysetPager&lt;T&gt;
+     * @return CompletableFuture&lt;List&lt;T&gt;&gt;
+     */
+    public <T> CompletableFuture<List<T>> nextPage(SqliteKeysetPager<T> pager) {
+        return submit(() -> pager.hasNext() ? pager.next() : Collections.<T>emptyList());
+    }
+
+    public CompletableFuture<Void> createTable(String sql) {
+        return submit(() -> {
+            sqliteRepository.createTable(sql);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> alterTable(String sql) {
+        return submit(() -> {
+            sqliteRepository.alterTable(sql);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> dropTable(String sql) {
+        return submit(() -> {
+            sqliteRepository.dropTable(sql);
+            return null;
+        });
+    }
+
+    public CompletableFuture<List<String>> getTables() {
+        return submit(sqliteRepository::getTables);
+    }
+
+    public CompletableFuture<Boolean> tableExists(String name) {
+        return submit(() -> sqliteRepository.tableExists(name));
+    }
+
+    public CompletableFuture<List<SqliteColumn>> getColumns(String table) {
+        return submit(() -> sqliteRepository.getColumns(table));
+    }
+
+    public CompletableFuture<Boolean> columnExists(String table, String column) {
+        return submit(() -> sqliteRepository.columnExists(table, column));
+    }
+
+    public CompletableFuture<List<SqliteIndex>> getIndexes(String table) {
+        return submit(() -> sqliteRepository.getIndexes(table));
+    }
+
+    /**
+     * Operations submitted but not finished yet
+     *
+     * @return int
+     */
+    public int getPendingCount() {
+        return maxPending - pendingPermits.availablePermits();
+    }
+
+    /**
+     * Operations rejected because the pending limit was reached or the executor refused them
+     *
+     * @return long
+     */
+    public long getRejectedCount() {
+        return rejectedCount.sum();
+    }
+
+    /**
+     * Waits for the submitted operations when the executor is owned, then closes the owned repository
+     */
+    @Override
+    public void close() {
+        if (ownsExecutor && executor instanceof ExecutorService) {
+            ExecutorService executorService = (ExecutorService) executor;
+            executorService.shutdown();
+            try {
+                executorService.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (ownsRepository) {
+            sqliteRepository.close();
+        }
+    }
+
+    private <T> CompletableFuture<T> submit(Operation<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (!pendingPermits.tryAcquire()) {
+            rejectedCount.increment();
+            future.completeExceptionally(new SQLTransientException("Too many pending async operations: " + maxPending));
+            return future;
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(operation.call());
+                } catch (Throwable throwable) {
+                    future.completeExceptionally(throwable);
+                } finally {
+                    pendingPermits.release();
+                }
+            });
+        } catch (RejectedExecutionException rejectedExecutionException) {
+            pendingPermits.release();
+            rejectedCount.increment();
+            future.completeExceptionally(rejectedExecutionException);
+        }
+        return future;
+    }
+
+    /**
+     * This method creates the virtual thread executor when the JVM has one, or a fixed pool sized to the
+     * connections that can run at the same time
+     *
+     * @param sqliteConfig SqliteConfig
+     * @return ExecutorService
+     */
+    private static ExecutorService defaultExecutor(SqliteConfig sqliteConfig) {
+        if (sqliteConfig.getAsyncThreads() <= 0) {
+            try {
+                Method factory = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                return (ExecutorService) factory.invoke(null);
+            } catch (ReflectiveOperationException reflectiveOperationException) {
+                // Virtual threads need Java 21, fall back to platform threads
+            }
+        }
+        int threads = sqliteConfig.getAsyncThreads() > 0 ? sqliteConfig.getAsyncThreads()
+                : sqliteConfig.isPooled() ? sqliteConfig.getMaxReadConnections() + 1
+                : Runtime.getRuntime().availableProcessors();
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadPoolExecutor threadPoolExecutor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "sqliter-async-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        threadPoolExecutor.allowCoreThreadTimeOut(true);
+        return threadPoolExecutor;
+    }
+
+    private interface Operation<T> {
+        T call() throws SQLException, SqliteDriverNotFoundException, IOException;
+    }
+}
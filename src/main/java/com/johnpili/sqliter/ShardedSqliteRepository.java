@@ -0,0 +1,410 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Spreads data over several database files by a routing key. Every shard is a regular SqliteRepository
+ * with its own configuration and its own writer, so writes to different shards never wait on each other.
+ * Routed operations go through shardFor, schema changes are broadcast and getList scatters the query
+ * to all shards in parallel on a fork-join pool and merges the rows
+ *
+ * @author John Pili
+ */
+public class ShardedSqliteRepository implements AutoCloseable {
+    private final List<SqliteRepository> shards;
+    private final SqliteShardStrategy shardStrategy;
+    private final ForkJoinPool forkJoinPool;
+    private final boolean ownsPool;
+
+    /**
+     * Opens one repository per config and a fork-join pool with one worker per shard
+     *
+     * @param shardConfigs  List&lt;SqliteConfig&gt; in shard index order
+     * @param shardStrategy SqliteShardStrategy
+     */
+    public ShardedSqliteRepository(List<SqliteConfig> shardConfigs, SqliteShardStrategy shardStrategy) {
+        this(shardConfigs, shardStrategy, null);
+    }
+
+    /**
+     * @param shardConfigs  List&lt;SqliteConfig&gt; in shard index order
+     * @param shardStrategy SqliteShardStrategy
+     * @param forkJoinPool  ForkJoinPool that runs the per-shard queries, not shut down on close.
+     *                      Null creates a pool owned by this repository
+     */
+    public ShardedSqliteRepository(List<SqliteConfig> shardConfigs, SqliteShardStrategy shardStrategy, ForkJoinPool forkJoinPool) {
+        if (shardConfigs == null || shardConfigs.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        shardStrategy.checkShardCount(shardConfigs.size());
+        List<SqliteRepository> repositories = new ArrayList<>(shardConfigs.size());
+        for (SqliteConfig shardConfig : shardConfigs) {
+            repositories.add(new SqliteRepository(shardConfig));
+        }
+        this.shards = Collections.unmodifiableList(repositories);
+        this.shardStrategy = shardStrategy;
+        this.ownsPool = forkJoinPool == null;
+        this.forkJoinPool = forkJoinPool == null ? new ForkJoinPool(shardConfigs.size()) : forkJoinPool;
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    public SqliteRepository getShard(int index) {
+        return shards.get(index);
+    }
+
+    public List<SqliteRepository> getShards() {
+        return shards;
+    }
+
+    /**
+     * This method returns the index of the shard that owns the routing key
+     *
+     * @param routingKey Object
+     * @return int
+     */
+    public int shardIndexFor(Object routingKey) {
+        int index = shardStrategy.shardFor(routingKey, shards.size());
+        if (index < 0 || index >= shards.size()) {
+            throw new IllegalStateException("Shard strategy returned " + index + " for " + shards.size() + " shards");
+        }
+        return index;
+    }
+
+    /**
+     * This method returns the shard that owns the routing key. Inserts, updates, deletes, lookups and
+     * transactions on one key run on it like on any other repository
+     *
+     * @param routingKey Object
+     * @return SqliteRepository
+     */
+    public SqliteRepository shardFor(Object routingKey) {
+        return shards.get(shardIndexFor(routingKey));
+    }
+
+    public void createTable(String sql) throws SQLException, SqliteDriverNotFoundException {
+        scatter(shard -> {
+            shard.createTable(sql);
+            return null;
+        });
+    }
+
+    public void alterTable(String sql) throws SQLException, SqliteDriverNotFoundException {
+        scatter(shard -> {
+            shard.alterTable(sql);
+            return null;
+        });
+    }
+
+    public void dropTable(String sql) throws SQLException, SqliteDriverNotFoundException {
+        scatter(shard -> {
+            shard.dropTable(sql);
+            return null;
+        });
+    }
+
+    /**
+     * This method runs an update on every shard. Each shard commits on its own, there is no cross-shard transaction
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @return the number of affected records over all shards
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public int updateAll(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException {
+        int affected = 0;
+        for (int count : scatter(shard -> shard.updateTyped(sql, parameters))) {
+            affected += count;
+        }
+        return affected;
+    }
+
+    /**
+     * This method runs a delete on every shard. Each shard commits on its own, there is no cross-shard transaction
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @return the number of deleted records over all shards
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public int deleteAll(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException {
+        int affected = 0;
+        for (int count : scatter(shard -> shard.deleteTyped(sql, parameters))) {
+            affected += count;
+        }
+        return affected;
+    }
+
+    public <T> List<T> getList(String sql, SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        return gather(sql, null, sqliteObjectAssembler);
+    }
+
+    public <T> List<T> getList(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        return gather(sql, parameters, sqliteObjectAssembler);
+    }
+
+    /**
+     * This method runs the query on all shards in parallel. When the query has a top-level ORDER BY the
+     * sorted shard results are k-way merged, so the columns it orders by must be in the select list,
+     * and a literal LIMIT is applied to the merged result. Without ORDER BY the rows come in shard order and a
+     * literal LIMIT cuts the combined result. OFFSET is rejected in both cases because it cannot be applied per shard
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @return List&lt;T&gt;
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public <T> List<T> getListTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        return gather(sql, parameters, sqliteObjectAssembler);
+    }
+
+    /**
+     * This method runs the query on all shards in parallel and merges the shard results with the comparator.
+     * Each shard must return its rows in comparator order, typically through a matching ORDER BY.
+     * A literal LIMIT cuts the merged result and OFFSET is rejected
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @param comparator            Comparator&lt;T&gt;
+     * @return List&lt;T&gt;
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public <T> List<T> getList(String sql, SqliteParameters parameters, SqliteObjectAssembler<T> sqliteObjectAssembler,
+                               Comparator<? super T> comparator) throws SQLException, SqliteDriverNotFoundException {
+        int limit = SqliteOrderBy.parseLimit(sql);
+        List<List<T>> runs = scatter(shard -> shard.<T>getListTyped(sql, parameters, sqliteObjectAssembler));
+        return merge(runs, comparator, limit);
+    }
+
+    /**
+     * Shuts down the owned fork-join pool and closes every shard
+     */
+    @Override
+    public void close() {
+        if (ownsPool) {
+            forkJoinPool.shutdown();
+            try {
+                forkJoinPool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        for (SqliteRepository shard : shards) {
+            shard.close();
+        }
+    }
+
+    private <T> List<T> gather(String sql, Object parameters, SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        SqliteOrderBy orderBy = SqliteOrderBy.parse(sql);
+        if (orderBy == null) {
+            int limit = SqliteOrderBy.parseLimit(sql);
+            List<T> result = new ArrayList<>();
+            for (List<T> rows : scatter(shard -> queryShard(shard, sql, parameters, sqliteObjectAssembler))) {
+                result.addAll(limit < 0 ? rows : rows.subList(0, Math.min(rows.size(), limit - result.size())));
+            }
+            return result;
+        }
+        SortKeyAssembler<T> sortKeyAssembler = new SortKeyAssembler<>(sqliteObjectAssembler, orderBy);
+        List<List<SortedRow<T>>> runs = scatter(shard -> queryShard(shard, sql, parameters, sortKeyAssembler));
+        List<SortedRow<T>> merged = merge(runs, (left, right) -> orderBy.compare(left.keys, right.keys), orderBy.getLimit());
+        List<T> result = new ArrayList<>(merged.size());
+        for (SortedRow<T> row : merged) {
+            result.add(row.value);
+        }
+        return result;
+    }
+
+    /**
+     * Every query goes through the shard's own getList, so its retry policy, result cache, listener
+     * and slow query log apply
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> List<T> queryShard(SqliteRepository shard, String sql, Object parameters,
+                                          SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        if (parameters instanceof SqliteParameters) {
+            return shard.getListTyped(sql, (SqliteParameters) parameters, sqliteObjectAssembler);
+        }
+        if (parameters instanceof Map) {
+            return shard.getList(sql, (Map<Integer, Object>) parameters, sqliteObjectAssembler);
+        }
+        return shard.getList(sql, sqliteObjectAssembler);
+    }
+
+    /**
+     * K-way merge of sorted runs. Equal rows keep shard order, so the merge is stable
+     */
+    private static <E> List<E> merge(List<List<E>> runs, Comparator<? super E> comparator, int limit) {
+        int total = 0;
+        for (List<E> run : runs) {
+            total += run.size();
+        }
+        int size = limit >= 0 ? Math.min(limit, total) : total;
+        List<E> merged = new ArrayList<>(size);
+        PriorityQueue<RunCursor<E>> heads = new PriorityQueue<>(Math.max(1, runs.size()), (left, right) -> {
+            int result = comparator.compare(left.head(), right.head());
+            return result != 0 ? result : Integer.compare(left.shardIndex, right.shardIndex);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            if (!runs.get(i).isEmpty()) {
+                heads.add(new RunCursor<>(runs.get(i), i));
+            }
+        }
+        while (merged.size() < size) {
+            RunCursor<E> cursor = heads.poll();
+            merged.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * This method runs the task on every shard in the fork-join pool and waits for all of them,
+     * so a failing shard never leaves others running in the background
+     */
+    private <R> List<R> scatter(ShardTask<R> task) throws SQLException, SqliteDriverNotFoundException {
+        List<ForkJoinTask<R>> tasks = new ArrayList<>(shards.size());
+        for (SqliteRepository shard : shards) {
+            tasks.add(forkJoinPool.submit(() -> task.run(shard)));
+        }
+        List<R> results = new ArrayList<>(tasks.size());
+        Throwable failure = null;
+        for (ForkJoinTask<R> forkJoinTask : tasks) {
+            try {
+                results.add(forkJoinTask.get());
+            } catch (ExecutionException executionException) {
+                Throwable cause = executionException.getCause();
+                if (failure == null) {
+                    failure = cause;
+                } else if (failure != cause) {
+                    failure.addSuppressed(cause);
+                }
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+                for (ForkJoinTask<R> pending : tasks) {
+                    pending.cancel(true);
+                }
+                throw new SQLException("Interrupted while waiting for the shards", interruptedException);
+            }
+        }
+        if (failure instanceof SQLException) {
+            throw (SQLException) failure;
+        }
+        if (failure instanceof SqliteDriverNotFoundException) {
+            throw (SqliteDriverNotFoundException) failure;
+        }
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        }
+        if (failure instanceof Error) {
+            throw (Error) failure;
+        }
+        if (failure != null) {
+            throw new SQLException(failure);
+        }
+        return results;
+    }
+
+    private interface ShardTask<R> {
+        R run(SqliteRepository shard) throws Exception;
+    }
+
+    /**
+     * Assembles each row together with the values it is ordered by. Wrappers of the same assembler are equal,
+     * so the shard result cache still recognizes a repeated query
+     */
+    private static final class SortKeyAssembler<T> implements SqliteObjectAssembler<SortedRow<T>> {
+        private final SqliteObjectAssembler<T> sqliteObjectAssembler;
+        private final SqliteOrderBy orderBy;
+
+        private SortKeyAssembler(SqliteObjectAssembler<T> sqliteObjectAssembler, SqliteOrderBy orderBy) {
+            this.sqliteObjectAssembler = sqliteObjectAssembler;
+            this.orderBy = orderBy;
+        }
+
+        @Override
+        public SortedRow<T> assemble(ResultSet resultSet) throws SQLException {
+            return bind(resultSet.getMetaData()).assemble(resultSet);
+        }
+
+        @Override
+        public SqliteObjectAssembler<SortedRow<T>> bind(ResultSetMetaData metaData) throws SQLException {
+            int[] keyColumns = orderBy.resolveColumns(metaData);
+            SqliteObjectAssembler<T> rowAssembler = sqliteObjectAssembler.bind(metaData);
+            return resultSet -> {
+                Object[] keys = new Object[keyColumns.length];
+                for (int i = 0; i < keyColumns.length; i++) {
+                    keys[i] = resultSet.getObject(keyColumns[i]);
+                }
+                return new SortedRow<>(keys, rowAssembler.assemble(resultSet));
+            };
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof SortKeyAssembler && ((SortKeyAssembler<?>) other).sqliteObjectAssembler == sqliteObjectAssembler;
+        }
+
+        @Override
+        public int hashCode() {
+            return System.identityHashCode(sqliteObjectAssembler);
+        }
+    }
+
+    private static final class SortedRow<T> {
+        private final Object[] keys;
+        private final T value;
+
+        private SortedRow(Object[] keys, T value) {
+            this.keys = keys;
+            this.value = value;
+        }
+    }
+
+    private static final class RunCursor<E> {
+        private final List<E> run;
+        private final int shardIndex;
+        private int position;
+
+        private RunCursor(List<E> run, int shardIndex) {
+            this.run = run;
+            this.shardIndex = shardIndex;
+        }
+
+        private E head() {
+            return run.get(position);
+        }
+
+        private boolean advance() {
+            return ++position < run.size();
+        }
+    }
+}
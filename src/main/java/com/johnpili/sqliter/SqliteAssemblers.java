@@ -0,0 +1,28 @@
+package com.johnpili.sqliter;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Factory for assemblers that map result set columns to POJO setters, fields or record components by name.
+ * Column labels match property names case-insensitively and ignoring underscores
+ *
+ * @author John Pili
+ */
+public final class SqliteAssemblers {
+    private static final ConcurrentHashMap<Class<?>, SqliteObjectAssembler<?>> ASSEMBLERS = new ConcurrentHashMap<>();
+
+    private SqliteAssemblers() {}
+
+    /**
+     * Returns the shared assembler for the type. POJOs need a no-argument constructor, records are
+     * built through their canonical constructor when running on a JVM that supports them
+     *
+     * @param type Class&lt;T&gt;
+     * @return SqliteObjectAssembler&lt;T&gt;
+     * @param <T> generic type
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> SqliteObjectAssembler<T> forClass(Class<T> type) {
+        return (SqliteObjectAssembler<T>) ASSEMBLERS.computeIfAbsent(type, SqliteMappedAssembler::new);
+    }
+}
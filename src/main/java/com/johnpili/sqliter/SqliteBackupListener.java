@@ -0,0 +1,10 @@
+package com.johnpili.sqliter;
+
+/**
+ * Progress callback of an online backup or restore, called after every step and once at the end
+ *
+ * @author John Pili
+ */
+public interface SqliteBackupListener {
+    void onProgress(SqliteBackupResult progress);
+}
@@ -0,0 +1,97 @@
+package com.johnpili.sqliter;
+
+/**
+ * Options of an online backup or restore
+ *
+ * @author John Pili
+ */
+public class SqliteBackupOptions {
+    private int pagesPerStep;
+    private long stepPauseMillis;
+    private long maxBytesPerSecond;
+    private int busyRetryMillis;
+    private int busyRetryLimit;
+    private SqliteBackupListener listener;
+
+    public SqliteBackupOptions() {
+        this.pagesPerStep = 100;
+        this.stepPauseMillis = 0;
+        this.maxBytesPerSecond = 0;
+        this.busyRetryMillis = 100;
+        this.busyRetryLimit = 30;
+    }
+
+    public int getPagesPerStep() {
+        return pagesPerStep;
+    }
+
+    /**
+     * Pages copied per step. The source is only locked while a step runs, so smaller steps let writers in more often.
+     * A negative value copies everything in one step
+     *
+     * @param pagesPerStep int
+     */
+    public void setPagesPerStep(int pagesPerStep) {
+        this.pagesPerStep = pagesPerStep;
+    }
+
+    public long getStepPauseMillis() {
+        return stepPauseMillis;
+    }
+
+    /**
+     * Pause after every step
+     *
+     * @param stepPauseMillis long
+     */
+    public void setStepPauseMillis(long stepPauseMillis) {
+        this.stepPauseMillis = stepPauseMillis;
+    }
+
+    public long getMaxBytesPerSecond() {
+        return maxBytesPerSecond;
+    }
+
+    /**
+     * Throughput limit. Steps are paused long enough to keep the average below it. Zero means unlimited
+     *
+     * @param maxBytesPerSecond long
+     */
+    public void setMaxBytesPerSecond(long maxBytesPerSecond) {
+        this.maxBytesPerSecond = maxBytesPerSecond;
+    }
+
+    public int getBusyRetryMillis() {
+        return busyRetryMillis;
+    }
+
+    /**
+     * Wait before a step that found the database busy or locked is retried
+     *
+     * @param busyRetryMillis int
+     */
+    public void setBusyRetryMillis(int busyRetryMillis) {
+        this.busyRetryMillis = busyRetryMillis;
+    }
+
+    public int getBusyRetryLimit() {
+        return busyRetryLimit;
+    }
+
+    /**
+     * Number of busy retries before the backup gives up
+     *
+     * @param busyRetryLimit int
+     */
+    public void setBusyRetryLimit(int busyRetryLimit) {
+        this.busyRetryLimit = busyRetryLimit;
+    }
+
+    public SqliteBackupListener getListener() {
+        return listener;
+    }
+
+    public void setListener(SqliteBackupListener listener) {
+        this.listener = listener;
+    }
+}
@@ -0,0 +1,90 @@
+package com.johnpili.sqliter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pages copied so far by an online backup or restore and the time it took
+ *
+ * @author John Pili
+ */
+public class SqliteBackupResult {
+    private final int pageCount;
+    private final int remainingPages;
+    private final long bytesCopied;
+    private final long elapsedNanos;
+    private final int restarts;
+    private final boolean finished;
+
+    public SqliteBackupResult(int pageCount, int remainingPages, long bytesCopied, long elapsedNanos, int restarts, boolean finished) {
+        this.pageCount = pageCount;
+        this.remainingPages = remainingPages;
+        this.bytesCopied = bytesCopied;
+        this.elapsedNanos = elapsedNanos;
+        this.restarts = restarts;
+        this.finished = finished;
+    }
+
+    /**
+     * Size of the source database in pages
+     *
+     * @return int
+     */
+    public int getPageCount() {
+        return pageCount;
+    }
+
+    public int getRemainingPages() {
+        return remainingPages;
+    }
+
+    /**
+     * Bytes written to the destination, including pages copied again after a restart
+     *
+     * @return long
+     */
+    public long getBytesCopied() {
+        return bytesCopied;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getBytesPerSecond() {
+        return elapsedNanos == 0 ? 0 : bytesCopied * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * Number of times SQLite started the copy over because another connection wrote to the source between steps
+     *
+     * @return int
+     */
+    public int getRestarts() {
+        return restarts;
+    }
+
+    /**
+     * False for intermediate progress reports
+     *
+     * @return boolean
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteBackupResult{" +
+                "pageCount=" + pageCount +
+                ", remainingPages=" + remainingPages +
+                ", bytesCopied=" + bytesCopied +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", restarts=" + restarts +
+                ", finished=" + finished +
+                '}';
+    }
+}
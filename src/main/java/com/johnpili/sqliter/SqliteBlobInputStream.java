@@ -0,0 +1,193 @@
+package com.johnpili.sqliter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Reads a BLOB value in chunks of SELECT substr(column, ?, ?) so only one chunk is on the heap at a time.
+ * The chunks are read inside one read transaction that pins the snapshot the value was measured in, and the
+ * transaction and the connection lease are released as soon as the last byte is read or the stream is closed
+ *
+ * @author John Pili
+ */
+class SqliteBlobInputStream extends InputStream {
+    private final SqliteConnectionLease lease;
+    private final PreparedStatement chunkStatement;
+    private final long rowId;
+    private final long length;
+    private final int chunkSize;
+    private final boolean ownsTransaction;
+    private byte[] chunk = new byte[0];
+    private int chunkPosition;
+    private long position;
+    private boolean closed;
+
+    private SqliteBlobInputStream(SqliteConnectionLease lease, PreparedStatement chunkStatement, long rowId, long length,
+                                  int chunkSize, boolean ownsTransaction) {
+        this.lease = lease;
+        this.chunkStatement = chunkStatement;
+        this.rowId = rowId;
+        this.length = length;
+        this.chunkSize = chunkSize;
+        this.ownsTransaction = ownsTransaction;
+    }
+
+    /**
+     * This method measures the value and returns a stream over it, or null when the value is NULL.
+     * The lease is owned by the returned stream, and released here when there is nothing to stream
+     *
+     * @param lease     SqliteConnectionLease
+     * @param table     String
+     * @param column    String
+     * @param rowId     long
+     * @param chunkSize int
+     * @return SqliteBlobInputStream or null
+     * @throws SQLException when the row does not exist or the value is not a BLOB
+     */
+    static SqliteBlobInputStream open(SqliteConnectionLease lease, String table, String column, long rowId, int chunkSize) throws SQLException {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        Connection connection = lease.getConnection();
+        boolean ownsTransaction = false;
+        try {
+            String from = " FROM " + SqliteBulkTransfer.quoteIdentifier(table) + " WHERE rowid = ?";
+            String quotedColumn = SqliteBulkTransfer.quoteIdentifier(column);
+            if (connection.getAutoCommit()) {
+                connection.setAutoCommit(false);
+                ownsTransaction = true;
+            }
+            PreparedStatement lengthStatement = lease.prepareStatement(
+                    "SELECT typeof(" + quotedColumn + "), length(" + quotedColumn + ")" + from);
+            lengthStatement.setLong(1, rowId);
+            String type;
+            long length;
+            try (ResultSet resultSet = lengthStatement.executeQuery()) {
+                if (!resultSet.next()) {
+                    throw new SQLException("No row " + rowId + " in " + table);
+                }
+                type = resultSet.getString(1);
+                length = resultSet.getLong(2);
+            }
+            if ("null".equals(type)) {
+                release(lease, ownsTransaction);
+                return null;
+            }
+            if (!"blob".equals(type)) {
+                throw new SQLException(table + "." + column + " of row " + rowId + " is " + type + ", not a BLOB");
+            }
+            PreparedStatement chunkStatement = lease.prepareStatement("SELECT substr(" + quotedColumn + ", ?, ?)" + from);
+            return new SqliteBlobInputStream(lease, chunkStatement, rowId, length, chunkSize, ownsTransaction);
+        } catch (Throwable throwable) {
+            try {
+                release(lease, ownsTransaction);
+            } catch (SQLException sqlException) {
+                throwable.addSuppressed(sqlException);
+            }
+            throw throwable;
+        }
+    }
+
+    /**
+     * Size of the value in bytes
+     *
+     * @return long
+     */
+    long length() {
+        return length;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return chunk[chunkPosition++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int count) throws IOException {
+        if (count == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int copied = Math.min(count, chunk.length - chunkPosition);
+        System.arraycopy(chunk, chunkPosition, buffer, offset, copied);
+        chunkPosition += copied;
+        return copied;
+    }
+
+    @Override
+    public int available() {
+        return closed ? 0 : chunk.length - chunkPosition;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        chunk = new byte[0];
+        try {
+            release(lease, ownsTransaction);
+        } catch (SQLException sqlException) {
+            throw new IOException(sqlException);
+        }
+    }
+
+    /**
+     * This method loads the next chunk once the current one is used up
+     *
+     * @return false at the end of the value
+     * @throws IOException IOException
+     */
+    private boolean fill() throws IOException {
+        if (closed) {
+            return false;
+        }
+        if (chunkPosition < chunk.length) {
+            return true;
+        }
+        if (position >= length) {
+            close();
+            return false;
+        }
+        try {
+            chunkStatement.setLong(1, position + 1);
+            chunkStatement.setLong(2, Math.min(chunkSize, length - position));
+            chunkStatement.setLong(3, rowId);
+            try (ResultSet resultSet = chunkStatement.executeQuery()) {
+                chunk = resultSet.next() ? resultSet.getBytes(1) : null;
+            }
+        } catch (SQLException sqlException) {
+            close();
+            throw new IOException(sqlException);
+        }
+        if (chunk == null || chunk.length == 0) {
+            close();
+            throw new IOException("BLOB of row " + rowId + " ended at " + position + " of " + length + " bytes");
+        }
+        chunkPosition = 0;
+        position += chunk.length;
+        return true;
+    }
+
+    private static void release(SqliteConnectionLease lease, boolean ownsTransaction) throws SQLException {
+        try {
+            if (ownsTransaction) {
+                Connection connection = lease.getConnection();
+                connection.commit();
+                connection.setAutoCommit(true);
+            }
+        } finally {
+            lease.close();
+        }
+    }
+}
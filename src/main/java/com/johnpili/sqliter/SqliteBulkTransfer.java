@@ -0,0 +1,432 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streams CSV and newline delimited JSON into and out of SQLite in constant memory. Imports run on the write
+ * connection with one reused prepared statement and commit every chunk, so a failed import keeps the chunks
+ * committed before the failure. Exports stream the result set straight into the output.
+ * Streams are UTF-8 and are flushed but never closed
+ *
+ * @author John Pili
+ */
+public class SqliteBulkTransfer {
+    private final SqliteRepository sqliteRepository;
+
+    public SqliteBulkTransfer(SqliteRepository sqliteRepository) {
+        this.sqliteRepository = sqliteRepository;
+    }
+
+    /**
+     * This method imports CSV records into a table. Values are bound as text and converted by the column affinity
+     *
+     * @param inputStream InputStream
+     * @param table       String
+     * @param options     SqliteTransferOptions
+     * @return SqliteTransferResult
+     * @throws IOException                   IOException
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public SqliteTransferResult importCsv(InputStream inputStream, String table, SqliteTransferOptions options)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        SqliteCsvReader csvReader = new SqliteCsvReader(
+                new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)), options.getDelimiter(), options.isEmptyAsNull());
+        List<String> columns = options.getColumns();
+        if (options.isHeader()) {
+            String[] header = csvReader.next();
+            if (header == null) {
+                return new SqliteTransferResult(0, 0, true);
+            }
+            if (columns == null) {
+                columns = Arrays.asList(header);
+            }
+        }
+        if (columns == null || columns.isEmpty()) {
+            throw new IllegalArgumentException("CSV import needs a header or explicit columns");
+        }
+
+        int columnCount = columns.size();
+        return importRows(table, columns, options, parameters -> {
+            String[] record = csvReader.next();
+            if (record == null) {
+                return false;
+            }
+            if (record.length != columnCount) {
+                throw new IOException("Expected " + columnCount + " fields but found " + record.length
+                        + " in record " + csvReader.getRecordNumber());
+            }
+            for (int i = 0; i < columnCount; i++) {
+                if (record[i] == null) {
+                    parameters.bindNull(i + 1);
+                } else {
+                    parameters.bindString(i + 1, record[i]);
+                }
+            }
+            return true;
+        });
+    }
+
+    /**
+     * This method imports one JSON object per line into a table. Keys map to columns; keys missing from
+     * an object are imported as NULL and keys that are not target columns fail the import
+     *
+     * @param inputStream InputStream
+     * @param table       String
+     * @param options     SqliteTransferOptions
+     * @return SqliteTransferResult
+     * @throws IOException                   IOException
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public SqliteTransferResult importNdjson(InputStream inputStream, String table, SqliteTransferOptions options)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        SqliteJsonLineReader jsonReader = new SqliteJsonLineReader(
+                new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8)));
+        Map<String, Object> first = jsonReader.next();
+        if (first == null) {
+            return new SqliteTransferResult(0, 0, true);
+        }
+        List<String> columns = options.getColumns() != null ? options.getColumns() : new ArrayList<>(first.keySet());
+        Map<String, Integer> indexes = new HashMap<>();
+        for (int i = 0; i < columns.size(); i++) {
+            indexes.put(columns.get(i), i + 1);
+        }
+
+        List<Map<String, Object>> pending = new ArrayList<>(Collections.singletonList(first));
+        return importRows(table, columns, options, parameters -> {
+            Map<String, Object> object = pending.isEmpty() ? jsonReader.next() : pending.remove(0);
+            if (object == null) {
+                return false;
+            }
+            for (int i = 1; i <= columns.size(); i++) {
+                parameters.bindNull(i);
+            }
+            for (Map.Entry<String, Object> entry : object.entrySet()) {
+                Integer index = indexes.get(entry.getKey());
+                if (index == null) {
+                    throw new IOException("Unknown column " + entry.getKey() + " at line " + jsonReader.getLineNumber());
+                }
+                parameters.bindObject(index, entry.getValue());
+            }
+            return true;
+        });
+    }
+
+    /**
+     * This method writes the query result as CSV
+     *
+     * @param sql          String
+     * @param parameters   SqliteParameters or null
+     * @param outputStream OutputStream
+     * @param options      SqliteTransferOptions
+     * @return SqliteTransferResult
+     * @throws IOException                   IOException
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public SqliteTransferResult exportCsv(String sql, SqliteParameters parameters, OutputStream outputStream, SqliteTransferOptions options)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        char delimiter = options.getDelimiter();
+        return exportRows(sql, parameters, outputStream, options, new RowWriter() {
+            @Override
+            public void writeHeader(Writer writer, String[] labels) throws IOException {
+                if (!options.isHeader()) {
+                    return;
+                }
+                for (int i = 0; i < labels.length; i++) {
+                    if (i > 0) {
+                        writer.write(delimiter);
+                    }
+                    writeCsvField(writer, labels[i], delimiter);
+                }
+                writer.write("\r\n");
+            }
+
+            @Override
+            public void writeRow(Writer writer, String[] labels, ResultSet resultSet) throws IOException, SQLException {
+                for (int i = 0; i < labels.length; i++) {
+                    if (i > 0) {
+                        writer.write(delimiter);
+                    }
+                    Object value = resultSet.getObject(i + 1);
+                    if (value instanceof byte[]) {
+                        writer.write(Base64.getEncoder().encodeToString((byte[]) value));
+                    } else if (value instanceof String && ((String) value).isEmpty()) {
+                        // Quoted so it reads back as an empty string rather than NULL
+                        writer.write("\"\"");
+                    } else if (value != null) {
+                        writeCsvField(writer, value.toString(), delimiter);
+                    }
+                }
+                writer.write("\r\n");
+            }
+        });
+    }
+
+    /**
+     * This method writes the query result as one JSON object per line. Blobs are written as base64 strings
+     *
+     * @param sql          String
+     * @param parameters   SqliteParameters or null
+     * @param outputStream OutputStream
+     * @param options      SqliteTransferOptions
+     * @return SqliteTransferResult
+     * @throws IOException                   IOException
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public SqliteTransferResult exportNdjson(String sql, SqliteParameters parameters, OutputStream outputStream, SqliteTransferOptions options)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        return exportRows(sql, parameters, outputStream, options, new RowWriter() {
+            @Override
+            public void writeHeader(Writer writer, String[] labels) {
+            }
+
+            @Override
+            public void writeRow(Writer writer, String[] labels, ResultSet resultSet) throws IOException, SQLException {
+                writer.write('{');
+                for (int i = 0; i < labels.length; i++) {
+                    if (i > 0) {
+                        writer.write(',');
+                    }
+                    writeJsonString(writer, labels[i]);
+                    writer.write(':');
+                    Object value = resultSet.getObject(i + 1);
+                    if (value == null) {
+                        writer.write("null");
+                    } else if (value instanceof Double || value instanceof Float) {
+                        double number = ((Number) value).doubleValue();
+                        writer.write(Double.isNaN(number) || Double.isInfinite(number) ? "null" : value.toString());
+                    } else if (value instanceof Number) {
+                        writer.write(value.toString());
+                    } else if (value instanceof byte[]) {
+                        writeJsonString(writer, Base64.getEncoder().encodeToString((byte[]) value));
+                    } else {
+                        writeJsonString(writer, value.toString());
+                    }
+                }
+                writer.write("}\n");
+            }
+        });
+    }
+
+    private SqliteTransferResult importRows(String table, List<String> columns, SqliteTransferOptions options, RowSource rowSource)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        String sql = insertSql(table, columns);
+        int chunkSize = Math.max(1, options.getChunkSize());
+        SqliteParameters parameters = new SqliteParameters(columns.size());
+        long startNanos = System.nanoTime();
+        long rows = 0;
+
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(true)) {
+            Connection connection = lease.getConnection();
+            // Inside runInTransaction the rows join the caller's transaction instead of committing in chunks.
+            // SQLite refuses to change synchronous inside a transaction, so the relaxation is skipped there
+            boolean ownTransaction = connection.getAutoCommit();
+            String synchronous = options.isRelaxedPragmas() && ownTransaction ? relaxPragmas(connection) : null;
+            try {
+                PreparedStatement preparedStatement = lease.prepareStatement(sql);
+                if (ownTransaction) {
+                    connection.setAutoCommit(false);
+                }
+                try {
+                    while (rowSource.next(parameters.clear())) {
+                        parameters.bindTo(preparedStatement);
+                        preparedStatement.executeUpdate();
+                        if (++rows % chunkSize == 0) {
+                            if (ownTransaction) {
+                                connection.commit();
+                            }
+                            report(options, rows, startNanos, false);
+                        }
+                    }
+                    if (ownTransaction) {
+                        connection.commit();
+                    }
+                } catch (Throwable throwable) {
+                    if (ownTransaction) {
+                        try {
+                            connection.rollback();
+                        } catch (SQLException sqlException) {
+                            throwable.addSuppressed(sqlException);
+                        }
+                    }
+                    throw throwable;
+                } finally {
+                    if (ownTransaction) {
+                        connection.setAutoCommit(true);
+                    }
+                }
+            } finally {
+                if (synchronous != null) {
+                    try (Statement statement = connection.createStatement()) {
+                        statement.execute("PRAGMA synchronous=" + synchronous);
+                    }
+                }
+            }
+        } finally {
+            sqliteRepository.invalidateResultCache(sql);
+        }
+        return report(options, rows, startNanos, true);
+    }
+
+    private SqliteTransferResult exportRows(String sql, SqliteParameters parameters, OutputStream outputStream,
+                                            SqliteTransferOptions options, RowWriter rowWriter)
+            throws IOException, SQLException, SqliteDriverNotFoundException {
+        int chunkSize = Math.max(1, options.getChunkSize());
+        int fetchSize = sqliteRepository.getSqliteConfig().getFetchSize();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+        long startNanos = System.nanoTime();
+        long rows = 0;
+
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+            PreparedStatement preparedStatement = lease.prepareStatement(sql.trim());
+            if (parameters != null) {
+                parameters.bindTo(preparedStatement);
+            }
+            if (fetchSize > 0) {
+                preparedStatement.setFetchSize(fetchSize);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                ResultSetMetaData metaData = resultSet.getMetaData();
+                String[] labels = new String[metaData.getColumnCount()];
+                for (int i = 0; i < labels.length; i++) {
+                    labels[i] = metaData.getColumnLabel(i + 1);
+                }
+                rowWriter.writeHeader(writer, labels);
+                while (resultSet.next()) {
+                    rowWriter.writeRow(writer, labels, resultSet);
+                    if (++rows % chunkSize == 0) {
+                        report(options, rows, startNanos, false);
+                    }
+                }
+            }
+        }
+        writer.flush();
+        return report(options, rows, startNanos, true);
+    }
+
+    /**
+     * This method turns fsync off for the load and returns the previous setting so it can be restored
+     */
+    private String relaxPragmas(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            String synchronous;
+            try (ResultSet resultSet = statement.executeQuery("PRAGMA synchronous")) {
+                synchronous = resultSet.next() ? resultSet.getString(1) : "2";
+            }
+            statement.execute("PRAGMA synchronous=OFF");
+            return synchronous;
+        }
+    }
+
+    private SqliteTransferResult report(SqliteTransferOptions options, long rows, long startNanos, boolean finished) {
+        SqliteTransferResult result = new SqliteTransferResult(rows, System.nanoTime() - startNanos, finished);
+        if (options.getListener() != null) {
+            options.getListener().onProgress(result);
+        }
+        return result;
+    }
+
+    private static String insertSql(String table, List<String> columns) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(quoteIdentifier(table)).append(" (");
+        StringBuilder placeholders = new StringBuilder();
+        for (int i = 0; i < columns.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+                placeholders.append(", ");
+            }
+            sql.append(quoteIdentifier(columns.get(i)));
+            placeholders.append('?');
+        }
+        return sql.append(") VALUES (").append(placeholders).append(')').toString();
+    }
+
+    static String quoteIdentifier(String identifier) {
+        return "\"" + identifier.replace("\"", "\"\"") + "\"";
+    }
+
+    private static void writeCsvField(Writer writer, String value, char delimiter) throws IOException {
+        boolean quote = false;
+        for (int i = 0; i < value.length() && !quote; i++) {
+            char character = value.charAt(i);
+            quote = character == delimiter || character == '"' || character == '\n' || character == '\r';
+        }
+        if (!quote) {
+            writer.write(value);
+            return;
+        }
+        writer.write('"');
+        writer.write(value.replace("\"", "\"\""));
+        writer.write('"');
+    }
+
+    private static void writeJsonString(Writer writer, String value) throws IOException {
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char character = value.charAt(i);
+            switch (character) {
+                case '"':
+                    writer.write("\\\"");
+                    break;
+                case '\\':
+                    writer.write("\\\\");
+                    break;
+                case '\n':
+                    writer.write("\\n");
+                    break;
+                case '\r':
+                    writer.write("\\r");
+                    break;
+                case '\t':
+                    writer.write("\\t");
+                    break;
+                default:
+                    if (character < 0x20) {
+                        writer.write(String.format("\\u%04x", (int) character));
+                    } else {
+                        writer.write(character);
+                    }
+                    break;
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * Binds the next input row, returns false at the end of the input
+     */
+    private interface RowSource {
+        boolean next(SqliteParameters parameters) throws IOException, SQLException;
+    }
+
+    private interface RowWriter {
+        void writeHeader(Writer writer, String[] labels) throws IOException;
+
+        void writeRow(Writer writer, String[] labels, ResultSet resultSet) throws IOException, SQLException;
+    }
+}
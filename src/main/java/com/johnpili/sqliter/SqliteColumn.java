@@ -0,0 +1,72 @@
+package com.johnpili.sqliter;
+
+/**
+ * Column of a table as reported by PRAGMA table_info
+ *
+ * @author John Pili
+ */
+public class SqliteColumn {
+    private final String name;
+    private final String type;
+    private final boolean notNull;
+    private final String defaultValue;
+    private final int primaryKeyPosition;
+
+    public SqliteColumn(String name, String type, boolean notNull, String defaultValue, int primaryKeyPosition) {
+        this.name = name;
+        this.type = type;
+        this.notNull = notNull;
+        this.defaultValue = defaultValue;
+        this.primaryKeyPosition = primaryKeyPosition;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Declared type, empty when the column was declared without one
+     *
+     * @return String
+     */
+    public String getType() {
+        return type;
+    }
+
+    public boolean isNotNull() {
+        return notNull;
+    }
+
+    /**
+     * Default value as SQL text, for example 'x' or CURRENT_TIMESTAMP, or null
+     *
+     * @return String
+     */
+    public String getDefaultValue() {
+        return defaultValue;
+    }
+
+    /**
+     * 1-based position of the column in the primary key, 0 when it is not part of it
+     *
+     * @return int
+     */
+    public int getPrimaryKeyPosition() {
+        return primaryKeyPosition;
+    }
+
+    public boolean isPrimaryKey() {
+        return primaryKeyPosition > 0;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteColumn{" +
+                "name='" + name + '\'' +
+                ", type='" + type + '\'' +
+                ", notNull=" + notNull +
+                ", defaultValue='" + defaultValue + '\'' +
+                ", primaryKeyPosition=" + primaryKeyPosition +
+                '}';
+    }
+}
@@ -0,0 +1,247 @@
+package com.johnpili.sqliter;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Query result stored column by column in primitive arrays. Numbers are read with getLong, getInt and
+ * getDouble straight into the arrays, so no row object and no boxed value is created, and text columns are
+ * dictionary-encoded so every distinct value is kept once. The arrays grow by doubling and are kept when the
+ * batch is filled again, so a batch reused across calls stops allocating once it reached its largest size.
+ * The arrays are returned as they are and are longer than size(), only the first size() entries are valid.
+ * A batch must not be shared between threads
+ *
+ * @author John Pili
+ */
+public final class SqliteColumnBatch {
+    private static final int NO_CODE = -1;
+
+    private final SqliteColumnType[] types;
+    private final String[] names;
+    private final long[][] longs;
+    private final int[][] ints;
+    private final double[][] doubles;
+    private final long[][] nulls;
+    private final List<Map<String, Integer>> dictionaryCodes;
+    private final List<List<String>> dictionaries;
+    private int capacity;
+    private int size;
+
+    /**
+     * @param types SqliteColumnType of every result column, in select list order
+     */
+    public SqliteColumnBatch(SqliteColumnType... types) {
+        this(16, types);
+    }
+
+    /**
+     * @param initialCapacity int rows allocated up front
+     * @param types           SqliteColumnType of every result column, in select list order
+     */
+    public SqliteColumnBatch(int initialCapacity, SqliteColumnType... types) {
+        this.types = types.clone();
+        this.names = new String[types.length];
+        this.longs = new long[types.length][];
+        this.ints = new int[types.length][];
+        this.doubles = new double[types.length][];
+        this.nulls = new long[types.length][];
+        this.dictionaryCodes = new ArrayList<>(types.length);
+        this.dictionaries = new ArrayList<>(types.length);
+        for (SqliteColumnType type : types) {
+            dictionaryCodes.add(type == SqliteColumnType.STRING ? new HashMap<>() : null);
+            dictionaries.add(type == SqliteColumnType.STRING ? new ArrayList<>() : null);
+        }
+        allocate(Math.max(1, initialCapacity));
+    }
+
+    /**
+     * Number of rows in the batch
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getColumnCount() {
+        return types.length;
+    }
+
+    public SqliteColumnType getType(int column) {
+        return types[column];
+    }
+
+    /**
+     * Column label, known once the batch was filled
+     *
+     * @param column int 0-based
+     * @return String
+     */
+    public String getColumnName(int column) {
+        return names[column];
+    }
+
+    /**
+     * This method finds a column by label, ignoring case
+     *
+     * @param name String
+     * @return int 0-based index
+     * @throws IllegalArgumentException when there is no such column
+     */
+    public int getColumnIndex(String name) {
+        for (int i = 0; i < names.length; i++) {
+            if (name.equalsIgnoreCase(names[i])) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException("No column " + name);
+    }
+
+    public long[] getLongs(int column) {
+        return column(longs, column, SqliteColumnType.LONG);
+    }
+
+    public int[] getInts(int column) {
+        return column(ints, column, SqliteColumnType.INT);
+    }
+
+    public double[] getDoubles(int column) {
+        return column(doubles, column, SqliteColumnType.DOUBLE);
+    }
+
+    /**
+     * Dictionary codes of a text column, -1 for NULL
+     *
+     * @param column int 0-based
+     * @return int[]
+     */
+    public int[] getCodes(int column) {
+        return column(ints, column, SqliteColumnType.STRING);
+    }
+
+    /**
+     * Distinct values of a text column in order of first appearance, indexed by code
+     *
+     * @param column int 0-based
+     * @return List&lt;String&gt;
+     */
+    public List<String> getDictionary(int column) {
+        column(ints, column, SqliteColumnType.STRING);
+        return dictionaries.get(column);
+    }
+
+    public String getString(int column, int row) {
+        int code = getCodes(column)[row];
+        return code == NO_CODE ? null : dictionaries.get(column).get(code);
+    }
+
+    /**
+     * True when the value was SQL NULL. The numeric arrays hold 0 for it
+     *
+     * @param column int 0-based
+     * @param row    int
+     * @return boolean
+     */
+    public boolean isNull(int column, int row) {
+        return (nulls[column][row >>> 6] & (1L << row)) != 0;
+    }
+
+    /**
+     * Empties the batch and keeps its arrays
+     */
+    void clear(ResultSetMetaData metaData) throws SQLException {
+        if (metaData.getColumnCount() != types.length) {
+            throw new SQLException("The query returns " + metaData.getColumnCount() + " columns but the batch has "
+                    + types.length + " column types");
+        }
+        for (int i = 0; i < types.length; i++) {
+            names[i] = metaData.getColumnLabel(i + 1);
+            Arrays.fill(nulls[i], 0, (size + 63) >>> 6, 0L);
+            if (types[i] == SqliteColumnType.STRING) {
+                dictionaryCodes.get(i).clear();
+                dictionaries.get(i).clear();
+            }
+        }
+        size = 0;
+    }
+
+    /**
+     * This method appends the current row of the result set
+     */
+    void append(ResultSet resultSet) throws SQLException {
+        if (size == capacity) {
+            allocate(capacity * 2);
+        }
+        int row = size;
+        for (int i = 0; i < types.length; i++) {
+            int column = i + 1;
+            boolean isNull;
+            switch (types[i]) {
+                case LONG:
+                    longs[i][row] = resultSet.getLong(column);
+                    isNull = longs[i][row] == 0 && resultSet.wasNull();
+                    break;
+                case INT:
+                    ints[i][row] = resultSet.getInt(column);
+                    isNull = ints[i][row] == 0 && resultSet.wasNull();
+                    break;
+                case DOUBLE:
+                    doubles[i][row] = resultSet.getDouble(column);
+                    isNull = doubles[i][row] == 0 && resultSet.wasNull();
+                    break;
+                default:
+                    String value = resultSet.getString(column);
+                    isNull = value == null;
+                    ints[i][row] = isNull ? NO_CODE : code(i, value);
+                    break;
+            }
+            if (isNull) {
+                nulls[i][row >>> 6] |= 1L << row;
+            }
+        }
+        size++;
+    }
+
+    private int code(int column, String value) {
+        Map<String, Integer> codes = dictionaryCodes.get(column);
+        Integer code = codes.get(value);
+        if (code == null) {
+            code = codes.size();
+            codes.put(value, code);
+            dictionaries.get(column).add(value);
+        }
+        return code;
+    }
+
+    private void allocate(int newCapacity) {
+        for (int i = 0; i < types.length; i++) {
+            switch (types[i]) {
+                case LONG:
+                    longs[i] = longs[i] == null ? new long[newCapacity] : Arrays.copyOf(longs[i], newCapacity);
+                    break;
+                case DOUBLE:
+                    doubles[i] = doubles[i] == null ? new double[newCapacity] : Arrays.copyOf(doubles[i], newCapacity);
+                    break;
+                default:
+                    ints[i] = ints[i] == null ? new int[newCapacity] : Arrays.copyOf(ints[i], newCapacity);
+                    break;
+            }
+            int words = (newCapacity + 63) >>> 6;
+            nulls[i] = nulls[i] == null ? new long[words] : Arrays.copyOf(nulls[i], words);
+        }
+        capacity = newCapacity;
+    }
+
+    private <A> A column(A[] arrays, int column, SqliteColumnType expected) {
+        if (types[column] != expected) {
+            throw new IllegalArgumentException("Column " + column + " is " + types[column] + ", not " + expected);
+        }
+        return arrays[column];
+    }
+}
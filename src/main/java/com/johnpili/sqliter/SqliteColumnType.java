@@ -0,0 +1,25 @@
+package com.johnpili.sqliter;
+
+/**
+ * How a column is stored in a {@link SqliteColumnBatch}
+ *
+ * @author John Pili
+ */
+public enum SqliteColumnType {
+    /**
+     * long[] read with getLong
+     */
+    LONG,
+    /**
+     * int[] read with getInt
+     */
+    INT,
+    /**
+     * double[] read with getDouble
+     */
+    DOUBLE,
+    /**
+     * Dictionary-encoded text, an int[] of codes into the distinct values of the batch
+     */
+    STRING
+}
@@ -1,16 +1,74 @@
 package com.johnpili.sqliter;
 
+import java.util.ArrayList;
+import java.util.List;
+
 /**
  * @author John Pili
  */
 public class SqliteConfig {
     private String dbLocation;
+    private boolean pooled;
+    private int maxReadConnections;
+    private long connectionTimeoutMillis;
+    private long validationIntervalMillis;
+    private int validationTimeoutSeconds;
+    private int statementCacheSize;
+    private int batchSize;
+    private int fetchSize;
+    private int asyncWriteQueueCapacity;
+    private int asyncWriteMaxBatchSize;
+    private long asyncWriteMaxDelayMillis;
+    private SqlitePragmaProfile pragmaProfile;
+    private int resultCacheSize;
+    private long resultCacheTtlMillis;
+    private SqliteStatementListener statementListener;
+    private int asyncThreads;
+    private int asyncMaxPending;
+    private int maxBindVariables;
+    private long schemaRevalidateMillis;
+    private long slowQueryThresholdMillis;
+    private int slowQueryLogSize;
+    private boolean hotTier;
+    private long hotTierFlushIntervalMillis;
+    private SqliteBackupListener hotTierFlushListener;
+    private int blobChunkSize;
+    private int busyTimeoutMillis;
+    private SqliteRetryPolicy retryPolicy;
+    private List<String> precompiledStatements;
+    private List<String> warmTables;
 
     public SqliteConfig() {
         this.dbLocation = "jdbc:sqlite:";
+        this.pooled = false;
+        this.maxReadConnections = 4;
+        this.connectionTimeoutMillis = 30000;
+        this.validationIntervalMillis = 30000;
+        this.validationTimeoutSeconds = 1;
+        this.statementCacheSize = 64;
+        this.batchSize = 500;
+        this.fetchSize = 0;
+        this.asyncWriteQueueCapacity = 10000;
+        this.asyncWriteMaxBatchSize = 256;
+        this.asyncWriteMaxDelayMillis = 1;
+        this.resultCacheSize = 0;
+        this.resultCacheTtlMillis = 60000;
+        this.asyncThreads = 0;
+        this.asyncMaxPending = 1000;
+        this.maxBindVariables = 32766;
+        this.schemaRevalidateMillis = 1000;
+        this.slowQueryThresholdMillis = 0;
+        this.slowQueryLogSize = 100;
+        this.hotTier = false;
+        this.hotTierFlushIntervalMillis = 5000;
+        this.blobChunkSize = 1048576;
+        this.busyTimeoutMillis = 3000;
+        this.precompiledStatements = new ArrayList<>();
+        this.warmTables = new ArrayList<>();
     }
 
     public SqliteConfig(String dbLocation) {
+        this();
         this.dbLocation = dbLocation;
     }
 
@@ -24,4 +82,396 @@ public class SqliteConfig {
     public void setDbLocation(String dbLocation) {
         this.dbLocation = dbLocation;
     }
+
+    /**
+     * Returns true when the database lives in process memory. Each connection to a private in-memory database
+     * sees its own empty database, so the pool routes reads to the write connection in that case
+     *
+     * @return boolean
+     */
+    public boolean isInMemory() {
+        return isInMemory(getDbLocation());
+    }
+
+    static boolean isInMemory(String dbLocation) {
+        String location = dbLocation.substring("jdbc:sqlite:".length());
+        return location.isEmpty() || location.startsWith(":memory:") || location.contains("mode=memory");
+    }
+
+    public boolean isPooled() {
+        return pooled;
+    }
+
+    /**
+     * Enables the pooled mode where the repository keeps warm read-only connections and one dedicated write
+     * connection instead of opening a new connection for every operation
+     *
+     * @param pooled boolean
+     */
+    public void setPooled(boolean pooled) {
+        this.pooled = pooled;
+    }
+
+    public int getMaxReadConnections() {
+        return maxReadConnections;
+    }
+
+    public void setMaxReadConnections(int maxReadConnections) {
+        this.maxReadConnections = maxReadConnections;
+    }
+
+    public long getConnectionTimeoutMillis() {
+        return connectionTimeoutMillis;
+    }
+
+    /**
+     * Maximum time a caller waits for a pooled connection before a SQLTimeoutException is thrown
+     *
+     * @param connectionTimeoutMillis long
+     */
+    public void setConnectionTimeoutMillis(long connectionTimeoutMillis) {
+        this.connectionTimeoutMillis = connectionTimeoutMillis;
+    }
+
+    public long getValidationIntervalMillis() {
+        return validationIntervalMillis;
+    }
+
+    /**
+     * Pooled connections that have been idle longer than this are validated before they are handed out
+     *
+     * @param validationIntervalMillis long
+     */
+    public void setValidationIntervalMillis(long validationIntervalMillis) {
+        this.validationIntervalMillis = validationIntervalMillis;
+    }
+
+    public int getValidationTimeoutSeconds() {
+        return validationTimeoutSeconds;
+    }
+
+    public void setValidationTimeoutSeconds(int validationTimeoutSeconds) {
+        this.validationTimeoutSeconds = validationTimeoutSeconds;
+    }
+
+    public int getStatementCacheSize() {
+        return statementCacheSize;
+    }
+
+    /**
+     * Number of prepared statements cached per pooled connection. Zero disables the cache, otherwise at least 2
+     *
+     * @param statementCacheSize int
+     */
+    public void setStatementCacheSize(int statementCacheSize) {
+        this.statementCacheSize = statementCacheSize;
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * Number of parameter sets sent to the driver per executeBatch call by the batch methods
+     *
+     * @param batchSize int
+     */
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    public int getFetchSize() {
+        return fetchSize;
+    }
+
+    /**
+     * Fetch size hint passed to the driver by the streaming methods. Zero keeps the driver default
+     *
+     * @param fetchSize int
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = fetchSize;
+    }
+
+    public int getAsyncWriteQueueCapacity() {
+        return asyncWriteQueueCapacity;
+    }
+
+    public void setAsyncWriteQueueCapacity(int asyncWriteQueueCapacity) {
+        this.asyncWriteQueueCapacity = asyncWriteQueueCapacity;
+    }
+
+    public int getAsyncWriteMaxBatchSize() {
+        return asyncWriteMaxBatchSize;
+    }
+
+    /**
+     * Maximum number of queued writes committed together by the async writer
+     *
+     * @param asyncWriteMaxBatchSize int
+     */
+    public void setAsyncWriteMaxBatchSize(int asyncWriteMaxBatchSize) {
+        this.asyncWriteMaxBatchSize = asyncWriteMaxBatchSize;
+    }
+
+    public long getAsyncWriteMaxDelayMillis() {
+        return asyncWriteMaxDelayMillis;
+    }
+
+    /**
+     * Time the async writer keeps collecting writes for a group before it commits
+     *
+     * @param asyncWriteMaxDelayMillis long
+     */
+    public void setAsyncWriteMaxDelayMillis(long asyncWriteMaxDelayMillis) {
+        this.asyncWriteMaxDelayMillis = asyncWriteMaxDelayMillis;
+    }
+
+    public SqlitePragmaProfile getPragmaProfile() {
+        return pragmaProfile;
+    }
+
+    /**
+     * Performance pragmas applied once to every new connection. Null keeps the SQLite defaults
+     *
+     * @param pragmaProfile SqlitePragmaProfile
+     */
+    public void setPragmaProfile(SqlitePragmaProfile pragmaProfile) {
+        this.pragmaProfile = pragmaProfile;
+    }
+
+    public int getResultCacheSize() {
+        return resultCacheSize;
+    }
+
+    /**
+     * Maximum number of getSingle and getList results kept in the result cache. Zero disables the cache
+     *
+     * @param resultCacheSize int
+     */
+    public void setResultCacheSize(int resultCacheSize) {
+        this.resultCacheSize = resultCacheSize;
+    }
+
+    public long getResultCacheTtlMillis() {
+        return resultCacheTtlMillis;
+    }
+
+    /**
+     * Maximum age of a cached result. This also bounds staleness for changes the repository cannot see,
+     * such as writes from other processes, triggers or foreign key cascades
+     *
+     * @param resultCacheTtlMillis long
+     */
+    public void setResultCacheTtlMillis(long resultCacheTtlMillis) {
+        this.resultCacheTtlMillis = resultCacheTtlMillis;
+    }
+
+    public SqliteStatementListener getStatementListener() {
+        return statementListener;
+    }
+
+    /**
+     * Listener notified with the timings of every insert, update, delete, getSingle and getList.
+     * Null, the default, turns instrumentation off
+     *
+     * @param statementListener SqliteStatementListener, for example a SqliteStatementMetrics
+     */
+    public void setStatementListener(SqliteStatementListener statementListener) {
+        this.statementListener = statementListener;
+    }
+
+    public int getAsyncThreads() {
+        return asyncThreads;
+    }
+
+    /**
+     * Worker threads of the AsyncSqliteRepository default executor. Zero uses virtual threads when the
+     * JVM has them and otherwise one platform thread per pooled connection
+     *
+     * @param asyncThreads int
+     */
+    public void setAsyncThreads(int asyncThreads) {
+        this.asyncThreads = asyncThreads;
+    }
+
+    public int getAsyncMaxPending() {
+        return asyncMaxPending;
+    }
+
+    /**
+     * Maximum number of AsyncSqliteRepository operations submitted but not yet finished.
+     * Operations beyond the limit fail immediately with a SQLTransientException
+     *
+     * @param asyncMaxPending int
+     */
+    public void setAsyncMaxPending(int asyncMaxPending) {
+        this.asyncMaxPending = asyncMaxPending;
+    }
+
+    public int getMaxBindVariables() {
+        return maxBindVariables;
+    }
+
+    /**
+     * Maximum number of ? placeholders in one generated statement, SQLITE_MAX_VARIABLE_NUMBER of the
+     * SQLite build. Upsert sizes its multi-row VALUES lists to stay below it
+     *
+     * @param maxBindVariables int
+     */
+    public void setMaxBindVariables(int maxBindVariables) {
+        this.maxBindVariables = maxBindVariables;
+    }
+
+    public long getSchemaRevalidateMillis() {
+        return schemaRevalidateMillis;
+    }
+
+    /**
+     * How long cached table, column and index metadata is trusted before PRAGMA schema_version is checked
+     * for changes made by other processes. Zero checks on every lookup
+     *
+     * @param schemaRevalidateMillis long
+     */
+    public void setSchemaRevalidateMillis(long schemaRevalidateMillis) {
+        this.schemaRevalidateMillis = schemaRevalidateMillis;
+    }
+
+    public long getSlowQueryThresholdMillis() {
+        return slowQueryThresholdMillis;
+    }
+
+    /**
+     * Statements that take at least this long are recorded with their parameters and EXPLAIN QUERY PLAN,
+     * see SqliteRepository.getSlowQueries. Zero, the default, turns the slow query log off
+     *
+     * @param slowQueryThresholdMillis long
+     */
+    public void setSlowQueryThresholdMillis(long slowQueryThresholdMillis) {
+        this.slowQueryThresholdMillis = slowQueryThresholdMillis;
+    }
+
+    public int getSlowQueryLogSize() {
+        return slowQueryLogSize;
+    }
+
+    /**
+     * Number of slow statements kept, the oldest are dropped first
+     *
+     * @param slowQueryLogSize int
+     */
+    public void setSlowQueryLogSize(int slowQueryLogSize) {
+        this.slowQueryLogSize = slowQueryLogSize;
+    }
+
+    public boolean isHotTier() {
+        return hotTier;
+    }
+
+    /**
+     * Serves every call from a shared-cache in-memory copy of the database file that is loaded at startup and
+     * written back with the backup API on a schedule, on SqliteRepository.flush and on close. After a crash
+     * the file holds the last completed flush, later changes are lost. The hot tier always uses the pooled mode,
+     * with read connections of their own, and retries SQLITE_LOCKED with the default SqliteRetryPolicy when no
+     * retry policy is set. See SqliteHotTier for its consistency model
+     *
+     * @param hotTier boolean
+     */
+    public void setHotTier(boolean hotTier) {
+        this.hotTier = hotTier;
+    }
+
+    public long getHotTierFlushIntervalMillis() {
+        return hotTierFlushIntervalMillis;
+    }
+
+    /**
+     * Delay between hot tier flushes. A flush is skipped when nothing changed. Zero only flushes on demand and on close
+     *
+     * @param hotTierFlushIntervalMillis long
+     */
+    public void setHotTierFlushIntervalMillis(long hotTierFlushIntervalMillis) {
+        this.hotTierFlushIntervalMillis = hotTierFlushIntervalMillis;
+    }
+
+    public SqliteBackupListener getHotTierFlushListener() {
+        return hotTierFlushListener;
+    }
+
+    /**
+     * Listener notified with the duration and bytes written of every hot tier flush
+     *
+     * @param hotTierFlushListener SqliteBackupListener
+     */
+    public void setHotTierFlushListener(SqliteBackupListener hotTierFlushListener) {
+        this.hotTierFlushListener = hotTierFlushListener;
+    }
+
+    public int getBlobChunkSize() {
+        return blobChunkSize;
+    }
+
+    /**
+     * Bytes moved per statement by the BLOB streaming methods, which bounds their Java heap use. SQLite loads the
+     * whole value for every chunk statement, so larger chunks are cheaper for very large values
+     *
+     * @param blobChunkSize int
+     */
+    public void setBlobChunkSize(int blobChunkSize) {
+        this.blobChunkSize = blobChunkSize;
+    }
+
+    public int getBusyTimeoutMillis() {
+        return busyTimeoutMillis;
+    }
+
+    /**
+     * How long SQLite waits for a lock held by another connection before it fails with SQLITE_BUSY.
+     * A busy_timeout in the pragma profile takes precedence
+     *
+     * @param busyTimeoutMillis int
+     */
+    public void setBusyTimeoutMillis(int busyTimeoutMillis) {
+        this.busyTimeoutMillis = busyTimeoutMillis;
+    }
+
+    public SqliteRetryPolicy getRetryPolicy() {
+        return retryPolicy;
+    }
+
+    /**
+     * Retries reads, single statements and whole transactions that still failed with SQLITE_BUSY or
+     * SQLITE_LOCKED after the busy timeout. Null, the default, throws busy errors straight away
+     *
+     * @param retryPolicy SqliteRetryPolicy
+     */
+    public void setRetryPolicy(SqliteRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    public List<String> getPrecompiledStatements() {
+        return precompiledStatements;
+    }
+
+    /**
+     * Hot statements SqliteRepository.initialize compiles into the statement cache of every pooled connection
+     *
+     * @param precompiledStatements List&lt;String&gt;
+     */
+    public void setPrecompiledStatements(List<String> precompiledStatements) {
+        this.precompiledStatements = precompiledStatements;
+    }
+
+    public List<String> getWarmTables() {
+        return warmTables;
+    }
+
+    /**
+     * Tables SqliteRepository.initialize reads together with their indexes to load them into the page cache
+     *
+     * @param warmTables List&lt;String&gt;
+     */
+    public void setWarmTables(List<String> warmTables) {
+        this.warmTables = warmTables;
+    }
 }
@@ -0,0 +1,113 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Opens and prepares raw SQLite connections for the repository and the connection pool
+ *
+ * @author John Pili
+ */
+class SqliteConnectionFactory {
+    private static volatile boolean driverLoaded;
+
+    private final SqliteConfig sqliteConfig;
+    private final String dbLocation;
+    private final boolean sharedCache;
+    private final LongAdder pragmaNanos = new LongAdder();
+
+    SqliteConnectionFactory(SqliteConfig sqliteConfig) {
+        this(sqliteConfig, sqliteConfig.getDbLocation(), false);
+    }
+
+    /**
+     * Factory that opens connections to another database than the configured one, such as the in-memory hot tier
+     *
+     * @param sqliteConfig SqliteConfig
+     * @param dbLocation   String JDBC URL
+     * @param sharedCache  boolean the location is a shared-cache database every connection sees
+     */
+    SqliteConnectionFactory(SqliteConfig sqliteConfig, String dbLocation, boolean sharedCache) {
+        this.sqliteConfig = sqliteConfig;
+        this.dbLocation = dbLocation;
+        this.sharedCache = sharedCache;
+    }
+
+    boolean isInMemory() {
+        return SqliteConfig.isInMemory(dbLocation);
+    }
+
+    /**
+     * True when separate read-only connections see the same data as the write connection.
+     * A private in-memory database is empty for every other connection, a shared-cache one is not
+     *
+     * @return boolean
+     */
+    boolean hasSharedReaders() {
+        return !isInMemory() || sharedCache;
+    }
+
+    /**
+     * This method loads the SQLite JDBC driver class the first time it is called, later calls return at once
+     *
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    static void loadDriver() throws SqliteDriverNotFoundException {
+        if (driverLoaded) {
+            return;
+        }
+        try {
+            Class.forName("org.sqlite.JDBC");
+        } catch (ClassNotFoundException classNotFoundException) {
+            throw new SqliteDriverNotFoundException("Cannot load org.sqlite.JDBC driver");
+        }
+        driverLoaded = true;
+    }
+
+    /**
+     * Total time spent applying pragmas to the connections opened by this factory
+     *
+     * @return long
+     */
+    long getPragmaNanos() {
+        return pragmaNanos.sum();
+    }
+
+    /**
+     * This method opens a new connection and applies the busy timeout, the foreign key pragma and the pragma profile
+     *
+     * @param readOnly boolean
+     * @param pragmaFk boolean
+     * @return Connection
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    Connection open(boolean readOnly, boolean pragmaFk) throws SQLException, SqliteDriverNotFoundException {
+        loadDriver();
+
+        org.sqlite.SQLiteConfig driverConfig = new org.sqlite.SQLiteConfig();
+        driverConfig.setBusyTimeout(sqliteConfig.getBusyTimeoutMillis());
+        if (readOnly) {
+            driverConfig.setReadOnly(true);
+        }
+        Connection connection = DriverManager.getConnection(dbLocation, driverConfig.toProperties());
+
+        long start = System.nanoTime();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(pragmaFk ? "PRAGMA foreign_keys=true" : "PRAGMA foreign_keys=false");
+            if (sqliteConfig.getPragmaProfile() != null) {
+                sqliteConfig.getPragmaProfile().apply(connection, readOnly);
+            }
+            pragmaNanos.add(System.nanoTime() - start);
+        } catch (SQLException sqlException) {
+            connection.close();
+            throw sqlException;
+        }
+        return connection;
+    }
+}
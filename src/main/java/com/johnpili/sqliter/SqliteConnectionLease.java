@@ -0,0 +1,135 @@
+package com.johnpili.sqliter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A connection borrowed for the duration of one repository operation.
+ * Closing the lease returns pooled connections to the pool and closes unpooled ones
+ *
+ * @author John Pili
+ */
+class SqliteConnectionLease implements AutoCloseable {
+    private final Connection connection;
+    private final SqlitePooledConnection pooledConnection;
+    private final SqliteConnectionPool connectionPool;
+    private final long waitNanos;
+    private final boolean shared;
+    private List<PreparedStatement> ownedStatements;
+    private boolean released;
+
+    SqliteConnectionLease(Connection connection) {
+        this.connection = connection;
+        this.pooledConnection = null;
+        this.connectionPool = null;
+        this.waitNanos = 0;
+        this.shared = false;
+    }
+
+    SqliteConnectionLease(SqlitePooledConnection pooledConnection, SqliteConnectionPool connectionPool, long waitNanos) {
+        this.connection = pooledConnection.getConnection();
+        this.pooledConnection = pooledConnection;
+        this.connectionPool = connectionPool;
+        this.waitNanos = waitNanos;
+        this.shared = false;
+    }
+
+    private SqliteConnectionLease(SqliteConnectionLease owner) {
+        this.connection = owner.connection;
+        this.pooledConnection = owner.pooledConnection;
+        this.connectionPool = owner.connectionPool;
+        this.waitNanos = 0;
+        this.shared = true;
+    }
+
+    /**
+     * This method returns a lease on the same connection whose close only releases its own statements.
+     * The connection itself stays with this lease
+     *
+     * @return SqliteConnectionLease
+     */
+    SqliteConnectionLease share() {
+        return new SqliteConnectionLease(this);
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * This method returns a prepared statement that stays valid until the lease is closed.
+     * Cached statements are reused with cleared parameters unless an outer lease on the same connection still
+     * holds them, then a fresh statement is prepared. Callers must not close the returned statement
+     *
+     * @param sql String
+     * @return PreparedStatement
+     * @throws SQLException SQLException
+     */
+    PreparedStatement prepareStatement(String sql) throws SQLException {
+        if (pooledConnection != null && pooledConnection.getStatementCache() != null) {
+            PreparedStatement preparedStatement = pooledConnection.getStatementCache().get(sql, this);
+            if (preparedStatement != null) {
+                return preparedStatement;
+            }
+        }
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        if (ownedStatements == null) {
+            ownedStatements = new ArrayList<>();
+        }
+        ownedStatements.add(preparedStatement);
+        return preparedStatement;
+    }
+
+    /**
+     * Time spent waiting for the connection to become available
+     *
+     * @return long
+     */
+    long getWaitNanos() {
+        return waitNanos;
+    }
+
+    @Override
+    public void close() throws SQLException {
+        if (released) {
+            return;
+        }
+        released = true;
+        try {
+            if (pooledConnection != null && pooledConnection.getStatementCache() != null) {
+                pooledConnection.getStatementCache().release(this);
+            }
+            closeOwnedStatements();
+        } finally {
+            if (shared) {
+                return;
+            }
+            if (connectionPool != null) {
+                connectionPool.release(pooledConnection);
+            } else {
+                connection.close();
+            }
+        }
+    }
+
+    private void closeOwnedStatements() throws SQLException {
+        if (ownedStatements == null) {
+            return;
+        }
+        SQLException failure = null;
+        for (PreparedStatement preparedStatement : ownedStatements) {
+            try {
+                preparedStatement.close();
+            } catch (SQLException sqlException) {
+                failure = sqlException;
+            }
+        }
+        ownedStatements = null;
+        if (failure != null) {
+            throw failure;
+        }
+    }
+}
@@ -0,0 +1,328 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of warm read-only connections plus a single dedicated write connection.
+ * SQLite allows only one writer at a time, so writers queue on a fair lock instead of
+ * racing each other for the database lock
+ *
+ * @author John Pili
+ */
+class SqliteConnectionPool implements AutoCloseable {
+    private static final System.Logger LOGGER = System.getLogger(SqliteConnectionPool.class.getName());
+
+    private final SqliteConfig sqliteConfig;
+    private final SqliteConnectionFactory connectionFactory;
+    private final boolean readsOnWriter;
+
+    private final ReentrantLock writerLock = new ReentrantLock(true);
+    private volatile SqlitePooledConnection writer;
+
+    private final Semaphore readerPermits;
+    private final ConcurrentLinkedDeque<SqlitePooledConnection> idleReaders = new ConcurrentLinkedDeque<>();
+    private final AtomicInteger openReaders = new AtomicInteger();
+
+    private final LongAdder acquireCount = new LongAdder();
+    private final LongAdder totalWaitNanos = new LongAdder();
+    private final AtomicLong maxWaitNanos = new AtomicLong();
+    private final LongAdder timeoutCount = new LongAdder();
+    private final LongAdder validationFailureCount = new LongAdder();
+
+    private final SqlitePreparedStatementCache.Counters statementCacheCounters = new SqlitePreparedStatementCache.Counters();
+    private final AtomicLong schemaGeneration = new AtomicLong();
+
+    private volatile boolean closed;
+
+    SqliteConnectionPool(SqliteConfig sqliteConfig, SqliteConnectionFactory connectionFactory) {
+        this.sqliteConfig = sqliteConfig;
+        this.connectionFactory = connectionFactory;
+        this.readsOnWriter = !connectionFactory.hasSharedReaders() || sqliteConfig.getMaxReadConnections() <= 0;
+        this.readerPermits = new Semaphore(Math.max(1, sqliteConfig.getMaxReadConnections()), true);
+        if (sqliteConfig.getStatementCacheSize() == 1) {
+            throw new IllegalArgumentException("statementCacheSize must be 0 or at least 2, operations use up to two statements at once");
+        }
+    }
+
+    /**
+     * This method borrows a connection. Write leases always get the dedicated write connection
+     *
+     * @param write boolean
+     * @return SqliteConnectionLease
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    SqliteConnectionLease acquire(boolean write) throws SQLException, SqliteDriverNotFoundException {
+        if (closed) {
+            throw new SQLException("Connection pool is closed");
+        }
+        long start = System.nanoTime();
+        SqlitePooledConnection pooledConnection = (write || readsOnWriter) ? acquireWriter() : acquireReader();
+        long waitNanos = System.nanoTime() - start;
+        recordWait(waitNanos);
+        // A nested write lease shares the connection with the outer one, which may still use its statements
+        boolean outermost = pooledConnection.isReadOnly() || writerLock.getHoldCount() == 1;
+        if (outermost && pooledConnection.getStatementCache() != null) {
+            pooledConnection.getStatementCache().validate(schemaGeneration.get());
+        }
+        return new SqliteConnectionLease(pooledConnection, this, waitNanos);
+    }
+
+    /**
+     * This method leases the write connection and every read connection at once, opening the ones that do not
+     * exist yet, so the caller can prime each of them. Reads served by the write connection get no extra lease
+     *
+     * @return List&lt;SqliteConnectionLease&gt;, the write lease first
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    List<SqliteConnectionLease> acquireAll() throws SQLException, SqliteDriverNotFoundException {
+        List<SqliteConnectionLease> leases = new ArrayList<>();
+        try {
+            leases.add(acquire(true));
+            if (!readsOnWriter) {
+                for (int i = 0; i < sqliteConfig.getMaxReadConnections(); i++) {
+                    leases.add(acquire(false));
+                }
+            }
+            return leases;
+        } catch (Throwable throwable) {
+            for (SqliteConnectionLease lease : leases) {
+                try {
+                    lease.close();
+                } catch (SQLException sqlException) {
+                    throwable.addSuppressed(sqlException);
+                }
+            }
+            throw throwable;
+        }
+    }
+
+    /**
+     * This method hands a connection back to the pool
+     *
+     * @param pooledConnection SqlitePooledConnection
+     */
+    void release(SqlitePooledConnection pooledConnection) {
+        pooledConnection.touch();
+        if (pooledConnection.isReadOnly()) {
+            if (pooledConnection.getStatementCache() != null) {
+                pooledConnection.getStatementCache().closeEvicted();
+            }
+            if (closed) {
+                pooledConnection.close();
+                openReaders.decrementAndGet();
+            } else {
+                idleReaders.offerFirst(pooledConnection);
+            }
+            readerPermits.release();
+            return;
+        }
+
+        try {
+            resetWriter(pooledConnection);
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    /**
+     * Marks every cached prepared statement as stale after a schema change.
+     * Each connection drops its statements the next time it is borrowed
+     */
+    void invalidateStatements() {
+        schemaGeneration.incrementAndGet();
+    }
+
+    SqliteStatementCacheStatistics getStatementCacheStatistics() {
+        return statementCacheCounters.snapshot();
+    }
+
+    SqlitePoolStatistics getStatistics() {
+        return new SqlitePoolStatistics(acquireCount.sum(), totalWaitNanos.sum(), maxWaitNanos.get(),
+                timeoutCount.sum(), validationFailureCount.sum(), openReaders.get(), idleReaders.size());
+    }
+
+    /**
+     * This method closes the idle connections now and leased ones when their lease is released. A write lease
+     * that is still held after SqliteConfig.getConnectionTimeoutMillis has its connection closed under it
+     */
+    @Override
+    public void close() {
+        closed = true;
+        SqlitePooledConnection idle;
+        while ((idle = idleReaders.pollFirst()) != null) {
+            idle.close();
+            openReaders.decrementAndGet();
+        }
+        boolean locked;
+        try {
+            locked = writerLock.tryLock(sqliteConfig.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            locked = false;
+        }
+        if (!locked) {
+            // The write lease outlived the timeout. Its connection is closed under it, which fails its remaining
+            // statements, and the lease discards the connection when it is released
+            timeoutCount.increment();
+            SqlitePooledConnection leased = writer;
+            if (leased != null) {
+                LOGGER.log(System.Logger.Level.WARNING, "Closing the write connection while it is still leased");
+                try {
+                    leased.getConnection().close();
+                } catch (SQLException ignored) {
+                    // The connection is being discarded, nothing else to do
+                }
+            }
+            return;
+        }
+        try {
+            if (writer != null) {
+                writer.close();
+                writer = null;
+            }
+        } finally {
+            writerLock.unlock();
+        }
+    }
+
+    private SqlitePooledConnection acquireWriter() throws SQLException, SqliteDriverNotFoundException {
+        try {
+            if (!writerLock.tryLock(sqliteConfig.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTimeoutException("Timed out waiting for the write connection");
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for the write connection", interruptedException);
+        }
+
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool is closed");
+            }
+            if (writer != null && !isHealthy(writer)) {
+                writer.close();
+                writer = null;
+            }
+            if (writer == null) {
+                writer = newPooledConnection(false);
+            }
+            return writer;
+        } catch (SQLException | SqliteDriverNotFoundException | RuntimeException exception) {
+            writerLock.unlock();
+            throw exception;
+        }
+    }
+
+    private SqlitePooledConnection acquireReader() throws SQLException, SqliteDriverNotFoundException {
+        try {
+            if (!readerPermits.tryAcquire(sqliteConfig.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                timeoutCount.increment();
+                throw new SQLTimeoutException("Timed out waiting for a read connection");
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("Interrupted while waiting for a read connection", interruptedException);
+        }
+
+        try {
+            SqlitePooledConnection reader;
+            while ((reader = idleReaders.pollFirst()) != null) {
+                if (isHealthy(reader)) {
+                    return reader;
+                }
+                reader.close();
+                openReaders.decrementAndGet();
+            }
+            reader = newPooledConnection(true);
+            openReaders.incrementAndGet();
+            return reader;
+        } catch (SQLException | SqliteDriverNotFoundException | RuntimeException exception) {
+            readerPermits.release();
+            throw exception;
+        }
+    }
+
+    private SqlitePooledConnection newPooledConnection(boolean readOnly) throws SQLException, SqliteDriverNotFoundException {
+        Connection connection = connectionFactory.open(readOnly, true);
+        SqlitePreparedStatementCache statementCache = null;
+        if (sqliteConfig.getStatementCacheSize() > 0) {
+            statementCache = new SqlitePreparedStatementCache(connection, sqliteConfig.getStatementCacheSize(),
+                    statementCacheCounters, schemaGeneration.get());
+        }
+        return new SqlitePooledConnection(connection, readOnly, statementCache);
+    }
+
+    /**
+     * Connections that sat idle longer than the validation interval are checked before reuse
+     */
+    private boolean isHealthy(SqlitePooledConnection pooledConnection) {
+        try {
+            Connection connection = pooledConnection.getConnection();
+            if (connection.isClosed()) {
+                validationFailureCount.increment();
+                return false;
+            }
+            long idleNanos = System.nanoTime() - pooledConnection.getLastUsedNanos();
+            if (idleNanos > TimeUnit.MILLISECONDS.toNanos(sqliteConfig.getValidationIntervalMillis())
+                    && !connection.isValid(sqliteConfig.getValidationTimeoutSeconds())) {
+                validationFailureCount.increment();
+                return false;
+            }
+            return true;
+        } catch (SQLException sqlException) {
+            validationFailureCount.increment();
+            return false;
+        }
+    }
+
+    /**
+     * A write lease must never leak an open transaction to the next borrower
+     */
+    private void resetWriter(SqlitePooledConnection pooledConnection) {
+        if (writerLock.getHoldCount() > 1) {
+            // A nested lease on the same thread, the outermost lease owns the connection state
+            return;
+        }
+        if (pooledConnection.getStatementCache() != null) {
+            pooledConnection.getStatementCache().closeEvicted();
+        }
+        try {
+            Connection connection = pooledConnection.getConnection();
+            if (!connection.getAutoCommit()) {
+                connection.rollback();
+                connection.setAutoCommit(true);
+            }
+        } catch (SQLException sqlException) {
+            pooledConnection.close();
+            if (writer == pooledConnection) {
+                writer = null;
+            }
+        }
+        if (closed && writer != null) {
+            writer.close();
+            writer = null;
+        }
+    }
+
+    private void recordWait(long waitNanos) {
+        acquireCount.increment();
+        totalWaitNanos.add(waitNanos);
+        maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+    }
+}
@@ -0,0 +1,107 @@
+package com.johnpili.sqliter;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Streaming RFC 4180 reader. Quoted fields may contain delimiters, doubled quotes and line breaks.
+ * Only the current record is held in memory
+ *
+ * @author John Pili
+ */
+class SqliteCsvReader {
+    private static final int NONE = -2;
+
+    private final Reader reader;
+    private final char delimiter;
+    private final boolean emptyAsNull;
+    private final StringBuilder field = new StringBuilder();
+    private final List<String> fields = new ArrayList<>();
+    private int pushedBack = NONE;
+    private long recordNumber;
+
+    SqliteCsvReader(Reader reader, char delimiter, boolean emptyAsNull) {
+        this.reader = reader;
+        this.delimiter = delimiter;
+        this.emptyAsNull = emptyAsNull;
+    }
+
+    /**
+     * This method reads the next record, skipping blank lines
+     *
+     * @return String[] or null at the end of the input
+     * @throws IOException IOException
+     */
+    String[] next() throws IOException {
+        fields.clear();
+        field.setLength(0);
+        boolean quoted = false;
+        boolean inQuotes = false;
+        while (true) {
+            int character = read();
+            if (inQuotes) {
+                if (character == -1) {
+                    throw new IOException("Unterminated quoted field in record " + (recordNumber + 1));
+                }
+                if (character == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        inQuotes = false;
+                        pushedBack = following;
+                    }
+                } else {
+                    field.append((char) character);
+                }
+                continue;
+            }
+            if (character == -1 || character == '\n' || character == '\r') {
+                if (character == '\r') {
+                    int following = read();
+                    if (following != '\n') {
+                        pushedBack = following;
+                    }
+                }
+                if (fields.isEmpty() && field.length() == 0 && !quoted) {
+                    if (character == -1) {
+                        return null;
+                    }
+                    continue;
+                }
+                endField(quoted);
+                recordNumber++;
+                return fields.toArray(new String[0]);
+            }
+            if (character == delimiter) {
+                endField(quoted);
+                quoted = false;
+            } else if (character == '"' && field.length() == 0 && !quoted) {
+                inQuotes = true;
+                quoted = true;
+            } else {
+                field.append((char) character);
+            }
+        }
+    }
+
+    long getRecordNumber() {
+        return recordNumber;
+    }
+
+    private void endField(boolean quoted) {
+        fields.add(field.length() == 0 && !quoted && emptyAsNull ? null : field.toString());
+        field.setLength(0);
+    }
+
+    private int read() throws IOException {
+        if (pushedBack != NONE) {
+            int character = pushedBack;
+            pushedBack = NONE;
+            return character;
+        }
+        return reader.read();
+    }
+}
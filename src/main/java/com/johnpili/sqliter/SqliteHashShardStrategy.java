@@ -0,0 +1,54 @@
+package com.johnpili.sqliter;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Spreads keys evenly by a stable 64-bit hash. Integral numbers hash by value, so 42 and 42L land on the
+ * same shard, and strings hash their UTF-8 bytes, so the placement does not depend on the JVM.
+ * Changing the shard count moves most keys
+ *
+ * @author John Pili
+ */
+public class SqliteHashShardStrategy implements SqliteShardStrategy {
+    private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    @Override
+    public int shardFor(Object routingKey, int shardCount) {
+        if (routingKey == null) {
+            throw new IllegalArgumentException("Routing key must not be null");
+        }
+        return (int) Long.remainderUnsigned(mix(hash(routingKey)), shardCount);
+    }
+
+    static long hash(Object routingKey) {
+        if (routingKey instanceof Long || routingKey instanceof Integer || routingKey instanceof Short || routingKey instanceof Byte) {
+            return ((Number) routingKey).longValue();
+        }
+        if (routingKey instanceof byte[]) {
+            return fnv((byte[]) routingKey);
+        }
+        return fnv(routingKey.toString().getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static long fnv(byte[] bytes) {
+        long hash = FNV_OFFSET_BASIS;
+        for (byte value : bytes) {
+            hash ^= value & 0xff;
+            hash *= FNV_PRIME;
+        }
+        return hash;
+    }
+
+    /**
+     * Finalizer of MurmurHash3, so sequential IDs do not land on the shards round robin in lockstep
+     */
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+}
@@ -0,0 +1,209 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Keeps the configured database file in a shared-cache in-memory database and writes it back with the
+ * backup API. A flush first copies the memory database into a second in-memory staging database while it
+ * holds the write connection, which is a memory copy, and then writes the staging copy to the file without
+ * holding anything, so readers and writers only wait for the memory copy and never for disk I/O.
+ * <p>
+ * The backup writes the file in one transaction, so after a crash the file holds the content of the last
+ * completed flush and everything written after it is lost. A crash in the middle of a flush is rolled back
+ * by SQLite the next time the file is opened. The hot tier needs about twice the database size in memory.
+ * <p>
+ * Consistency: reads run on read connections of their own with the default isolation, so they only ever see
+ * committed data. The connections share one cache, which locks whole tables instead of pages or the file: a table
+ * with uncommitted writes cannot be read, and a table that is being read, including by an open stream, cannot be
+ * written. Both sides fail at once with SQLITE_LOCKED instead of waiting for the busy timeout, and the repository
+ * retries them, with the configured retry policy or the default one. Statements inside runInTransaction are
+ * retried by repeating the whole transaction. Connections from getConnection are not retried.
+ * <p>
+ * A flush only runs when PRAGMA data_version of the memory anchor moved, which counts the commits of every
+ * connection sharing the cache, including getConnection ones, and schema changes
+ *
+ * @author John Pili
+ */
+class SqliteHotTier {
+    private static final AtomicInteger SEQUENCE = new AtomicInteger();
+
+    private final SqliteConfig sqliteConfig;
+    private final String filePath;
+    private final String memoryLocation;
+    private final String stagingLocation;
+    private final Connection memoryAnchor;
+    private final Connection stagingAnchor;
+    private ScheduledExecutorService scheduler;
+    private long flushedDataVersion = -1;
+    private volatile SqliteBackupResult lastFlush;
+    private volatile Exception lastFlushError;
+
+    /**
+     * Opens the in-memory database and loads the file into it when the file exists
+     *
+     * @param sqliteConfig SqliteConfig
+     */
+    SqliteHotTier(SqliteConfig sqliteConfig) {
+        this.sqliteConfig = sqliteConfig;
+        this.filePath = sqliteConfig.getDbLocation().substring("jdbc:sqlite:".length());
+        if (sqliteConfig.isInMemory()) {
+            throw new IllegalArgumentException("The hot tier needs a database file, not " + filePath);
+        }
+        String name = "sqliter-hot-" + SEQUENCE.incrementAndGet();
+        this.memoryLocation = "file:" + name + "?mode=memory&cache=shared";
+        this.stagingLocation = "file:" + name + "-staging?mode=memory&cache=shared";
+        Connection memory = null;
+        Connection staging = null;
+        try {
+            SqliteConnectionFactory.loadDriver();
+            // An in-memory database lives as long as one connection to it is open
+            memory = DriverManager.getConnection("jdbc:sqlite:" + memoryLocation);
+            staging = DriverManager.getConnection("jdbc:sqlite:" + stagingLocation);
+            if (new File(filePath).exists()) {
+                SqliteOnlineBackup.restore(memory, filePath, wholeCopy());
+            }
+        } catch (SqliteDriverNotFoundException | SQLException exception) {
+            closeQuietly(memory);
+            closeQuietly(staging);
+            throw new IllegalStateException("Cannot load " + filePath + " into memory", exception);
+        }
+        this.memoryAnchor = memory;
+        this.stagingAnchor = staging;
+    }
+
+    /**
+     * JDBC URL the repository opens its connections with
+     *
+     * @return String
+     */
+    String getMemoryLocation() {
+        return "jdbc:sqlite:" + memoryLocation;
+    }
+
+    /**
+     * This method starts the periodic flush when an interval is configured
+     *
+     * @param sqliteRepository SqliteRepository
+     */
+    void start(SqliteRepository sqliteRepository) {
+        long intervalMillis = sqliteConfig.getHotTierFlushIntervalMillis();
+        if (intervalMillis <= 0) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "sqliter-hot-tier-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(() -> {
+            try {
+                flush(sqliteRepository, false);
+            } catch (Exception exception) {
+                // Kept for getLastFlushError, the next run tries again
+                lastFlushError = exception;
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * This method writes the memory database to the file
+     *
+     * @param sqliteRepository SqliteRepository
+     * @param force            boolean flush even when nothing changed since the last flush
+     * @return SqliteBackupResult, or the previous result when nothing changed
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    synchronized SqliteBackupResult flush(SqliteRepository sqliteRepository, boolean force)
+            throws SQLException, SqliteDriverNotFoundException {
+        long startNanos = System.nanoTime();
+        long dataVersion;
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(true)) {
+            // The anchor never writes, so its data version moves with every commit of the other connections.
+            // A commit that lands after this read is copied now and flushed once more next time
+            dataVersion = queryLong(memoryAnchor, "PRAGMA data_version");
+            if (!force && lastFlush != null && dataVersion == flushedDataVersion) {
+                return lastFlush;
+            }
+            SqliteOnlineBackup.backup(lease.getConnection(), stagingLocation, wholeCopy());
+        }
+        SqliteBackupResult written = SqliteOnlineBackup.backup(stagingAnchor, filePath, wholeCopy());
+        SqliteBackupResult result = new SqliteBackupResult(written.getPageCount(), 0, written.getBytesCopied(),
+                System.nanoTime() - startNanos, 0, true);
+        flushedDataVersion = dataVersion;
+        lastFlush = result;
+        lastFlushError = null;
+        if (sqliteConfig.getHotTierFlushListener() != null) {
+            sqliteConfig.getHotTierFlushListener().onProgress(result);
+        }
+        return result;
+    }
+
+    SqliteBackupResult getLastFlush() {
+        return lastFlush;
+    }
+
+    Exception getLastFlushError() {
+        return lastFlushError;
+    }
+
+    /**
+     * This method stops the periodic flush, writes the final state to the file and releases the memory database.
+     * The caller closes the pooled connections afterwards, which frees the memory
+     *
+     * @param sqliteRepository SqliteRepository
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    void close(SqliteRepository sqliteRepository) throws SQLException, SqliteDriverNotFoundException {
+        if (scheduler != null) {
+            scheduler.shutdown();
+            try {
+                scheduler.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException interruptedException) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            flush(sqliteRepository, false);
+        } finally {
+            closeQuietly(stagingAnchor);
+            closeQuietly(memoryAnchor);
+        }
+    }
+
+    private static SqliteBackupOptions wholeCopy() {
+        SqliteBackupOptions options = new SqliteBackupOptions();
+        options.setPagesPerStep(-1);
+        return options;
+    }
+
+    private static long queryLong(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // Nothing left to release
+        }
+    }
+}
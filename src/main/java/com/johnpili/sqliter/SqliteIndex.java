@@ -0,0 +1,70 @@
+package com.johnpili.sqliter;
+
+import java.util.List;
+
+/**
+ * Index of a table as reported by PRAGMA index_list and index_info
+ *
+ * @author John Pili
+ */
+public class SqliteIndex {
+    private final String name;
+    private final boolean unique;
+    private final String origin;
+    private final boolean partial;
+    private final List<String> columns;
+
+    public SqliteIndex(String name, boolean unique, String origin, boolean partial, List<String> columns) {
+        this.name = name;
+        this.unique = unique;
+        this.origin = origin;
+        this.partial = partial;
+        this.columns = columns;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public boolean isUnique() {
+        return unique;
+    }
+
+    /**
+     * c for CREATE INDEX, u for a UNIQUE constraint and pk for a PRIMARY KEY constraint
+     *
+     * @return String
+     */
+    public String getOrigin() {
+        return origin;
+    }
+
+    /**
+     * True when the index has a WHERE clause
+     *
+     * @return boolean
+     */
+    public boolean isPartial() {
+        return partial;
+    }
+
+    /**
+     * Indexed columns in key order. Expressions are reported as null
+     *
+     * @return List&lt;String&gt;
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteIndex{" +
+                "name='" + name + '\'' +
+                ", unique=" + unique +
+                ", origin='" + origin + '\'' +
+                ", partial=" + partial +
+                ", columns=" + columns +
+                '}';
+    }
+}
@@ -0,0 +1,220 @@
+package com.johnpili.sqliter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Reader of newline delimited JSON where every line is a flat object. Strings, numbers, booleans and null
+ * become Java values; nested objects and arrays are kept as their JSON text
+ *
+ * @author John Pili
+ */
+class SqliteJsonLineReader {
+    private final BufferedReader reader;
+    private long lineNumber;
+    private String line;
+    private int position;
+
+    SqliteJsonLineReader(BufferedReader reader) {
+        this.reader = reader;
+    }
+
+    /**
+     * This method parses the next non-blank line
+     *
+     * @return Map&lt;String, Object&gt; in key order, or null at the end of the input
+     * @throws IOException IOException
+     */
+    Map<String, Object> next() throws IOException {
+        do {
+            line = reader.readLine();
+            lineNumber++;
+            if (line == null) {
+                return null;
+            }
+        } while (line.trim().isEmpty());
+
+        position = 0;
+        skipWhitespace();
+        expect('{');
+        Map<String, Object> object = new LinkedHashMap<>();
+        skipWhitespace();
+        if (peek() == '}') {
+            position++;
+        } else {
+            while (true) {
+                skipWhitespace();
+                String key = readString();
+                skipWhitespace();
+                expect(':');
+                skipWhitespace();
+                object.put(key, readValue());
+                skipWhitespace();
+                char separator = nextChar();
+                if (separator == '}') {
+                    break;
+                }
+                if (separator != ',') {
+                    throw error("Expected , or }");
+                }
+            }
+        }
+        skipWhitespace();
+        if (position != line.length()) {
+            throw error("Unexpected content after the object");
+        }
+        return object;
+    }
+
+    long getLineNumber() {
+        return lineNumber;
+    }
+
+    private Object readValue() throws IOException {
+        char character = peek();
+        if (character == '"') {
+            return readString();
+        }
+        if (character == '{' || character == '[') {
+            int start = position;
+            skipNested();
+            return line.substring(start, position);
+        }
+        if (line.startsWith("true", position)) {
+            position += 4;
+            return Boolean.TRUE;
+        }
+        if (line.startsWith("false", position)) {
+            position += 5;
+            return Boolean.FALSE;
+        }
+        if (line.startsWith("null", position)) {
+            position += 4;
+            return null;
+        }
+        return readNumber();
+    }
+
+    private Object readNumber() throws IOException {
+        int start = position;
+        boolean integral = true;
+        while (position < line.length()) {
+            char character = line.charAt(position);
+            if (character == '.' || character == 'e' || character == 'E') {
+                integral = false;
+            } else if (!(character == '-' || character == '+' || (character >= '0' && character <= '9'))) {
+                break;
+            }
+            position++;
+        }
+        String number = line.substring(start, position);
+        try {
+            if (integral) {
+                try {
+                    return Long.parseLong(number);
+                } catch (NumberFormatException overflow) {
+                    return Double.parseDouble(number);
+                }
+            }
+            return Double.parseDouble(number);
+        } catch (NumberFormatException numberFormatException) {
+            throw error("Invalid value");
+        }
+    }
+
+    private String readString() throws IOException {
+        expect('"');
+        StringBuilder builder = new StringBuilder();
+        while (true) {
+            char character = nextChar();
+            if (character == '"') {
+                return builder.toString();
+            }
+            if (character != '\\') {
+                builder.append(character);
+                continue;
+            }
+            char escaped = nextChar();
+            switch (escaped) {
+                case 'b':
+                    builder.append('\b');
+                    break;
+                case 'f':
+                    builder.append('\f');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'u':
+                    if (position + 4 > line.length()) {
+                        throw error("Invalid unicode escape");
+                    }
+                    try {
+                        builder.append((char) Integer.parseInt(line.substring(position, position + 4), 16));
+                    } catch (NumberFormatException numberFormatException) {
+                        throw error("Invalid unicode escape");
+                    }
+                    position += 4;
+                    break;
+                default:
+                    builder.append(escaped);
+                    break;
+            }
+        }
+    }
+
+    /**
+     * Skips a nested object or array, honouring strings that contain brackets
+     */
+    private void skipNested() throws IOException {
+        int depth = 0;
+        do {
+            char character = nextChar();
+            if (character == '"') {
+                position--;
+                readString();
+            } else if (character == '{' || character == '[') {
+                depth++;
+            } else if (character == '}' || character == ']') {
+                depth--;
+            }
+        } while (depth > 0);
+    }
+
+    private void skipWhitespace() {
+        while (position < line.length() && Character.isWhitespace(line.charAt(position))) {
+            position++;
+        }
+    }
+
+    private char peek() throws IOException {
+        if (position >= line.length()) {
+            throw error("Unexpected end of line");
+        }
+        return line.charAt(position);
+    }
+
+    private char nextChar() throws IOException {
+        char character = peek();
+        position++;
+        return character;
+    }
+
+    private void expect(char expected) throws IOException {
+        if (nextChar() != expected) {
+            throw error("Expected " + expected);
+        }
+    }
+
+    private IOException error(String message) {
+        return new IOException(message + " at line " + lineNumber + ", column " + (position + 1));
+    }
+}
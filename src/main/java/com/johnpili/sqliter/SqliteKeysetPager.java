@@ -0,0 +1,229 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+import com.johnpili.sqliter.exceptions.SqliteStreamException;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.NoSuchElementException;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Iterator of pages over an ordered scan that seeks past the last key instead of using OFFSET, so every page
+ * costs the same no matter how deep the scan is. The base query is wrapped as
+ * SELECT * FROM (base) WHERE key &gt; ? ORDER BY key LIMIT ?, which SQLite flattens so an index on the key is
+ * still used. The key column must be unique and the base query must be a plain SELECT that SQLite can flatten:
+ * a top-level ORDER BY, LIMIT, DISTINCT, GROUP BY, aggregate, window function or compound SELECT would make every
+ * page run the whole base query, so such queries are rejected. Rows whose key is NULL cannot be seeked past
+ * and are skipped.
+ * <p>
+ * Each page runs as its own short query, so no connection is held between pages.
+ * {@link #getCursor()} returns a token that resumes the scan after the last returned page
+ *
+ * @author John Pili
+ */
+public class SqliteKeysetPager<T> implements Iterator<List<T>> {
+    // Matched against the top level of the base query, MIN and MAX only aggregate with a single argument
+    private static final Pattern NOT_FLATTENABLE = Pattern.compile(
+            "\\b(?:DISTINCT|GROUP\\s+BY|HAVING|UNION|INTERSECT|EXCEPT|OVER|WINDOW|ORDER\\s+BY|LIMIT)\\b"
+                    + "|\\b(?:COUNT|SUM|AVG|TOTAL|GROUP_CONCAT|STRING_AGG)\\s*\\(|\\b(?:MIN|MAX)\\s*\\(\\s*\\)");
+
+    private final SqliteRepository sqliteRepository;
+    private final String firstPageSql;
+    private final String nextPageSql;
+    private final SqliteParameters parameters;
+    private final int baseParameterCount;
+    private final String keyColumn;
+    private final int pageSize;
+    private final SqliteObjectAssembler<T> sqliteObjectAssembler;
+    private Object lastKey;
+    private Object fetchedLastKey;
+    private List<T> fetchedPage;
+    private boolean exhausted;
+
+    SqliteKeysetPager(SqliteRepository sqliteRepository, String sql, SqliteParameters parameters, String keyColumn, int pageSize,
+                      SqliteObjectAssembler<T> sqliteObjectAssembler, String cursor) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive: " + pageSize);
+        }
+        String quotedKey = SqliteBulkTransfer.quoteIdentifier(keyColumn);
+        String baseSql = sql.trim();
+        if (baseSql.endsWith(";")) {
+            baseSql = baseSql.substring(0, baseSql.length() - 1);
+        }
+        Matcher notFlattenable = NOT_FLATTENABLE.matcher(topLevel(baseSql));
+        if (notFlattenable.find()) {
+            throw new IllegalArgumentException("Cannot page a query with " + notFlattenable.group().replaceAll("[\\s(]+", " ").trim()
+                    + ", SQLite cannot push the key seek into it and every page would run the whole query");
+        }
+        this.sqliteRepository = sqliteRepository;
+        this.firstPageSql = "SELECT * FROM (" + baseSql + ") WHERE " + quotedKey + " IS NOT NULL ORDER BY " + quotedKey + " LIMIT ?";
+        this.nextPageSql = "SELECT * FROM (" + baseSql + ") WHERE " + quotedKey + " > ? ORDER BY " + quotedKey + " LIMIT ?";
+        this.parameters = parameters == null ? new SqliteParameters() : parameters.copy();
+        this.baseParameterCount = this.parameters.size();
+        this.keyColumn = keyColumn;
+        this.pageSize = pageSize;
+        this.sqliteObjectAssembler = sqliteObjectAssembler;
+        this.lastKey = cursor == null ? null : decodeCursor(cursor);
+    }
+
+    /**
+     * @throws SqliteStreamException when the page query fails
+     */
+    @Override
+    public boolean hasNext() {
+        if (fetchedPage == null && !exhausted) {
+            try {
+                fetchPage();
+            } catch (SQLException sqlException) {
+                throw new SqliteStreamException(sqlException);
+            } catch (SqliteDriverNotFoundException driverNotFoundException) {
+                throw new IllegalStateException(driverNotFoundException);
+            }
+        }
+        return fetchedPage != null;
+    }
+
+    @Override
+    public List<T> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<T> page = fetchedPage;
+        lastKey = fetchedLastKey;
+        fetchedPage = null;
+        return page;
+    }
+
+    /**
+     * Opaque token of the position after the last page returned by next, or null before the first page
+     * of a scan that was not resumed. Pass it to paginate to continue the scan later
+     *
+     * @return String
+     */
+    public String getCursor() {
+        return lastKey == null ? null : encodeCursor(lastKey);
+    }
+
+    private void fetchPage() throws SQLException, SqliteDriverNotFoundException {
+        List<T> page = new ArrayList<>(pageSize);
+        Object pageLastKey = null;
+        int keyIndex = -1;
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+            PreparedStatement preparedStatement;
+            if (lastKey == null) {
+                preparedStatement = lease.prepareStatement(firstPageSql);
+                parameters.bindLong(baseParameterCount + 1, pageSize);
+            } else {
+                preparedStatement = lease.prepareStatement(nextPageSql);
+                parameters.bindObject(baseParameterCount + 1, lastKey);
+                parameters.bindLong(baseParameterCount + 2, pageSize);
+            }
+            parameters.bindTo(preparedStatement);
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                SqliteObjectAssembler<T> rowAssembler = sqliteObjectAssembler.bind(resultSet.getMetaData());
+                while (resultSet.next()) {
+                    if (keyIndex < 0) {
+                        keyIndex = resultSet.findColumn(keyColumn);
+                    }
+                    page.add(rowAssembler.assemble(resultSet));
+                    pageLastKey = resultSet.getObject(keyIndex);
+                }
+            }
+        } finally {
+            parameters.truncate(baseParameterCount);
+        }
+
+        if (page.size() < pageSize) {
+            exhausted = true;
+        }
+        if (!page.isEmpty()) {
+            fetchedPage = page;
+            fetchedLastKey = pageLastKey;
+        }
+    }
+
+    /**
+     * Blanks out literals, quoted identifiers and everything inside parentheses except the commas that separate
+     * function arguments, so only top-level keywords and function calls match
+     */
+    private static String topLevel(String sql) {
+        char[] masked = sql.toCharArray();
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < masked.length; i++) {
+            char character = masked[i];
+            if (quote != 0) {
+                if (character == quote) {
+                    quote = 0;
+                }
+                masked[i] = ' ';
+            } else if (character == '\'' || character == '"' || character == '`' || character == '[') {
+                quote = character == '[' ? ']' : character;
+                masked[i] = ' ';
+            } else if (character == '(') {
+                if (depth++ > 0) {
+                    masked[i] = ' ';
+                }
+            } else if (character == ')') {
+                if (--depth > 0) {
+                    masked[i] = ' ';
+                }
+            } else if (depth > 1 || (depth == 1 && character != ',')) {
+                masked[i] = ' ';
+            }
+        }
+        return new String(masked).toUpperCase(Locale.ROOT);
+    }
+
+    static String encodeCursor(Object key) {
+        String encoded;
+        if (key instanceof Long || key instanceof Integer || key instanceof Short || key instanceof Byte) {
+            encoded = "L" + key;
+        } else if (key instanceof Double || key instanceof Float) {
+            encoded = "D" + key;
+        } else if (key instanceof byte[]) {
+            encoded = "B" + Base64.getEncoder().encodeToString((byte[]) key);
+        } else {
+            encoded = "S" + key;
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(encoded.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static Object decodeCursor(String cursor) {
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException illegalArgumentException) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, illegalArgumentException);
+        }
+        if (decoded.isEmpty()) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor);
+        }
+        String value = decoded.substring(1);
+        try {
+            switch (decoded.charAt(0)) {
+                case 'L':
+                    return Long.parseLong(value);
+                case 'D':
+                    return Double.parseDouble(value);
+                case 'B':
+                    return Base64.getDecoder().decode(value);
+                case 'S':
+                    return value;
+                default:
+                    throw new IllegalArgumentException("Invalid cursor: " + cursor);
+            }
+        } catch (NumberFormatException numberFormatException) {
+            throw new IllegalArgumentException("Invalid cursor: " + cursor, numberFormatException);
+        }
+    }
+}
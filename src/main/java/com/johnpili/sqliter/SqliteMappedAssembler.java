@@ -0,0 +1,368 @@
+package com.johnpili.sqliter;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Assembler that maps columns to setters, fields or record components by name. The repository calls bind once
+ * per query, which resolves the column labels to accessors bound as type specialized method handles, so assembling
+ * a row costs about the same as a hand-written assembler. Records get one method handle per shape that reads every
+ * column with a typed getter straight into the canonical constructor, without an argument array or boxing.
+ * Plans are cached per column label shape and the assembler holds no per-query state, so one instance can be
+ * shared by every thread
+ *
+ * @author John Pili
+ */
+class SqliteMappedAssembler<T> implements SqliteObjectAssembler<T> {
+    private static final MethodType LONG_SETTER = MethodType.methodType(void.class, Object.class, long.class);
+    private static final MethodType INT_SETTER = MethodType.methodType(void.class, Object.class, int.class);
+    private static final MethodType DOUBLE_SETTER = MethodType.methodType(void.class, Object.class, double.class);
+    private static final MethodType BOOLEAN_SETTER = MethodType.methodType(void.class, Object.class, boolean.class);
+    private static final MethodType OBJECT_SETTER = MethodType.methodType(void.class, Object.class, Object.class);
+    private static final MethodType ROW = MethodType.methodType(Object.class, ResultSet.class);
+    private static final Map<Class<?>, String> GETTERS = Map.of(String.class, "getString", long.class, "getLong",
+            int.class, "getInt", short.class, "getShort", byte.class, "getByte", double.class, "getDouble",
+            float.class, "getFloat", boolean.class, "getBoolean", byte[].class, "getBytes", BigDecimal.class, "getBigDecimal");
+    private static final MethodHandle READ_COLUMN;
+
+    static {
+        try {
+            READ_COLUMN = MethodHandles.lookup().findVirtual(ColumnReader.class, "read", ROW);
+        } catch (ReflectiveOperationException exception) {
+            throw new ExceptionInInitializerError(exception);
+        }
+    }
+
+    private final Class<T> type;
+    private final MethodHandle constructor;
+    private final Map<String, Property> properties;
+    private final Class<?>[] componentTypes;
+    private final boolean record;
+    private final ConcurrentHashMap<String, Plan> plans = new ConcurrentHashMap<>();
+
+    SqliteMappedAssembler(Class<T> type) {
+        this.type = type;
+        this.properties = new HashMap<>();
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            Object[] recordComponents = recordComponents(type);
+            this.record = recordComponents != null;
+            if (record) {
+                componentTypes = new Class<?>[recordComponents.length];
+                for (int i = 0; i < recordComponents.length; i++) {
+                    Object component = recordComponents[i];
+                    String name = (String) component.getClass().getMethod("getName").invoke(component);
+                    componentTypes[i] = (Class<?>) component.getClass().getMethod("getType").invoke(component);
+                    properties.put(normalize(name), new Property(componentTypes[i], null, i));
+                }
+                Constructor<T> canonical = type.getDeclaredConstructor(componentTypes);
+                canonical.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(canonical)
+                        .asType(MethodType.methodType(Object.class, componentTypes));
+            } else {
+                this.componentTypes = null;
+                Constructor<T> noArgs = type.getDeclaredConstructor();
+                noArgs.setAccessible(true);
+                this.constructor = lookup.unreflectConstructor(noArgs).asType(MethodType.methodType(Object.class));
+                collectFields(lookup, type);
+                collectSetters(lookup, type);
+            }
+        } catch (ReflectiveOperationException | RuntimeException exception) {
+            throw new IllegalArgumentException("Cannot build an assembler for " + type.getName(), exception);
+        }
+    }
+
+    /**
+     * Without bind the columns are resolved on every row, callers assembling many rows should bind first
+     */
+    @Override
+    public T assemble(ResultSet resultSet) throws SQLException {
+        return assemble(planFor(resultSet.getMetaData()), resultSet);
+    }
+
+    @Override
+    public SqliteObjectAssembler<T> bind(ResultSetMetaData metaData) throws SQLException {
+        Plan plan = planFor(metaData);
+        return resultSet -> assemble(plan, resultSet);
+    }
+
+    private T assemble(Plan plan, ResultSet resultSet) throws SQLException {
+        try {
+            return type.cast(plan.assemble(resultSet));
+        } catch (SQLException | RuntimeException | Error exception) {
+            throw exception;
+        } catch (Throwable throwable) {
+            throw new SQLException("Cannot assemble " + type.getName(), throwable);
+        }
+    }
+
+    /**
+     * This method resolves the column labels of a result set shape to accessors, once per shape
+     */
+    private Plan planFor(ResultSetMetaData metaData) throws SQLException {
+        int columnCount = metaData.getColumnCount();
+        String[] labels = new String[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            labels[i] = normalize(metaData.getColumnLabel(i + 1));
+        }
+        String shape = String.join(",", labels);
+        Plan plan = plans.get(shape);
+        if (plan == null) {
+            plan = record ? recordPlan(labels) : beanPlan(labels);
+            plans.putIfAbsent(shape, plan);
+        }
+        return plan;
+    }
+
+    private Plan beanPlan(String[] labels) {
+        ColumnBinder[] binders = new ColumnBinder[labels.length];
+        int count = 0;
+        for (int i = 0; i < labels.length; i++) {
+            Property property = properties.get(labels[i]);
+            if (property != null) {
+                binders[count++] = binder(property, i + 1);
+            }
+        }
+        ColumnBinder[] bound = Arrays.copyOf(binders, count);
+        return resultSet -> {
+            Object target = constructor.invokeExact();
+            for (ColumnBinder binder : bound) {
+                binder.bind(target, resultSet);
+            }
+            return target;
+        };
+    }
+
+    /**
+     * This method filters every constructor argument through the reader of its column and then feeds the one
+     * ResultSet argument to all of them, so a row is a single invokeExact. Components without a matching
+     * column get null or the primitive zero value
+     */
+    private Plan recordPlan(String[] labels) throws SQLException {
+        MethodHandle[] readers = new MethodHandle[componentTypes.length];
+        try {
+            for (int i = 0; i < labels.length; i++) {
+                Property property = properties.get(labels[i]);
+                if (property != null) {
+                    readers[property.index] = readerHandle(property.type, i + 1);
+                }
+            }
+        } catch (ReflectiveOperationException exception) {
+            throw new SQLException("Cannot map the columns to " + type.getName(), exception);
+        }
+        for (int i = 0; i < readers.length; i++) {
+            if (readers[i] == null) {
+                readers[i] = MethodHandles.dropArguments(MethodHandles.zero(componentTypes[i]), 0, ResultSet.class);
+            }
+        }
+        MethodHandle row = MethodHandles.permuteArguments(MethodHandles.filterArguments(constructor, 0, readers),
+                ROW, new int[readers.length]);
+        return resultSet -> (Object) row.invokeExact(resultSet);
+    }
+
+    /**
+     * Reader of one column as a (ResultSet) handle returning the exact value type
+     */
+    private static MethodHandle readerHandle(Class<?> valueType, int column) throws ReflectiveOperationException {
+        String getter = GETTERS.get(valueType);
+        if (getter != null) {
+            MethodHandle handle = MethodHandles.publicLookup()
+                    .findVirtual(ResultSet.class, getter, MethodType.methodType(valueType, int.class));
+            return MethodHandles.insertArguments(handle, 1, column);
+        }
+        return READ_COLUMN.bindTo(reader(valueType, column)).asType(MethodType.methodType(valueType, ResultSet.class));
+    }
+
+    /**
+     * Primitive columns are bound through exact typed handles so the value is never boxed
+     */
+    private ColumnBinder binder(Property property, int column) {
+        Class<?> propertyType = property.type;
+        if (propertyType == long.class) {
+            MethodHandle setter = property.setter.asType(LONG_SETTER);
+            return (target, resultSet) -> {
+                setter.invokeExact(target, resultSet.getLong(column));
+            };
+        }
+        if (propertyType == int.class) {
+            MethodHandle setter = property.setter.asType(INT_SETTER);
+            return (target, resultSet) -> {
+                setter.invokeExact(target, resultSet.getInt(column));
+            };
+        }
+        if (propertyType == double.class) {
+            MethodHandle setter = property.setter.asType(DOUBLE_SETTER);
+            return (target, resultSet) -> {
+                setter.invokeExact(target, resultSet.getDouble(column));
+            };
+        }
+        if (propertyType == boolean.class) {
+            MethodHandle setter = property.setter.asType(BOOLEAN_SETTER);
+            return (target, resultSet) -> {
+                setter.invokeExact(target, resultSet.getBoolean(column));
+            };
+        }
+        MethodHandle setter = property.setter.asType(OBJECT_SETTER);
+        ColumnReader reader = reader(propertyType, column);
+        return (target, resultSet) -> {
+            setter.invokeExact(target, reader.read(resultSet));
+        };
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private static ColumnReader reader(Class<?> valueType, int column) {
+        if (valueType == String.class) {
+            return resultSet -> resultSet.getString(column);
+        }
+        if (valueType == long.class) {
+            return resultSet -> resultSet.getLong(column);
+        }
+        if (valueType == int.class) {
+            return resultSet -> resultSet.getInt(column);
+        }
+        if (valueType == short.class) {
+            return resultSet -> resultSet.getShort(column);
+        }
+        if (valueType == byte.class) {
+            return resultSet -> resultSet.getByte(column);
+        }
+        if (valueType == double.class) {
+            return resultSet -> resultSet.getDouble(column);
+        }
+        if (valueType == float.class) {
+            return resultSet -> resultSet.getFloat(column);
+        }
+        if (valueType == boolean.class) {
+            return resultSet -> resultSet.getBoolean(column);
+        }
+        if (valueType == Long.class) {
+            return resultSet -> {
+                long value = resultSet.getLong(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        }
+        if (valueType == Integer.class) {
+            return resultSet -> {
+                int value = resultSet.getInt(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        }
+        if (valueType == Double.class) {
+            return resultSet -> {
+                double value = resultSet.getDouble(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        }
+        if (valueType == Boolean.class) {
+            return resultSet -> {
+                boolean value = resultSet.getBoolean(column);
+                return resultSet.wasNull() ? null : value;
+            };
+        }
+        if (valueType == byte[].class) {
+            return resultSet -> resultSet.getBytes(column);
+        }
+        if (valueType == BigDecimal.class) {
+            return resultSet -> resultSet.getBigDecimal(column);
+        }
+        if (valueType.isEnum()) {
+            Class<? extends Enum> enumType = (Class<? extends Enum>) valueType;
+            return resultSet -> {
+                String name = resultSet.getString(column);
+                return name == null ? null : Enum.valueOf(enumType, name);
+            };
+        }
+        if (valueType == Object.class) {
+            return resultSet -> resultSet.getObject(column);
+        }
+        return resultSet -> resultSet.getObject(column, valueType);
+    }
+
+    private void collectFields(MethodHandles.Lookup lookup, Class<?> currentType) throws IllegalAccessException {
+        if (currentType == null || currentType == Object.class) {
+            return;
+        }
+        collectFields(lookup, currentType.getSuperclass());
+        for (Field field : currentType.getDeclaredFields()) {
+            int modifiers = field.getModifiers();
+            if (Modifier.isStatic(modifiers) || Modifier.isFinal(modifiers) || field.isSynthetic()) {
+                continue;
+            }
+            field.setAccessible(true);
+            properties.put(normalize(field.getName()), new Property(field.getType(), lookup.unreflectSetter(field), -1));
+        }
+    }
+
+    /**
+     * Public setters take precedence over direct field access
+     */
+    private void collectSetters(MethodHandles.Lookup lookup, Class<?> currentType) throws IllegalAccessException {
+        for (Method method : currentType.getMethods()) {
+            if (method.getName().length() > 3 && method.getName().startsWith("set") && method.getParameterCount() == 1
+                    && !Modifier.isStatic(method.getModifiers())) {
+                properties.put(normalize(method.getName().substring(3)),
+                        new Property(method.getParameterTypes()[0], lookup.unreflect(method), -1));
+            }
+        }
+    }
+
+    private static Object[] recordComponents(Class<?> type) throws ReflectiveOperationException {
+        Method isRecord;
+        try {
+            isRecord = Class.class.getMethod("isRecord");
+        } catch (NoSuchMethodException noSuchMethodException) {
+            // Running on a JVM without records
+            return null;
+        }
+        if (!(Boolean) isRecord.invoke(type)) {
+            return null;
+        }
+        return (Object[]) Class.class.getMethod("getRecordComponents").invoke(type);
+    }
+
+    /**
+     * Column labels and property names are compared case-insensitively and without underscores,
+     * so created_at maps to createdAt
+     */
+    static String normalize(String name) {
+        return name.replace("_", "").toLowerCase(Locale.ROOT);
+    }
+
+    private static final class Property {
+        private final Class<?> type;
+        private final MethodHandle setter;
+        private final int index;
+
+        private Property(Class<?> type, MethodHandle setter, int index) {
+            this.type = type;
+            this.setter = setter;
+            this.index = index;
+        }
+    }
+
+    private interface Plan {
+        Object assemble(ResultSet resultSet) throws Throwable;
+    }
+
+    private interface ColumnBinder {
+        void bind(Object target, ResultSet resultSet) throws Throwable;
+    }
+
+    private interface ColumnReader {
+        Object read(ResultSet resultSet) throws SQLException;
+    }
+}
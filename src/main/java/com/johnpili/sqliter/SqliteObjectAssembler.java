@@ -1,6 +1,7 @@
 package com.johnpili.sqliter;
 
 import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 
 public interface SqliteObjectAssembler<T> {
@@ -13,4 +14,16 @@ public interface SqliteObjectAssembler<T> {
      * @throws SQLException SQLException
      */
     T assemble(ResultSet resultSet) throws SQLException;
+
+    /**
+     * This method is called once per query before the first row is assembled, so an assembler can resolve the
+     * columns of that query up front instead of on every row. The default returns the assembler itself
+     *
+     * @param metaData ResultSetMetaData of the query
+     * @return SqliteObjectAssembler&lt;T&gt; that assembles the rows of this query
+     * @throws SQLException SQLException
+     */
+    default SqliteObjectAssembler<T> bind(ResultSetMetaData metaData) throws SQLException {
+        return this;
+    }
 }
@@ -0,0 +1,138 @@
+package com.johnpili.sqliter;
+
+import org.sqlite.SQLiteConnection;
+import org.sqlite.core.DB;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Incremental copy between a live connection and a database file through the SQLite backup API.
+ * Every step copies a few pages under a short read lock and the pause between steps is taken in the
+ * progress callback, so writers on other connections keep making progress while the copy runs
+ *
+ * @author John Pili
+ */
+class SqliteOnlineBackup implements DB.ProgressObserver {
+    private static final String MAIN = "main";
+    private static final int SQLITE_OK = 0;
+    private static final int SQLITE_DONE = 101;
+
+    private final SqliteBackupOptions options;
+    private final int pageSize;
+    private final long startNanos;
+    private int pageCount;
+    private int lastCopied;
+    private long pagesWritten;
+    private int restarts;
+    private boolean interrupted;
+
+    private SqliteOnlineBackup(SqliteBackupOptions options, int pageSize) {
+        this.options = options;
+        this.pageSize = pageSize;
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * This method copies the main database of the connection into the destination file
+     *
+     * @param connection      Connection
+     * @param destinationFile String
+     * @param options         SqliteBackupOptions
+     * @return SqliteBackupResult
+     * @throws SQLException
+     */
+    static SqliteBackupResult backup(Connection connection, String destinationFile, SqliteBackupOptions options) throws SQLException {
+        SqliteOnlineBackup backup = new SqliteOnlineBackup(options, pageSize(connection));
+        int resultCode = database(connection).backup(MAIN, destinationFile, backup, options.getBusyRetryMillis(),
+                options.getBusyRetryLimit(), options.getPagesPerStep());
+        return backup.finish(resultCode, "Backup to " + destinationFile);
+    }
+
+    /**
+     * This method replaces the main database of the connection with the content of the source file
+     *
+     * @param connection Connection
+     * @param sourceFile String
+     * @param options    SqliteBackupOptions
+     * @return SqliteBackupResult
+     * @throws SQLException
+     */
+    static SqliteBackupResult restore(Connection connection, String sourceFile, SqliteBackupOptions options) throws SQLException {
+        SqliteOnlineBackup restore = new SqliteOnlineBackup(options, pageSize(connection));
+        int resultCode = database(connection).restore(MAIN, sourceFile, restore, options.getBusyRetryMillis(),
+                options.getBusyRetryLimit(), options.getPagesPerStep());
+        return restore.finish(resultCode, "Restore from " + sourceFile);
+    }
+
+    /**
+     * Called by the driver after every step with the pages left and the size of the source
+     */
+    @Override
+    public void progress(int remaining, int total) {
+        int copied = total - remaining;
+        if (copied < lastCopied) {
+            // Another connection wrote to the source, SQLite starts over from the first page
+            restarts++;
+            pagesWritten += copied;
+        } else {
+            pagesWritten += copied - lastCopied;
+        }
+        lastCopied = copied;
+        pageCount = total;
+
+        if (options.getListener() != null) {
+            options.getListener().onProgress(result(remaining, false));
+        }
+        if (remaining > 0) {
+            pause();
+        }
+    }
+
+    private void pause() {
+        long pauseNanos = TimeUnit.MILLISECONDS.toNanos(options.getStepPauseMillis());
+        if (options.getMaxBytesPerSecond() > 0) {
+            long budgetNanos = pagesWritten * pageSize * TimeUnit.SECONDS.toNanos(1) / options.getMaxBytesPerSecond();
+            pauseNanos = Math.max(pauseNanos, budgetNanos - (System.nanoTime() - startNanos));
+        }
+        if (pauseNanos <= 0 || interrupted) {
+            return;
+        }
+        try {
+            TimeUnit.NANOSECONDS.sleep(pauseNanos);
+        } catch (InterruptedException interruptedException) {
+            // The driver offers no way to cancel, so the copy finishes without further pauses
+            interrupted = true;
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private SqliteBackupResult finish(int resultCode, String operation) throws SQLException {
+        if (resultCode != SQLITE_OK && resultCode != SQLITE_DONE) {
+            throw new SQLException(operation + " failed with SQLite result code " + resultCode, null, resultCode);
+        }
+        SqliteBackupResult result = result(0, true);
+        if (options.getListener() != null) {
+            options.getListener().onProgress(result);
+        }
+        return result;
+    }
+
+    private SqliteBackupResult result(int remaining, boolean finished) {
+        return new SqliteBackupResult(pageCount, remaining, pagesWritten * pageSize, System.nanoTime() - startNanos, restarts, finished);
+    }
+
+    private static DB database(Connection connection) throws SQLException {
+        return connection.unwrap(SQLiteConnection.class).getDatabase();
+    }
+
+    private static int pageSize(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("PRAGMA page_size")) {
+            return resultSet.next() ? resultSet.getInt(1) : 4096;
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package com.johnpili.sqliter;
+
+/**
+ * Repository operation reported to a {@link SqliteStatementListener}
+ *
+ * @author John Pili
+ */
+public enum SqliteOperation {
+    INSERT,
+    UPDATE,
+    DELETE,
+    GET_SINGLE,
+    GET_LIST
+}
@@ -0,0 +1,323 @@
+package com.johnpili.sqliter;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The top-level ORDER BY and LIMIT of a query, used to merge per-shard results that are already sorted.
+ * Values are compared the way SQLite sorts them: NULL, then numbers, then text, then blobs. Integers and reals
+ * compare exactly, text compares by code point, which is the byte order of UTF-8, and NOCASE folds ASCII letters only
+ *
+ * @author John Pili
+ */
+class SqliteOrderBy {
+    private static final Pattern ORDER_BY = Pattern.compile("\\bORDER\\s+BY\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LIMIT = Pattern.compile("\\bLIMIT\\b", Pattern.CASE_INSENSITIVE);
+    private static final Pattern LITERAL_LIMIT = Pattern.compile("(?is)\\s*LIMIT\\s+(\\d+)\\s*;?\\s*");
+    private static final Pattern OFFSET = Pattern.compile("(?is).*(\\bOFFSET\\b|,).*");
+    private static final Pattern TERM = Pattern.compile(
+            "(?is)^(.+?)(?:\\s+COLLATE\\s+(\\w+))?(?:\\s+(ASC|DESC))?(?:\\s+NULLS\\s+(FIRST|LAST))?$");
+
+    private final String[] expressions;
+    private final boolean[] descending;
+    private final boolean[] nullsFirst;
+    private final String[] collations;
+    private final int limit;
+
+    private SqliteOrderBy(List<String> terms, int limit) {
+        int count = terms.size();
+        this.expressions = new String[count];
+        this.descending = new boolean[count];
+        this.nullsFirst = new boolean[count];
+        this.collations = new String[count];
+        this.limit = limit;
+        for (int i = 0; i < count; i++) {
+            Matcher matcher = TERM.matcher(terms.get(i).trim());
+            if (!matcher.matches()) {
+                throw new IllegalArgumentException("Cannot parse ORDER BY term: " + terms.get(i));
+            }
+            expressions[i] = matcher.group(1).trim();
+            collations[i] = matcher.group(2) == null ? "BINARY" : matcher.group(2).toUpperCase(Locale.ROOT);
+            if (!collations[i].equals("BINARY") && !collations[i].equals("NOCASE") && !collations[i].equals("RTRIM")) {
+                throw new IllegalArgumentException("Collation " + matcher.group(2) + " cannot be merged across shards,"
+                        + " pass a comparator instead");
+            }
+            descending[i] = "DESC".equalsIgnoreCase(matcher.group(3));
+            // SQLite puts NULLs first in ascending and last in descending order unless told otherwise
+            nullsFirst[i] = matcher.group(4) == null ? !descending[i] : "FIRST".equalsIgnoreCase(matcher.group(4));
+        }
+    }
+
+    /**
+     * This method extracts the top-level ORDER BY of a query
+     *
+     * @param sql String
+     * @return SqliteOrderBy or null when the query is not ordered
+     * @throws IllegalArgumentException when the query has an OFFSET, which cannot be applied per shard
+     */
+    static SqliteOrderBy parse(String sql) {
+        String masked = mask(sql);
+        Matcher orderBy = ORDER_BY.matcher(masked);
+        int start = -1;
+        while (orderBy.find()) {
+            start = orderBy.end();
+        }
+        if (start < 0) {
+            return null;
+        }
+
+        int end = sql.length();
+        Matcher limitMatcher = LIMIT.matcher(masked);
+        if (limitMatcher.find(start)) {
+            end = limitMatcher.start();
+        }
+        int limit = parseLimitClause(sql, end);
+
+        List<String> terms = new ArrayList<>();
+        int termStart = start;
+        for (int i = start; i < end; i++) {
+            if (masked.charAt(i) == ',') {
+                terms.add(sql.substring(termStart, i));
+                termStart = i + 1;
+            }
+        }
+        terms.add(sql.substring(termStart, end).replaceAll(";\\s*$", ""));
+        return new SqliteOrderBy(terms, limit);
+    }
+
+    /**
+     * This method extracts the literal top-level LIMIT of a query, ordered or not
+     *
+     * @param sql String
+     * @return int, -1 when the query has no literal LIMIT
+     * @throws IllegalArgumentException when the query has an OFFSET, which cannot be applied per shard
+     */
+    static int parseLimit(String sql) {
+        Matcher limitMatcher = LIMIT.matcher(mask(sql));
+        int start = sql.length();
+        while (limitMatcher.find()) {
+            start = limitMatcher.start();
+        }
+        return parseLimitClause(sql, start);
+    }
+
+    private static int parseLimitClause(String sql, int start) {
+        if (start >= sql.length()) {
+            return -1;
+        }
+        String limitClause = sql.substring(start);
+        Matcher literal = LITERAL_LIMIT.matcher(limitClause);
+        if (literal.matches()) {
+            return Integer.parseInt(literal.group(1));
+        }
+        if (OFFSET.matcher(mask(limitClause)).matches()) {
+            throw new IllegalArgumentException("OFFSET cannot be applied per shard, use keyset pagination instead");
+        }
+        return -1;
+    }
+
+    /**
+     * Literal LIMIT of the query or -1. The merged result is cut to this size
+     *
+     * @return int
+     */
+    int getLimit() {
+        return limit;
+    }
+
+    /**
+     * This method resolves the ORDER BY terms to result columns: by position, by label, or by the column
+     * part of a qualified name
+     *
+     * @param metaData ResultSetMetaData
+     * @return int[] 1-based column indexes
+     * @throws SQLException when a term is not a result column
+     */
+    int[] resolveColumns(ResultSetMetaData metaData) throws SQLException {
+        int[] columns = new int[expressions.length];
+        for (int i = 0; i < expressions.length; i++) {
+            columns[i] = resolveColumn(metaData, expressions[i]);
+            if (columns[i] < 1) {
+                throw new SQLException("ORDER BY term " + expressions[i] + " must be a result column to merge shards;"
+                        + " select it or pass a comparator");
+            }
+        }
+        return columns;
+    }
+
+    int compare(Object[] left, Object[] right) {
+        for (int i = 0; i < expressions.length; i++) {
+            int result;
+            if (left[i] == null || right[i] == null) {
+                result = left[i] == right[i] ? 0 : (left[i] == null) == nullsFirst[i] ? -1 : 1;
+            } else {
+                result = compareValues(left[i], right[i], collations[i]);
+                if (descending[i]) {
+                    result = -result;
+                }
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return 0;
+    }
+
+    private static int resolveColumn(ResultSetMetaData metaData, String expression) throws SQLException {
+        if (expression.matches("\\d+")) {
+            int position = Integer.parseInt(expression);
+            return position <= metaData.getColumnCount() ? position : -1;
+        }
+        String name = unquote(expression);
+        int dot = name.lastIndexOf('.');
+        String column = dot >= 0 ? unquote(name.substring(dot + 1)) : name;
+        for (int i = 1; i <= metaData.getColumnCount(); i++) {
+            if (metaData.getColumnLabel(i).equalsIgnoreCase(name) || metaData.getColumnLabel(i).equalsIgnoreCase(column)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private static String unquote(String identifier) {
+        String trimmed = identifier.trim();
+        if (trimmed.length() >= 2 && (trimmed.charAt(0) == '"' || trimmed.charAt(0) == '`' || trimmed.charAt(0) == '[')) {
+            return trimmed.substring(1, trimmed.length() - 1);
+        }
+        return trimmed;
+    }
+
+    private static int compareValues(Object left, Object right, String collation) {
+        int leftClass = storageClass(left);
+        int rightClass = storageClass(right);
+        if (leftClass != rightClass) {
+            return Integer.compare(leftClass, rightClass);
+        }
+        if (leftClass == 1) {
+            return compareNumbers((Number) left, (Number) right);
+        }
+        if (leftClass == 2) {
+            return compareText((String) left, (String) right, collation);
+        }
+        if (leftClass == 3) {
+            return Arrays.compareUnsigned((byte[]) left, (byte[]) right);
+        }
+        return left.toString().compareTo(right.toString());
+    }
+
+    private static int compareNumbers(Number left, Number right) {
+        boolean leftReal = left instanceof Double || left instanceof Float;
+        boolean rightReal = right instanceof Double || right instanceof Float;
+        if (!leftReal && !rightReal) {
+            return Long.compare(left.longValue(), right.longValue());
+        }
+        if (leftReal && rightReal) {
+            double leftValue = left.doubleValue();
+            double rightValue = right.doubleValue();
+            return leftValue < rightValue ? -1 : leftValue > rightValue ? 1 : 0;
+        }
+        return leftReal ? -compareIntegerToReal(right.longValue(), left.doubleValue())
+                : compareIntegerToReal(left.longValue(), right.doubleValue());
+    }
+
+    /**
+     * Compares without converting the integer to a double, which would round integers above 2^53
+     */
+    private static int compareIntegerToReal(long integer, double real) {
+        if (real < -9.223372036854775808e18) {
+            return 1;
+        }
+        if (real >= 9.223372036854775808e18) {
+            return -1;
+        }
+        // Truncating a double in the long range is exact, so only the fraction is left to compare
+        long truncated = (long) real;
+        if (integer != truncated) {
+            return integer < truncated ? -1 : 1;
+        }
+        return real > truncated ? -1 : real < truncated ? 1 : 0;
+    }
+
+    private static int compareText(String left, String right, String collation) {
+        int leftLength = left.length();
+        int rightLength = right.length();
+        if (collation.equals("RTRIM")) {
+            while (leftLength > 0 && left.charAt(leftLength - 1) == ' ') {
+                leftLength--;
+            }
+            while (rightLength > 0 && right.charAt(rightLength - 1) == ' ') {
+                rightLength--;
+            }
+        }
+        boolean noCase = collation.equals("NOCASE");
+        int leftIndex = 0;
+        int rightIndex = 0;
+        while (leftIndex < leftLength && rightIndex < rightLength) {
+            int leftCodePoint = left.codePointAt(leftIndex);
+            int rightCodePoint = right.codePointAt(rightIndex);
+            leftIndex += Character.charCount(leftCodePoint);
+            rightIndex += Character.charCount(rightCodePoint);
+            if (noCase) {
+                leftCodePoint = foldAscii(leftCodePoint);
+                rightCodePoint = foldAscii(rightCodePoint);
+            }
+            if (leftCodePoint != rightCodePoint) {
+                return Integer.compare(leftCodePoint, rightCodePoint);
+            }
+        }
+        return Boolean.compare(leftIndex < leftLength, rightIndex < rightLength);
+    }
+
+    private static int foldAscii(int codePoint) {
+        return codePoint >= 'A' && codePoint <= 'Z' ? codePoint + ('a' - 'A') : codePoint;
+    }
+
+    private static int storageClass(Object value) {
+        if (value instanceof Number) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return 2;
+        }
+        if (value instanceof byte[]) {
+            return 3;
+        }
+        return 4;
+    }
+
+    /**
+     * Blanks out string literals, quoted identifiers and parenthesized parts so only top-level keywords match
+     */
+    private static String mask(String sql) {
+        char[] masked = sql.toCharArray();
+        int depth = 0;
+        char quote = 0;
+        for (int i = 0; i < masked.length; i++) {
+            char character = masked[i];
+            if (quote != 0) {
+                if (character == quote) {
+                    quote = 0;
+                }
+                masked[i] = ' ';
+            } else if (character == '\'' || character == '"' || character == '`') {
+                quote = character;
+                masked[i] = ' ';
+            } else if (character == '(') {
+                depth++;
+                masked[i] = ' ';
+            } else if (character == ')') {
+                depth--;
+                masked[i] = ' ';
+            } else if (depth > 0) {
+                masked[i] = ' ';
+            }
+        }
+        return new String(masked).toUpperCase(Locale.ROOT);
+    }
+}
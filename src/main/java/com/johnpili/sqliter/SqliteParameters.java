@@ -0,0 +1,366 @@
+package com.johnpili.sqliter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Typed statement parameters stored in primitive arrays and bound with setLong, setDouble, setString and setBytes
+ * instead of setObject, so binding does not box values or allocate a map. Indexes are 1-based like JDBC.
+ * An instance can be cleared and reused between calls, but must not be shared between threads
+ *
+ * @author John Pili
+ */
+public final class SqliteParameters implements SqliteStatementBinder {
+    private static final byte UNSET = 0;
+    private static final byte NULL = 1;
+    private static final byte LONG = 2;
+    private static final byte DOUBLE = 3;
+    private static final byte STRING = 4;
+    private static final byte BYTES = 5;
+    private static final byte OBJECT = 6;
+
+    private byte[] types;
+    private long[] longs;
+    private double[] doubles;
+    private Object[] objects;
+    private int size;
+
+    public SqliteParameters() {
+        this(8);
+    }
+
+    public SqliteParameters(int capacity) {
+        int initialCapacity = Math.max(1, capacity);
+        this.types = new byte[initialCapacity];
+        this.longs = new long[initialCapacity];
+        this.doubles = new double[initialCapacity];
+        this.objects = new Object[initialCapacity];
+    }
+
+    /**
+     * This method binds the values positionally starting at index 1, picking the typed setter from each value
+     *
+     * @param values Object...
+     * @return SqliteParameters
+     */
+    public static SqliteParameters of(Object... values) {
+        SqliteParameters parameters = new SqliteParameters(values.length);
+        for (int i = 0; i < values.length; i++) {
+            parameters.bindObject(i + 1, values[i]);
+        }
+        return parameters;
+    }
+
+    public SqliteParameters bindLong(int index, long value) {
+        int slot = slot(index);
+        types[slot] = LONG;
+        longs[slot] = value;
+        objects[slot] = null;
+        return this;
+    }
+
+    /**
+     * SQLite stores every integer as a 64-bit value, so ints are bound with setLong
+     *
+     * @param index int
+     * @param value int
+     * @return SqliteParameters
+     */
+    public SqliteParameters bindInt(int index, int value) {
+        return bindLong(index, value);
+    }
+
+    /**
+     * SQLite has no boolean type, true and false are stored as 1 and 0
+     *
+     * @param index int
+     * @param value boolean
+     * @return SqliteParameters
+     */
+    public SqliteParameters bindBoolean(int index, boolean value) {
+        return bindLong(index, value ? 1 : 0);
+    }
+
+    public SqliteParameters bindDouble(int index, double value) {
+        int slot = slot(index);
+        types[slot] = DOUBLE;
+        doubles[slot] = value;
+        objects[slot] = null;
+        return this;
+    }
+
+    public SqliteParameters bindString(int index, String value) {
+        return bindReference(index, STRING, value);
+    }
+
+    public SqliteParameters bindBytes(int index, byte[] value) {
+        return bindReference(index, BYTES, value);
+    }
+
+    public SqliteParameters bindNull(int index) {
+        return bindReference(index, NULL, null);
+    }
+
+    /**
+     * This method picks the typed binding from the runtime type of the value and falls back to setObject
+     *
+     * @param index int
+     * @param value Object
+     * @return SqliteParameters
+     */
+    public SqliteParameters bindObject(int index, Object value) {
+        if (value == null) {
+            return bindNull(index);
+        }
+        if (value instanceof Long || value instanceof Integer || value instanceof Short || value instanceof Byte) {
+            return bindLong(index, ((Number) value).longValue());
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return bindDouble(index, ((Number) value).doubleValue());
+        }
+        if (value instanceof Boolean) {
+            return bindBoolean(index, (Boolean) value);
+        }
+        if (value instanceof String) {
+            return bindString(index, (String) value);
+        }
+        if (value instanceof byte[]) {
+            return bindBytes(index, (byte[]) value);
+        }
+        return bindReference(index, OBJECT, value);
+    }
+
+    /**
+     * Forget all bound values and keep the arrays for the next call
+     *
+     * @return SqliteParameters
+     */
+    public SqliteParameters clear() {
+        return truncate(0);
+    }
+
+    /**
+     * Unbind every index above the given one, keeping the lower ones
+     *
+     * @param size int
+     * @return SqliteParameters
+     */
+    SqliteParameters truncate(int size) {
+        if (size < this.size) {
+            Arrays.fill(types, size, this.size, UNSET);
+            Arrays.fill(objects, size, this.size, null);
+            this.size = size;
+        }
+        return this;
+    }
+
+    /**
+     * The highest bound index
+     *
+     * @return int
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * This method binds the values to the prepared statement, leaving unbound indexes untouched
+     *
+     * @param preparedStatement PreparedStatement
+     * @throws SQLException SQLException
+     */
+    @Override
+    public void bindTo(PreparedStatement preparedStatement) throws SQLException {
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case LONG:
+                    preparedStatement.setLong(i + 1, longs[i]);
+                    break;
+                case DOUBLE:
+                    preparedStatement.setDouble(i + 1, doubles[i]);
+                    break;
+                case STRING:
+                    preparedStatement.setString(i + 1, (String) objects[i]);
+                    break;
+                case BYTES:
+                    preparedStatement.setBytes(i + 1, (byte[]) objects[i]);
+                    break;
+                case NULL:
+                    preparedStatement.setNull(i + 1, Types.NULL);
+                    break;
+                case OBJECT:
+                    preparedStatement.setObject(i + 1, objects[i]);
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+
+    /**
+     * The bound values by index, boxed, in the shape of the legacy parameter map
+     *
+     * @return Map&lt;Integer, Object&gt;
+     */
+    public Map<Integer, Object> toMap() {
+        Map<Integer, Object> values = new LinkedHashMap<>();
+        for (int i = 0; i < size; i++) {
+            switch (types[i]) {
+                case LONG:
+                    values.put(i + 1, longs[i]);
+                    break;
+                case DOUBLE:
+                    values.put(i + 1, doubles[i]);
+                    break;
+                case NULL:
+                    values.put(i + 1, null);
+                    break;
+                case UNSET:
+                    break;
+                default:
+                    values.put(i + 1, objects[i]);
+                    break;
+            }
+        }
+        return values;
+    }
+
+    /**
+     * Independent copy, used where the values have to outlive a reused instance
+     *
+     * @return SqliteParameters
+     */
+    public SqliteParameters copy() {
+        SqliteParameters copy = new SqliteParameters(size);
+        System.arraycopy(types, 0, copy.types, 0, size);
+        System.arraycopy(longs, 0, copy.longs, 0, size);
+        System.arraycopy(doubles, 0, copy.doubles, 0, size);
+        System.arraycopy(objects, 0, copy.objects, 0, size);
+        copy.size = size;
+        return copy;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (this == other) {
+            return true;
+        }
+        if (!(other instanceof SqliteParameters)) {
+            return false;
+        }
+        SqliteParameters parameters = (SqliteParameters) other;
+        if (size != parameters.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            if (types[i] != parameters.types[i]) {
+                return false;
+            }
+            switch (types[i]) {
+                case LONG:
+                    if (longs[i] != parameters.longs[i]) {
+                        return false;
+                    }
+                    break;
+                case DOUBLE:
+                    if (Double.compare(doubles[i], parameters.doubles[i]) != 0) {
+                        return false;
+                    }
+                    break;
+                case BYTES:
+                    if (!Arrays.equals((byte[]) objects[i], (byte[]) parameters.objects[i])) {
+                        return false;
+                    }
+                    break;
+                default:
+                    if (!Objects.equals(objects[i], parameters.objects[i])) {
+                        return false;
+                    }
+                    break;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = size;
+        for (int i = 0; i < size; i++) {
+            hash = 31 * hash + types[i];
+            switch (types[i]) {
+                case LONG:
+                    hash = 31 * hash + Long.hashCode(longs[i]);
+                    break;
+                case DOUBLE:
+                    hash = 31 * hash + Double.hashCode(doubles[i]);
+                    break;
+                case BYTES:
+                    hash = 31 * hash + Arrays.hashCode((byte[]) objects[i]);
+                    break;
+                default:
+                    hash = 31 * hash + Objects.hashCode(objects[i]);
+                    break;
+            }
+        }
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder("SqliteParameters{");
+        for (int i = 0; i < size; i++) {
+            if (types[i] == UNSET) {
+                continue;
+            }
+            if (builder.length() > "SqliteParameters{".length()) {
+                builder.append(", ");
+            }
+            builder.append(i + 1).append('=');
+            switch (types[i]) {
+                case LONG:
+                    builder.append(longs[i]);
+                    break;
+                case DOUBLE:
+                    builder.append(doubles[i]);
+                    break;
+                case BYTES:
+                    builder.append("byte[").append(((byte[]) objects[i]).length).append(']');
+                    break;
+                default:
+                    builder.append(objects[i]);
+                    break;
+            }
+        }
+        return builder.append('}').toString();
+    }
+
+    private SqliteParameters bindReference(int index, byte type, Object value) {
+        int slot = slot(index);
+        types[slot] = type;
+        objects[slot] = value;
+        return this;
+    }
+
+    private int slot(int index) {
+        if (index < 1) {
+            throw new IllegalArgumentException("Parameter index starts at 1: " + index);
+        }
+        int slot = index - 1;
+        if (slot >= types.length) {
+            int capacity = Math.max(slot + 1, types.length * 2);
+            types = Arrays.copyOf(types, capacity);
+            longs = Arrays.copyOf(longs, capacity);
+            doubles = Arrays.copyOf(doubles, capacity);
+            objects = Arrays.copyOf(objects, capacity);
+        }
+        if (index > size) {
+            size = index;
+        }
+        return slot;
+    }
+}
@@ -0,0 +1,72 @@
+package com.johnpili.sqliter;
+
+/**
+ * Point in time snapshot of the connection pool counters
+ *
+ * @author John Pili
+ */
+public class SqlitePoolStatistics {
+    private final long acquireCount;
+    private final long totalWaitNanos;
+    private final long maxWaitNanos;
+    private final long timeoutCount;
+    private final long validationFailureCount;
+    private final int openReadConnections;
+    private final int idleReadConnections;
+
+    public SqlitePoolStatistics(long acquireCount, long totalWaitNanos, long maxWaitNanos, long timeoutCount,
+                                long validationFailureCount, int openReadConnections, int idleReadConnections) {
+        this.acquireCount = acquireCount;
+        this.totalWaitNanos = totalWaitNanos;
+        this.maxWaitNanos = maxWaitNanos;
+        this.timeoutCount = timeoutCount;
+        this.validationFailureCount = validationFailureCount;
+        this.openReadConnections = openReadConnections;
+        this.idleReadConnections = idleReadConnections;
+    }
+
+    public long getAcquireCount() {
+        return acquireCount;
+    }
+
+    public long getTotalWaitNanos() {
+        return totalWaitNanos;
+    }
+
+    public long getMaxWaitNanos() {
+        return maxWaitNanos;
+    }
+
+    public long getAverageWaitNanos() {
+        return acquireCount == 0 ? 0 : totalWaitNanos / acquireCount;
+    }
+
+    public long getTimeoutCount() {
+        return timeoutCount;
+    }
+
+    public long getValidationFailureCount() {
+        return validationFailureCount;
+    }
+
+    public int getOpenReadConnections() {
+        return openReadConnections;
+    }
+
+    public int getIdleReadConnections() {
+        return idleReadConnections;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlitePoolStatistics{" +
+                "acquireCount=" + acquireCount +
+                ", totalWaitNanos=" + totalWaitNanos +
+                ", maxWaitNanos=" + maxWaitNanos +
+                ", timeoutCount=" + timeoutCount +
+                ", validationFailureCount=" + validationFailureCount +
+                ", openReadConnections=" + openReadConnections +
+                ", idleReadConnections=" + idleReadConnections +
+                '}';
+    }
+}
@@ -0,0 +1,59 @@
+package com.johnpili.sqliter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * A physical connection owned by the connection pool
+ *
+ * @author John Pili
+ */
+class SqlitePooledConnection {
+    private final Connection connection;
+    private final boolean readOnly;
+    private final SqlitePreparedStatementCache statementCache;
+    private long lastUsedNanos;
+
+    SqlitePooledConnection(Connection connection, boolean readOnly, SqlitePreparedStatementCache statementCache) {
+        this.connection = connection;
+        this.readOnly = readOnly;
+        this.statementCache = statementCache;
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    Connection getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns null when statement caching is disabled
+     *
+     * @return SqlitePreparedStatementCache
+     */
+    SqlitePreparedStatementCache getStatementCache() {
+        return statementCache;
+    }
+
+    boolean isReadOnly() {
+        return readOnly;
+    }
+
+    long getLastUsedNanos() {
+        return lastUsedNanos;
+    }
+
+    void touch() {
+        this.lastUsedNanos = System.nanoTime();
+    }
+
+    void close() {
+        if (statementCache != null) {
+            statementCache.clear();
+        }
+        try {
+            connection.close();
+        } catch (SQLException ignored) {
+            // The connection is being discarded, nothing else to do
+        }
+    }
+}
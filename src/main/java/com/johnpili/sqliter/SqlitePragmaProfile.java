@@ -0,0 +1,225 @@
+package com.johnpili.sqliter;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Set of performance pragmas applied once to every connection when it is opened.
+ * A null value leaves the SQLite default untouched
+ *
+ * @author John Pili
+ */
+public class SqlitePragmaProfile {
+    public static final String DURABLE = "durable";
+    public static final String BALANCED = "balanced";
+    public static final String BULK_LOAD = "bulk-load";
+
+    static final String[] PRAGMA_NAMES = {"page_size", "journal_mode", "synchronous", "cache_size", "mmap_size",
+            "temp_store", "busy_timeout", "foreign_keys"};
+
+    private String name;
+    private Integer pageSize;
+    private String journalMode;
+    private String synchronous;
+    private Integer cacheSize;
+    private Long mmapSize;
+    private String tempStore;
+    private Integer busyTimeout;
+
+    public SqlitePragmaProfile() {
+        this.name = "custom";
+    }
+
+    public SqlitePragmaProfile(String name) {
+        this.name = name;
+    }
+
+    /**
+     * WAL with full fsync on every commit. Nothing committed is lost on power failure
+     *
+     * @return SqlitePragmaProfile
+     */
+    public static SqlitePragmaProfile durable() {
+        SqlitePragmaProfile profile = new SqlitePragmaProfile(DURABLE);
+        profile.setJournalMode("WAL");
+        profile.setSynchronous("FULL");
+        profile.setBusyTimeout(5000);
+        return profile;
+    }
+
+    /**
+     * WAL with fsync at checkpoints only, a larger page cache and memory mapped reads.
+     * A power failure can roll back the last commits but never corrupts the database
+     *
+     * @return SqlitePragmaProfile
+     */
+    public static SqlitePragmaProfile balanced() {
+        SqlitePragmaProfile profile = new SqlitePragmaProfile(BALANCED);
+        profile.setJournalMode("WAL");
+        profile.setSynchronous("NORMAL");
+        profile.setCacheSize(-16000);
+        profile.setMmapSize(268435456L);
+        profile.setTempStore("MEMORY");
+        profile.setBusyTimeout(5000);
+        return profile;
+    }
+
+    /**
+     * No fsync at all and a large page cache for imports that can be rerun from scratch.
+     * Application crashes are safe, a power failure may corrupt the database
+     *
+     * @return SqlitePragmaProfile
+     */
+    public static SqlitePragmaProfile bulkLoad() {
+        SqlitePragmaProfile profile = new SqlitePragmaProfile(BULK_LOAD);
+        profile.setJournalMode("WAL");
+        profile.setSynchronous("OFF");
+        profile.setCacheSize(-65536);
+        profile.setMmapSize(268435456L);
+        profile.setTempStore("MEMORY");
+        profile.setBusyTimeout(10000);
+        return profile;
+    }
+
+    /**
+     * Look up a preset by name: durable, balanced or bulk-load
+     *
+     * @param name String
+     * @return SqlitePragmaProfile
+     */
+    public static SqlitePragmaProfile named(String name) {
+        if (DURABLE.equalsIgnoreCase(name)) {
+            return durable();
+        }
+        if (BALANCED.equalsIgnoreCase(name)) {
+            return balanced();
+        }
+        if (BULK_LOAD.equalsIgnoreCase(name)) {
+            return bulkLoad();
+        }
+        throw new IllegalArgumentException("Unknown pragma profile: " + name);
+    }
+
+    /**
+     * The pragmas in the order they are applied. page_size has to come before journal_mode because the
+     * page size of a WAL database cannot change
+     *
+     * @return Map&lt;String, String&gt;
+     */
+    public Map<String, String> toPragmas() {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        putIfSet(pragmas, "page_size", pageSize);
+        putIfSet(pragmas, "journal_mode", journalMode);
+        putIfSet(pragmas, "synchronous", synchronous);
+        putIfSet(pragmas, "cache_size", cacheSize);
+        putIfSet(pragmas, "mmap_size", mmapSize);
+        putIfSet(pragmas, "temp_store", tempStore);
+        putIfSet(pragmas, "busy_timeout", busyTimeout);
+        return pragmas;
+    }
+
+    /**
+     * This method applies the profile to a freshly opened connection. page_size and journal_mode are
+     * stored in the database file, so read-only connections skip them and inherit them from the file
+     *
+     * @param connection Connection
+     * @param readOnly   boolean
+     * @throws SQLException SQLException
+     */
+    void apply(Connection connection, boolean readOnly) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            for (Map.Entry<String, String> pragma : toPragmas().entrySet()) {
+                if (readOnly && (pragma.getKey().equals("page_size") || pragma.getKey().equals("journal_mode"))) {
+                    continue;
+                }
+                statement.execute("PRAGMA " + pragma.getKey() + "=" + pragma.getValue());
+            }
+        }
+    }
+
+    private void putIfSet(Map<String, String> pragmas, String key, Object value) {
+        if (value != null) {
+            pragmas.put(key, value.toString());
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public Integer getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(Integer pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public String getJournalMode() {
+        return journalMode;
+    }
+
+    public void setJournalMode(String journalMode) {
+        this.journalMode = journalMode;
+    }
+
+    public String getSynchronous() {
+        return synchronous;
+    }
+
+    public void setSynchronous(String synchronous) {
+        this.synchronous = synchronous;
+    }
+
+    public Integer getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Positive values are pages, negative values are KiB
+     *
+     * @param cacheSize Integer
+     */
+    public void setCacheSize(Integer cacheSize) {
+        this.cacheSize = cacheSize;
+    }
+
+    public Long getMmapSize() {
+        return mmapSize;
+    }
+
+    public void setMmapSize(Long mmapSize) {
+        this.mmapSize = mmapSize;
+    }
+
+    public String getTempStore() {
+        return tempStore;
+    }
+
+    public void setTempStore(String tempStore) {
+        this.tempStore = tempStore;
+    }
+
+    public Integer getBusyTimeout() {
+        return busyTimeout;
+    }
+
+    public void setBusyTimeout(Integer busyTimeout) {
+        this.busyTimeout = busyTimeout;
+    }
+
+    @Override
+    public String toString() {
+        return "SqlitePragmaProfile{" +
+                "name='" + name + '\'' +
+                ", pragmas=" + toPragmas() +
+                '}';
+    }
+}
@@ -0,0 +1,141 @@
+package com.johnpili.sqliter;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LRU cache of prepared statements for a single pooled connection, keyed by the sanitized SQL.
+ * A connection is only ever used by one lease at a time so the cache itself is not synchronized.
+ * Evicted statements may still be in use by the current lease, so they are only closed when it is released.
+ * A statement belongs to the lease that got it until that lease closes, so a nested lease on the same connection
+ * never re-executes a statement whose ResultSet the outer lease is still reading
+ *
+ * @author John Pili
+ */
+class SqlitePreparedStatementCache {
+    private final Connection connection;
+    private final int maxSize;
+    private final Counters counters;
+    private final LinkedHashMap<String, PreparedStatement> statements;
+    private final List<PreparedStatement> evicted = new ArrayList<>();
+    private final IdentityHashMap<PreparedStatement, Object> owners = new IdentityHashMap<>();
+    private long schemaGeneration;
+
+    SqlitePreparedStatementCache(Connection connection, int maxSize, Counters counters, long schemaGeneration) {
+        this.connection = connection;
+        this.maxSize = maxSize;
+        this.counters = counters;
+        this.schemaGeneration = schemaGeneration;
+        this.statements = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * This method returns a cached statement with its parameters cleared, or prepares and caches a new one.
+     * It returns null when the cached statement belongs to another lease, whose ResultSet may still be open,
+     * and the caller then prepares an uncached statement of its own. Callers must not close the returned statement
+     *
+     * @param sql   String
+     * @param owner Object, the lease asking for the statement
+     * @return PreparedStatement or null
+     * @throws SQLException SQLException
+     */
+    PreparedStatement get(String sql, Object owner) throws SQLException {
+        PreparedStatement preparedStatement = statements.get(sql);
+        if (preparedStatement != null && !preparedStatement.isClosed()) {
+            Object currentOwner = owners.putIfAbsent(preparedStatement, owner);
+            if (currentOwner != null && currentOwner != owner) {
+                counters.misses.increment();
+                return null;
+            }
+            preparedStatement.clearParameters();
+            counters.hits.increment();
+            return preparedStatement;
+        }
+
+        counters.misses.increment();
+        preparedStatement = connection.prepareStatement(sql);
+        statements.put(sql, preparedStatement);
+        owners.put(preparedStatement, owner);
+        if (statements.size() > maxSize) {
+            Iterator<Map.Entry<String, PreparedStatement>> iterator = statements.entrySet().iterator();
+            evicted.add(iterator.next().getValue());
+            iterator.remove();
+            counters.evictions.increment();
+        }
+        return preparedStatement;
+    }
+
+    /**
+     * Hands the statements of a closing lease back to the cache
+     *
+     * @param owner Object
+     */
+    void release(Object owner) {
+        owners.values().removeIf(currentOwner -> currentOwner == owner);
+    }
+
+    /**
+     * Drops every cached statement when the schema changed since the cache was last used
+     *
+     * @param currentSchemaGeneration long
+     */
+    void validate(long currentSchemaGeneration) {
+        if (schemaGeneration != currentSchemaGeneration) {
+            clear();
+            schemaGeneration = currentSchemaGeneration;
+        }
+    }
+
+    /**
+     * Closes the statements evicted while the connection was leased, called when the lease is released
+     */
+    void closeEvicted() {
+        for (PreparedStatement preparedStatement : evicted) {
+            closeQuietly(preparedStatement);
+        }
+        evicted.clear();
+    }
+
+    void clear() {
+        closeEvicted();
+        counters.evictions.add(statements.size());
+        for (PreparedStatement preparedStatement : statements.values()) {
+            closeQuietly(preparedStatement);
+        }
+        statements.clear();
+        owners.clear();
+    }
+
+    int size() {
+        return statements.size();
+    }
+
+    private void closeQuietly(PreparedStatement preparedStatement) {
+        try {
+            preparedStatement.close();
+        } catch (SQLException ignored) {
+            // The statement is being discarded, nothing else to do
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counters shared by all caches of one pool
+     */
+    static class Counters {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+
+        SqliteStatementCacheStatistics snapshot() {
+            return new SqliteStatementCacheStatistics(hits.sum(), misses.sum(), evictions.sum());
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.johnpili.sqliter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Places keys by range. With upper bounds b0 &lt; b1 &lt; ... shard 0 owns keys below b0, shard 1 owns
+ * keys from b0 up to b1 and the last shard owns everything from the last bound up, so N bounds need N + 1 shards
+ *
+ * @author John Pili
+ */
+public class SqliteRangeShardStrategy<K extends Comparable<? super K>> implements SqliteShardStrategy {
+    private final List<K> upperBounds;
+
+    public SqliteRangeShardStrategy(List<K> upperBounds) {
+        for (int i = 1; i < upperBounds.size(); i++) {
+            if (upperBounds.get(i - 1).compareTo(upperBounds.get(i)) >= 0) {
+                throw new IllegalArgumentException("Upper bounds must be strictly ascending");
+            }
+        }
+        this.upperBounds = Collections.unmodifiableList(new ArrayList<>(upperBounds));
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public int shardFor(Object routingKey, int shardCount) {
+        if (routingKey == null) {
+            throw new IllegalArgumentException("Routing key must not be null");
+        }
+        int index = Collections.binarySearch(upperBounds, (K) routingKey);
+        // A key equal to a bound belongs to the shard above it
+        return index >= 0 ? index + 1 : -index - 1;
+    }
+
+    @Override
+    public void checkShardCount(int shardCount) {
+        if (upperBounds.size() + 1 != shardCount) {
+            throw new IllegalArgumentException(upperBounds.size() + " upper bounds need " + (upperBounds.size() + 1)
+                    + " shards, not " + shardCount);
+        }
+    }
+
+    public List<K> getUpperBounds() {
+        return upperBounds;
+    }
+}
@@ -2,130 +2,937 @@ package com.johnpili.sqliter;
 
 import com.johnpili.sqliter.constants.SqlStatements;
 import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+import org.sqlite.SQLiteConfig;
+import org.sqlite.SQLiteConnection;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * @author John Pili
  */
-public class SqliteRepository implements SqliteRepositoryInterface {
+public class SqliteRepository implements SqliteRepositoryInterface, AutoCloseable {
+    private static final String ALL_TABLES = "*";
+
     private final SqliteConfig sqliteConfig;
+    private final SqliteConnectionFactory connectionFactory;
+    private final SqliteConnectionPool connectionPool;
+    private final SqliteConnectionLease transactionLease;
+    private final SqliteResultCache resultCache;
+    private final Set<String> transactionTables;
+    private final SqliteStatementListener statementListener;
+    private final SqliteUpsertStatements upsertStatements;
+    private final SqliteSchemaCache schemaCache;
+    private final SqliteSlowQueryLog slowQueryLog;
+    private final SqliteHotTier hotTier;
+    private final SqliteRetrier retrier;
+    private SqliteWriteQueue writeQueue;
+    private boolean schemaChanged;
 
     public SqliteRepository(SqliteConfig sqliteConfig) {
         this.sqliteConfig = sqliteConfig;
+        this.hotTier = sqliteConfig.isHotTier() ? new SqliteHotTier(sqliteConfig) : null;
+        this.connectionFactory = hotTier != null
+                ? new SqliteConnectionFactory(sqliteConfig, hotTier.getMemoryLocation(), true)
+                : new SqliteConnectionFactory(sqliteConfig);
+        this.connectionPool = sqliteConfig.isPooled() || hotTier != null ? new SqliteConnectionPool(sqliteConfig, connectionFactory) : null;
+        this.transactionLease = null;
+        this.resultCache = sqliteConfig.getResultCacheSize() > 0
+                ? new SqliteResultCache(sqliteConfig.getResultCacheSize(), sqliteConfig.getResultCacheTtlMillis()) : null;
+        this.transactionTables = null;
+        this.statementListener = sqliteConfig.getStatementListener();
+        this.upsertStatements = new SqliteUpsertStatements();
+        this.schemaCache = new SqliteSchemaCache(sqliteConfig.getSchemaRevalidateMillis());
+        this.slowQueryLog = sqliteConfig.getSlowQueryThresholdMillis() > 0
+                ? new SqliteSlowQueryLog(sqliteConfig.getSlowQueryThresholdMillis(), sqliteConfig.getSlowQueryLogSize()) : null;
+        if (sqliteConfig.getRetryPolicy() != null) {
+            this.retrier = new SqliteRetrier(sqliteConfig.getRetryPolicy());
+        } else {
+            // Shared-cache table locks fail at once instead of waiting for the busy timeout
+            this.retrier = hotTier != null ? new SqliteRetrier(new SqliteRetryPolicy()) : null;
+        }
+        if (hotTier != null) {
+            hotTier.start(this);
+        }
     }
 
     public SqliteRepository(String dbLocation) {
-        this.sqliteConfig = new SqliteConfig(dbLocation);
+        this(new SqliteConfig(dbLocation));
+    }
+
+    /**
+     * Transaction-bound view that runs every operation on the connection held by the transaction lease
+     *
+     * @param parent           SqliteRepository
+     * @param transactionLease SqliteConnectionLease
+     */
+    private SqliteRepository(SqliteRepository parent, SqliteConnectionLease transactionLease) {
+        this.sqliteConfig = parent.sqliteConfig;
+        this.connectionFactory = parent.connectionFactory;
+        this.connectionPool = parent.connectionPool;
+        this.transactionLease = transactionLease;
+        this.resultCache = parent.resultCache;
+        this.transactionTables = new HashSet<>();
+        this.statementListener = parent.statementListener;
+        this.upsertStatements = parent.upsertStatements;
+        this.schemaCache = parent.schemaCache;
+        this.slowQueryLog = parent.slowQueryLog;
+        this.hotTier = null;
+        this.retrier = parent.retrier;
     }
 
     @Override
     public Connection getConnection() throws SQLException, SqliteDriverNotFoundException {
+        return connectionFactory.open(false, true);
+    }
+
+    @Override
+    public Connection getConnection(boolean pragmaFk) throws SQLException, SqliteDriverNotFoundException {
+        return connectionFactory.open(false, pragmaFk);
+    }
+
+    SqliteConfig getSqliteConfig() {
+        return sqliteConfig;
+    }
+
+    /**
+     * Connection pool counters such as the time callers waited for a connection.
+     * Returns null when the repository is not running in pooled mode
+     *
+     * @return SqlitePoolStatistics or null
+     */
+    public SqlitePoolStatistics getPoolStatistics() {
+        return connectionPool != null ? connectionPool.getStatistics() : null;
+    }
+
+    /**
+     * Prepared statement cache counters aggregated over all pooled connections.
+     * Returns null when the repository is not running in pooled mode
+     *
+     * @return SqliteStatementCacheStatistics or null
+     */
+    public SqliteStatementCacheStatistics getStatementCacheStatistics() {
+        return connectionPool != null ? connectionPool.getStatementCacheStatistics() : null;
+    }
+
+    /**
+     * Query result cache counters. Returns null when the result cache is disabled
+     *
+     * @return SqliteResultCacheStatistics or null
+     */
+    public SqliteResultCacheStatistics getResultCacheStatistics() {
+        return resultCache != null ? resultCache.getStatistics() : null;
+    }
+
+    /**
+     * This method does the startup work before the first real call has to: it loads the driver, opens every
+     * pooled connection and applies its pragmas, compiles SqliteConfig.precompiledStatements into the statement
+     * cache of each connection and reads SqliteConfig.warmTables with their indexes into each page cache.
+     * Without the pool every call opens a new connection, so the statements are only compiled once to validate
+     * them and the warmup only fills the file cache of the operating system
+     *
+     * @return SqliteStartupReport with the time spent in each phase
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public SqliteStartupReport initialize() throws SQLException, SqliteDriverNotFoundException {
+        if (transactionLease != null) {
+            throw new IllegalStateException("initialize cannot run inside a transaction");
+        }
+        long start = System.nanoTime();
+        SqliteConnectionFactory.loadDriver();
+        long driverNanos = System.nanoTime() - start;
+
+        long pragmaStart = connectionFactory.getPragmaNanos();
+        start = System.nanoTime();
+        int connectionCount = releaseAll(acquireAll(), null);
+        long pragmaNanos = connectionFactory.getPragmaNanos() - pragmaStart;
+        long connectionNanos = System.nanoTime() - start - pragmaNanos;
+
+        start = System.nanoTime();
+        List<String> warmupQueries = new ArrayList<>();
+        for (String table : sqliteConfig.getWarmTables()) {
+            String quotedTable = SqliteBulkTransfer.quoteIdentifier(table);
+            warmupQueries.add("SELECT count(*) FROM " + quotedTable + " NOT INDEXED");
+            for (SqliteIndex index : getIndexes(table)) {
+                String firstColumn = index.getColumns().isEmpty() ? null : index.getColumns().get(0);
+                // count(*) would take the smallest index whatever INDEXED BY says, partial and expression
+                // indexes cannot be forced without their own WHERE clause
+                if (!index.isPartial() && firstColumn != null) {
+                    warmupQueries.add("SELECT count(" + SqliteBulkTransfer.quoteIdentifier(firstColumn) + ") FROM "
+                            + quotedTable + " INDEXED BY " + SqliteBulkTransfer.quoteIdentifier(index.getName()));
+                }
+            }
+        }
+        long warmupNanos = System.nanoTime() - start;
+
+        long statementNanos = 0;
+        int statementCount = 0;
+        int warmedObjectCount = 0;
+        List<SqliteConnectionLease> leases = acquireAll();
+        Throwable failure = null;
         try {
-            Class.forName("org.sqlite.JDBC");
-            Connection connection = DriverManager.getConnection(sqliteConfig.getDbLocation());
-            try (PreparedStatement preparedStatement = connection.prepareStatement("PRAGMA foreign_keys=ON")) {
-                preparedStatement.execute();
+            start = System.nanoTime();
+            for (SqliteConnectionLease lease : leases) {
+                for (String sql : sqliteConfig.getPrecompiledStatements()) {
+                    lease.prepareStatement(sanitizeSqlString(sql));
+                    statementCount++;
+                }
+            }
+            statementNanos = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (SqliteConnectionLease lease : leases) {
+                try (Statement statement = lease.getConnection().createStatement()) {
+                    for (String sql : warmupQueries) {
+                        try (ResultSet resultSet = statement.executeQuery(sql)) {
+                            resultSet.next();
+                        }
+                        warmedObjectCount++;
+                    }
+                }
+            }
+            warmupNanos += System.nanoTime() - start;
+        } catch (Throwable throwable) {
+            failure = throwable;
+            throw throwable;
+        } finally {
+            releaseAll(leases, failure);
+        }
+        return new SqliteStartupReport(driverNanos, connectionNanos, pragmaNanos, statementNanos, warmupNanos,
+                connectionCount, statementCount, warmedObjectCount);
+    }
+
+    /**
+     * Busy retry counters. Returns null when no retry policy is configured
+     *
+     * @return SqliteRetryStatistics or null
+     */
+    public SqliteRetryStatistics getRetryStatistics() {
+        return retrier != null ? retrier.getStatistics() : null;
+    }
+
+    /**
+     * Reads back the pragma values in effect on a repository connection so the applied profile can be verified
+     *
+     * @return Map&lt;String, String&gt; of pragma name to value
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    public Map<String, String> getEffectivePragmas() throws SQLException, SqliteDriverNotFoundException {
+        Map<String, String> pragmas = new LinkedHashMap<>();
+        try (SqliteConnectionLease lease = acquireConnection(false);
+             Statement statement = lease.getConnection().createStatement()) {
+            for (String name : SqlitePragmaProfile.PRAGMA_NAMES) {
+                try (ResultSet resultSet = statement.executeQuery("PRAGMA " + name)) {
+                    if (resultSet.next()) {
+                        pragmas.put(name, resultSet.getString(1));
+                    }
+                }
             }
-            return connection;
-        } catch (ClassNotFoundException classNotFoundException) {
-            throw new SqliteDriverNotFoundException("Cannot load org.sqlite.JDBC driver");
         }
+        return pragmas;
+    }
+
+    /**
+     * Queue an insert for the async writer. The future completes with the generated primary ID once the
+     * group the insert belongs to has been committed
+     *
+     * @param sql        String
+     * @param parameters Map&lt;Integer, Object&gt;
+     * @return CompletableFuture&lt;Integer&gt;
+     */
+    public CompletableFuture<Integer> insertAsync(String sql, Map<Integer, Object> parameters) {
+        return getWriteQueue().submit(sql, parameters, true);
+    }
+
+    /**
+     * Queue an update for the async writer. The future completes with the number of affected rows once the
+     * group the update belongs to has been committed
+     *
+     * @param sql        String
+     * @param parameters Map&lt;Integer, Object&gt;
+     * @return CompletableFuture&lt;Integer&gt;
+     */
+    public CompletableFuture<Integer> updateAsync(String sql, Map<Integer, Object> parameters) {
+        return getWriteQueue().submit(sql, parameters, false);
+    }
+
+    /**
+     * Queue a delete for the async writer. The future completes with the number of affected rows once the
+     * group the delete belongs to has been committed
+     *
+     * @param sql        String
+     * @param parameters Map&lt;Integer, Object&gt;
+     * @return CompletableFuture&lt;Integer&gt;
+     */
+    public CompletableFuture<Integer> deleteAsync(String sql, Map<Integer, Object> parameters) {
+        return getWriteQueue().submit(sql, parameters, false);
     }
 
+    /**
+     * Commits the queued async writes, flushes the hot tier and closes the pooled connections.
+     * Unpooled repositories hold no other resources between calls
+     *
+     * @throws IllegalStateException when the final hot tier flush fails, the changes since the last flush are lost
+     */
     @Override
-    public Connection getConnection(boolean pragmaFk) throws SQLException, SqliteDriverNotFoundException {
+    public void close() {
+        if (transactionLease != null) {
+            return;
+        }
+        synchronized (this) {
+            if (writeQueue != null) {
+                writeQueue.close();
+                writeQueue = null;
+            }
+        }
         try {
-            Class.forName("org.sqlite.JDBC");
-            Connection connection = DriverManager.getConnection(sqliteConfig.getDbLocation());
-            try (PreparedStatement preparedStatement = connection.prepareStatement((pragmaFk ? "PRAGMA foreign_keys=true" : "PRAGMA foreign_keys=false"))) {
-                preparedStatement.execute();
+            if (hotTier != null) {
+                hotTier.close(this);
             }
-            return connection;
-        } catch (ClassNotFoundException classNotFoundException) {
-            throw new SqliteDriverNotFoundException("Cannot load org.sqlite.JDBC driver");
+        } catch (SQLException | SqliteDriverNotFoundException exception) {
+            throw new IllegalStateException("Final hot tier flush failed", exception);
+        } finally {
+            if (connectionPool != null) {
+                connectionPool.close();
+            }
+        }
+    }
+
+    /**
+     * This method writes the hot tier to its database file now, see SqliteConfig.setHotTier
+     *
+     * @return SqliteBackupResult with the flush duration and the bytes written
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public SqliteBackupResult flush() throws SQLException, SqliteDriverNotFoundException {
+        if (hotTier == null) {
+            throw new IllegalStateException("The hot tier is not enabled");
         }
+        return hotTier.flush(this, true);
+    }
+
+    /**
+     * Result of the last completed hot tier flush
+     *
+     * @return SqliteBackupResult, null before the first flush or without a hot tier
+     */
+    public SqliteBackupResult getLastFlush() {
+        return hotTier != null ? hotTier.getLastFlush() : null;
+    }
+
+    /**
+     * Error of the last scheduled hot tier flush, cleared by the next successful one
+     *
+     * @return Exception or null
+     */
+    public Exception getLastFlushError() {
+        return hotTier != null ? hotTier.getLastFlushError() : null;
     }
 
     @Override
     public int insert(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sanitizeSqlString(sql))) {
-                if (parameters != null) {
-                    injectParameterToPreparedStatement(parameters, preparedStatement);
+        return withRetry(() -> executeInsert(sql, binderOf(parameters)));
+    }
+
+    @Override
+    public int insertTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> executeInsert(sql, parameters));
+    }
+
+    @Override
+    public int update(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> execute(SqliteOperation.UPDATE, sql, binderOf(parameters)));
+    }
+
+    @Override
+    public int updateTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> execute(SqliteOperation.UPDATE, sql, parameters));
+    }
+
+    @Override
+    public int delete(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> execute(SqliteOperation.DELETE, sql, binderOf(parameters)));
+    }
+
+    @Override
+    public int deleteTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> execute(SqliteOperation.DELETE, sql, parameters));
+    }
+
+    private int executeInsert(String sql, SqliteStatementBinder binder) throws SQLException, SqliteDriverNotFoundException {
+        SqliteStatementEvent event = startEvent(SqliteOperation.INSERT, sql);
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            if (event != null) {
+                event.acquired();
+            }
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            if (binder != null) {
+                binder.bindTo(preparedStatement);
+            }
+            if (event != null) {
+                event.bound();
+            }
+            int affectedRows = preparedStatement.executeUpdate();
+            int generatedId = getLastInsertedId(lease.getConnection());
+            if (event != null) {
+                event.executed(affectedRows);
+            }
+            return generatedId;
+        } catch (Throwable throwable) {
+            if (event != null) {
+                event.failed(throwable);
+            }
+            throw throwable;
+        } finally {
+            if (event != null) {
+                finishEvent(event, binder);
+            }
+            invalidateResultCache(sql);
+        }
+    }
+
+    @Override
+    public long[] insertBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException {
+        long[] generatedIds = new long[parameterSets.size()];
+        int batchSize = Math.max(1, sqliteConfig.getBatchSize());
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            PreparedStatement lastInsertIdStatement = lease.prepareStatement(SqlStatements.LAST_INSERT_ID);
+            executeInTransaction(lease.getConnection(), () -> {
+                int offset = 0;
+                int pending = 0;
+                try {
+                    for (Map<Integer, Object> parameters : parameterSets) {
+                        preparedStatement.clearParameters();
+                        injectParameterToPreparedStatement(parameters, preparedStatement);
+                        preparedStatement.addBatch();
+                        if (++pending == batchSize) {
+                            assignGeneratedIds(preparedStatement.executeBatch(), lastInsertIdStatement, generatedIds, offset);
+                            offset += pending;
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        assignGeneratedIds(preparedStatement.executeBatch(), lastInsertIdStatement, generatedIds, offset);
+                    }
+                } finally {
+                    preparedStatement.clearBatch();
                 }
-                preparedStatement.executeUpdate();
-                return getLastInsertedId(connection);
+            });
+        } finally {
+            invalidateResultCache(sql);
+        }
+        return generatedIds;
+    }
+
+    /**
+     * This method derives the IDs of one executed batch from last_insert_rowid(). The transaction keeps other
+     * writers out, so the rows the batch inserted got consecutive rowids ending at the last one. Rows the
+     * statement skipped, such as INSERT OR IGNORE conflicts, get -1
+     *
+     * @param counts
+     * @param lastInsertIdStatement
+     * @param generatedIds
+     * @param offset
+     * @throws SQLException
+     */
+    private static void assignGeneratedIds(int[] counts, PreparedStatement lastInsertIdStatement, long[] generatedIds,
+                                           int offset) throws SQLException {
+        long lastId;
+        try (ResultSet resultSet = lastInsertIdStatement.executeQuery()) {
+            lastId = resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+        int inserted = 0;
+        for (int count : counts) {
+            if (count > 0) {
+                inserted++;
             }
         }
+        long nextId = lastId - inserted + 1;
+        for (int i = 0; i < counts.length; i++) {
+            generatedIds[offset + i] = counts[i] > 0 && lastId > 0 ? nextId++ : -1;
+        }
     }
 
     @Override
-    public int update(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
-        return execute(sql, parameters);
+    public int[] updateBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException {
+        return executeBatch(sql, parameterSets);
     }
 
     @Override
-    public int delete(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
-        return execute(sql, parameters);
+    public int[] deleteBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException {
+        return executeBatch(sql, parameterSets);
     }
 
     @Override
-    public <T> T getSingle(String sql, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-                ResultSet resultSet = preparedStatement.executeQuery();
-                if (resultSet != null && resultSet.next()) {
-                    return (T) sqliteObjectAssembler.assemble(resultSet);
+    public int upsert(String table, List<String> columns, List<String> conflictColumns, Collection<Object[]> rows)
+            throws SQLException, SqliteDriverNotFoundException {
+        return upsert(table, columns, conflictColumns, null, rows);
+    }
+
+    @Override
+    public int upsert(String table, List<String> columns, List<String> conflictColumns, List<String> updateColumns,
+                      Collection<Object[]> rows) throws SQLException, SqliteDriverNotFoundException {
+        if (columns.isEmpty() || conflictColumns.isEmpty()) {
+            throw new IllegalArgumentException("Upsert needs columns and conflict columns");
+        }
+        if (rows.isEmpty()) {
+            return 0;
+        }
+        List<String> updates = updateColumns;
+        if (updates == null) {
+            updates = new ArrayList<>();
+            for (String column : columns) {
+                if (conflictColumns.stream().noneMatch(column::equalsIgnoreCase)) {
+                    updates.add(column);
                 }
             }
         }
-        return null;
+        List<String> setColumns = updates;
+        int columnCount = columns.size();
+        int rowsPerStatement = SqliteUpsertStatements.rowsPerStatement(columnCount, sqliteConfig.getMaxBindVariables());
+        int[] affectedRows = new int[1];
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            executeInTransaction(lease.getConnection(), () -> {
+                Iterator<Object[]> iterator = rows.iterator();
+                int remaining = rows.size();
+                PreparedStatement preparedStatement = null;
+                int statementRows = 0;
+                while (remaining > 0) {
+                    int chunkRows = Math.min(remaining, rowsPerStatement);
+                    if (chunkRows != statementRows) {
+                        preparedStatement = lease.prepareStatement(
+                                upsertStatements.get(table, columns, conflictColumns, setColumns, chunkRows));
+                        statementRows = chunkRows;
+                    }
+                    int index = 1;
+                    for (int i = 0; i < chunkRows; i++) {
+                        Object[] row = iterator.next();
+                        if (row.length != columnCount) {
+                            throw new SQLException("Upsert row has " + row.length + " values for " + columnCount + " columns");
+                        }
+                        for (Object value : row) {
+                            preparedStatement.setObject(index++, value);
+                        }
+                    }
+                    affectedRows[0] += preparedStatement.executeUpdate();
+                    remaining -= chunkRows;
+                }
+            });
+        } finally {
+            invalidateResultCache("INSERT INTO " + SqliteBulkTransfer.quoteIdentifier(table));
+        }
+        return affectedRows[0];
+    }
+
+    @Override
+    public <T> T runInTransaction(SqliteTransactionCallback<T> callback) throws SQLException, SqliteDriverNotFoundException {
+        return runInTransaction(SqliteTransactionMode.DEFERRED, callback);
+    }
+
+    @Override
+    public <T> T runInTransaction(SqliteTransactionMode transactionMode, SqliteTransactionCallback<T> callback)
+            throws SQLException, SqliteDriverNotFoundException {
+        if (transactionLease != null) {
+            return runInSavepoint(callback);
+        }
+        return withRetry(() -> runTransactionOnce(transactionMode, callback));
+    }
+
+    /**
+     * This method runs one attempt of a top-level transaction. A busy failure rolls everything back,
+     * so withRetry can run the callback again from the start
+     *
+     * @param transactionMode
+     * @param callback
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private <T> T runTransactionOnce(SqliteTransactionMode transactionMode, SqliteTransactionCallback<T> callback)
+            throws SQLException, SqliteDriverNotFoundException {
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            Connection connection = lease.getConnection();
+            beginTransaction(connection, transactionMode);
+            SqliteRepository transactionView = new SqliteRepository(this, lease);
+            try {
+                T result = callback.execute(transactionView);
+                commitTransaction(connection);
+                invalidateResultCache(transactionView.transactionTables);
+                if (transactionView.schemaChanged) {
+                    // Readers may have cached the old schema while the DDL was uncommitted
+                    schemaCache.invalidate();
+                }
+                return result;
+            } catch (Throwable throwable) {
+                rollbackTransaction(connection, throwable);
+                throw throwable;
+            }
+        }
+    }
+
+    @Override
+    public <T> T getSingle(String sql, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        return cachedSingle(sql, null, null, sqliteObjectAssembler);
     }
 
     @Override
     public <T> T getSingle(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler sqliteObjectAssembler)
             throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sanitizeSqlString(sql))) {
-                if (parameters != null) {
-                    injectParameterToPreparedStatement(parameters, preparedStatement);
+        return cachedSingle(sql, parameters, binderOf(parameters), sqliteObjectAssembler);
+    }
+
+    @Override
+    public <T> T getSingleTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        return cachedSingle(sql, parameters, parameters, sqliteObjectAssembler);
+    }
+
+    @Override
+    public <T> List<T> getList(String sql, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        return cachedList(sql, null, null, sqliteObjectAssembler);
+    }
+
+    @Override
+    public <T> List<T> getList(String sql, Map<Integer, Object> parameters,
+                               SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        return cachedList(sql, parameters, binderOf(parameters), sqliteObjectAssembler);
+    }
+
+    @Override
+    public <T> List<T> getListTyped(String sql, SqliteParameters parameters,
+                                    SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        return cachedList(sql, parameters, parameters, sqliteObjectAssembler);
+    }
+
+    /**
+     * This method answers getSingle from the result cache when it is enabled and outside a transaction
+     *
+     * @param sql
+     * @param cacheParameters the Map or SqliteParameters the caller passed, part of the cache key
+     * @param binder
+     * @param sqliteObjectAssembler
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    @SuppressWarnings("unchecked")
+    private <T> T cachedSingle(String sql, Object cacheParameters, SqliteStatementBinder binder,
+                               SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        if (resultCache == null || transactionLease != null) {
+            return withRetry(() -> querySingle(sql, binder, sqliteObjectAssembler));
+        }
+        SqliteResultCache.Key key = new SqliteResultCache.Key(true, sql, cacheParameters, sqliteObjectAssembler);
+        Object cached = resultCache.get(key);
+        if (cached != null) {
+            return SqliteResultCache.isNullValue(cached) ? null : (T) cached;
+        }
+        SqliteResultCache.Snapshot snapshot = resultCache.snapshot(cachedTablesOf(sql));
+        T result = withRetry(() -> querySingle(sql, binder, sqliteObjectAssembler));
+        resultCache.put(key, snapshot, result);
+        return result;
+    }
+
+    /**
+     * This method returns the base tables a cached query reads, or null when they cannot be resolved.
+     * Common table expressions, views and table-valued functions resolve to null so the cached result
+     * is dropped by any write instead of only by writes to the names that appear in the SQL
+     */
+    private Set<String> cachedTablesOf(String sql) throws SQLException, SqliteDriverNotFoundException {
+        Set<String> tables = SqliteResultCache.tablesOf(sql);
+        if (tables.isEmpty() || SqliteResultCache.hasCommonTableExpression(sql)) {
+            return null;
+        }
+        SqliteSchemaCache.Snapshot schema = schema();
+        for (String table : tables) {
+            if (!schema.isTable(table)) {
+                return null;
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * Cached lists are shared, every caller gets its own copy of the list but the same row objects
+     */
+    @SuppressWarnings("unchecked")
+    private <T> List<T> cachedList(String sql, Object cacheParameters, SqliteStatementBinder binder,
+                                   SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        if (resultCache == null || transactionLease != null) {
+            return withRetry(() -> queryList(sql, binder, sqliteObjectAssembler));
+        }
+        SqliteResultCache.Key key = new SqliteResultCache.Key(false, sql, cacheParameters, sqliteObjectAssembler);
+        Object cached = resultCache.get(key);
+        if (cached != null) {
+            return new ArrayList<>((List<T>) cached);
+        }
+        SqliteResultCache.Snapshot snapshot = resultCache.snapshot(cachedTablesOf(sql));
+        List<T> results = withRetry(() -> queryList(sql, binder, sqliteObjectAssembler));
+        resultCache.put(key, snapshot, Collections.unmodifiableList(new ArrayList<>(results)));
+        return results;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T querySingle(String sql, SqliteStatementBinder binder, SqliteObjectAssembler sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        SqliteStatementEvent event = startEvent(SqliteOperation.GET_SINGLE, sql);
+        try (SqliteConnectionLease lease = acquireConnection(false)) {
+            if (event != null) {
+                event.acquired();
+            }
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            if (binder != null) {
+                binder.bindTo(preparedStatement);
+            }
+            if (event != null) {
+                event.bound();
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                boolean found = resultSet != null && resultSet.next();
+                if (event != null) {
+                    event.stepped();
                 }
-                ResultSet resultSet = preparedStatement.executeQuery();
-                if (resultSet != null && resultSet.next()) {
-                    return (T) sqliteObjectAssembler.assemble(resultSet);
+                if (found) {
+                    T result = (T) sqliteObjectAssembler.bind(resultSet.getMetaData()).assemble(resultSet);
+                    if (event != null) {
+                        event.assembled();
+                    }
+                    return result;
                 }
             }
+        } catch (Throwable throwable) {
+            if (event != null) {
+                event.failed(throwable);
+            }
+            throw throwable;
+        } finally {
+            if (event != null) {
+                finishEvent(event, binder);
+            }
         }
         return null;
     }
 
+    private <T> List<T> queryList(String sql, SqliteStatementBinder binder,
+                                  SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
+        SqliteStatementEvent event = startEvent(SqliteOperation.GET_LIST, sql);
+        try (SqliteConnectionLease lease = acquireConnection(false)) {
+            if (event != null) {
+                event.acquired();
+            }
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            if (binder != null) {
+                binder.bindTo(preparedStatement);
+            }
+            if (event != null) {
+                event.bound();
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                return executeListQuery(resultSet, sqliteObjectAssembler, event);
+            }
+        } catch (Throwable throwable) {
+            if (event != null) {
+                event.failed(throwable);
+            }
+            throw throwable;
+        } finally {
+            if (event != null) {
+                finishEvent(event, binder);
+            }
+        }
+    }
+
     @Override
-    public <T> List<T> getList(String sql, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sql)) {
-                ResultSet resultSet = preparedStatement.executeQuery();
-                return executeListQuery(resultSet, sqliteObjectAssembler);
+    public <T> Stream<T> stream(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler)
+            throws SQLException, SqliteDriverNotFoundException {
+        SqliteConnectionLease lease = acquireConnection(false);
+        try {
+            ResultSet resultSet = openStreamingResultSet(lease, sql, binderOf(parameters));
+            SqliteResultSetSpliterator<T> spliterator = new SqliteResultSetSpliterator<>(lease, resultSet,
+                    sqliteObjectAssembler.bind(resultSet.getMetaData()));
+            return StreamSupport.stream(spliterator, false).onClose(spliterator::close);
+        } catch (Throwable throwable) {
+            try {
+                lease.close();
+            } catch (SQLException sqlException) {
+                throwable.addSuppressed(sqlException);
             }
+            throw throwable;
         }
     }
 
     @Override
-    public <T> List<T> getList(String sql, Map<Integer, Object> parameters,
-                               SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sanitizeSqlString(sql))) {
-                if (parameters != null) {
-                    injectParameterToPreparedStatement(parameters, preparedStatement);
+    public <T> long forEach(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler,
+                            SqliteRowCallback<T> callback) throws SQLException, SqliteDriverNotFoundException {
+        long count = 0;
+        try (SqliteConnectionLease lease = acquireConnection(false);
+             ResultSet resultSet = openStreamingResultSet(lease, sql, binderOf(parameters))) {
+            SqliteObjectAssembler<T> rowAssembler = sqliteObjectAssembler.bind(resultSet.getMetaData());
+            while (resultSet.next()) {
+                callback.process(rowAssembler.assemble(resultSet));
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Override
+    public SqliteColumnBatch getColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch)
+            throws SQLException, SqliteDriverNotFoundException {
+        return withRetry(() -> {
+            try (SqliteConnectionLease lease = acquireConnection(false);
+                 ResultSet resultSet = openStreamingResultSet(lease, sql, parameters)) {
+                batch.clear(resultSet.getMetaData());
+                while (resultSet.next()) {
+                    batch.append(resultSet);
                 }
-                ResultSet resultSet = preparedStatement.executeQuery();
-                return executeListQuery(resultSet, sqliteObjectAssembler);
+            }
+            return batch;
+        });
+    }
+
+    @Override
+    public long forEachColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch, int batchSize,
+                                   SqliteRowCallback<SqliteColumnBatch> callback) throws SQLException, SqliteDriverNotFoundException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("batchSize must be positive");
+        }
+        long count = 0;
+        try (SqliteConnectionLease lease = acquireConnection(false);
+             ResultSet resultSet = openStreamingResultSet(lease, sql, parameters)) {
+            ResultSetMetaData metaData = resultSet.getMetaData();
+            batch.clear(metaData);
+            while (resultSet.next()) {
+                batch.append(resultSet);
+                count++;
+                if (batch.size() == batchSize) {
+                    callback.process(batch);
+                    batch.clear(metaData);
+                }
+            }
+            if (batch.size() > 0) {
+                callback.process(batch);
             }
         }
+        return count;
+    }
+
+    @Override
+    public InputStream openBlob(String table, String column, long rowId) throws SQLException, SqliteDriverNotFoundException {
+        return SqliteBlobInputStream.open(acquireConnection(false), table, column, rowId, sqliteConfig.getBlobChunkSize());
+    }
+
+    @Override
+    public long readBlob(String table, String column, long rowId, OutputStream outputStream)
+            throws SQLException, SqliteDriverNotFoundException, IOException {
+        try (SqliteBlobInputStream inputStream = SqliteBlobInputStream.open(acquireConnection(false), table, column, rowId,
+                sqliteConfig.getBlobChunkSize())) {
+            if (inputStream == null) {
+                return -1;
+            }
+            byte[] buffer = new byte[(int) Math.min(inputStream.length(), 8192)];
+            long count = 0;
+            int read;
+            while ((read = inputStream.read(buffer)) > 0) {
+                outputStream.write(buffer, 0, read);
+                count += read;
+            }
+            return count;
+        }
+    }
+
+    @Override
+    public long writeBlob(String table, String column, long rowId, InputStream inputStream, long length)
+            throws SQLException, SqliteDriverNotFoundException, IOException {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative");
+        }
+        String quotedColumn = SqliteBulkTransfer.quoteIdentifier(column);
+        String update = "UPDATE " + SqliteBulkTransfer.quoteIdentifier(table) + " SET " + quotedColumn + " = ";
+        byte[] buffer = new byte[(int) Math.max(1, Math.min(sqliteConfig.getBlobChunkSize(), length))];
+        IOException[] readFailure = new IOException[1];
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            executeInTransaction(lease.getConnection(), () -> {
+                PreparedStatement preparedStatement = lease.prepareStatement(update + "zeroblob(?) WHERE rowid = ?");
+                preparedStatement.setLong(1, length);
+                preparedStatement.setLong(2, rowId);
+                if (preparedStatement.executeUpdate() == 0) {
+                    throw new SQLException("No row " + rowId + " in " + table);
+                }
+                // || yields TEXT, the cast keeps the bytes and restores the BLOB type
+                preparedStatement = lease.prepareStatement(update + "CAST(substr(" + quotedColumn + ", 1, ?) || ? || substr("
+                        + quotedColumn + ", ?) AS BLOB) WHERE rowid = ?");
+                long offset = 0;
+                while (offset < length) {
+                    int chunkLength = readChunk(inputStream, buffer, (int) Math.min(buffer.length, length - offset), readFailure);
+                    if (chunkLength == 0) {
+                        throw new SQLException("The input ended after " + offset + " of " + length + " bytes");
+                    }
+                    preparedStatement.setLong(1, offset);
+                    preparedStatement.setBytes(2, chunkLength == buffer.length ? buffer : Arrays.copyOf(buffer, chunkLength));
+                    preparedStatement.setLong(3, offset + chunkLength + 1);
+                    preparedStatement.setLong(4, rowId);
+                    preparedStatement.executeUpdate();
+                    offset += chunkLength;
+                }
+                if (readChunk(inputStream, buffer, 1, readFailure) > 0) {
+                    throw new SQLException("The input is longer than " + length + " bytes");
+                }
+            });
+        } catch (SQLException sqlException) {
+            if (readFailure[0] != null) {
+                throw readFailure[0];
+            }
+            throw sqlException;
+        } finally {
+            invalidateResultCache(update);
+        }
+        return length;
+    }
+
+    /**
+     * This method fills the buffer unless the stream ends first. Read failures are parked in the holder and
+     * surface as a SQLException so the enclosing transaction rolls back
+     *
+     * @param inputStream
+     * @param buffer
+     * @param count
+     * @param failure
+     * @return number of bytes read, less than count only at the end of the stream
+     * @throws SQLException
+     */
+    private static int readChunk(InputStream inputStream, byte[] buffer, int count, IOException[] failure) throws SQLException {
+        try {
+            return inputStream.readNBytes(buffer, 0, count);
+        } catch (IOException ioException) {
+            failure[0] = ioException;
+            throw new SQLException("Reading the BLOB input failed", ioException);
+        }
+    }
+
+    @Override
+    public <T> SqliteKeysetPager<T> paginate(String sql, SqliteParameters parameters, String keyColumn, int pageSize,
+                                             SqliteObjectAssembler<T> sqliteObjectAssembler, String cursor) {
+        return new SqliteKeysetPager<>(this, sql, parameters, keyColumn, pageSize, sqliteObjectAssembler, cursor);
     }
 
     @Override
@@ -145,25 +952,140 @@ public class SqliteRepository implements SqliteRepositoryInterface {
 
     @Override
     public List<String> getTables() throws SQLException, SqliteDriverNotFoundException {
-        return getList(SqlStatements.GET_TABLES, new SqliteObjectAssembler() {
-            @Override
-            public Object assemble(ResultSet resultSet) throws SQLException {
-                return resultSet.getString(1);
-            }
-        });
+        return schema().getTables();
     }
 
     @Override
     public boolean tableExists(String name) throws SQLException, SqliteDriverNotFoundException {
-        Map<Integer, Object> parameters = new HashMap<>();
-        parameters.put(1, name);
-        String result = getSingle(SqlStatements.GET_TABLE_BY_NAME, parameters, new SqliteObjectAssembler() {
-            @Override
-            public Object assemble(ResultSet resultSet) throws SQLException {
-                return resultSet.getString("name");
+        return schema().getTables().contains(name);
+    }
+
+    @Override
+    public List<SqliteColumn> getColumns(String table) throws SQLException, SqliteDriverNotFoundException {
+        return schema().getTable(this, table).getColumns();
+    }
+
+    @Override
+    public boolean columnExists(String table, String column) throws SQLException, SqliteDriverNotFoundException {
+        for (SqliteColumn sqliteColumn : getColumns(table)) {
+            if (sqliteColumn.getName().equalsIgnoreCase(column)) {
+                return true;
             }
-        });
-        return (result != null && result.equals(name));
+        }
+        return false;
+    }
+
+    @Override
+    public List<SqliteIndex> getIndexes(String table) throws SQLException, SqliteDriverNotFoundException {
+        return schema().getTable(this, table).getIndexes();
+    }
+
+    /**
+     * This method drops the cached schema metadata. DDL through createTable, alterTable, dropTable and restore
+     * does this already, call it after running DDL through other methods
+     */
+    public void invalidateSchemaCache() {
+        schemaCache.invalidate();
+    }
+
+    /**
+     * This method returns the statements recorded by the slow query log, newest first. The log covers insert,
+     * update, delete, getSingle and getList and is off unless SqliteConfig.slowQueryThresholdMillis is set
+     *
+     * @return List&lt;SqliteSlowQuery&gt;, empty when the log is off
+     */
+    public List<SqliteSlowQuery> getSlowQueries() {
+        return slowQueryLog != null ? slowQueryLog.getReports() : Collections.emptyList();
+    }
+
+    public void clearSlowQueries() {
+        if (slowQueryLog != null) {
+            slowQueryLog.clear();
+        }
+    }
+
+    /**
+     * Inside a transaction the schema is read through the transaction connection and not cached,
+     * so uncommitted DDL is visible to the transaction only
+     *
+     * @return SqliteSchemaCache.Snapshot
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private SqliteSchemaCache.Snapshot schema() throws SQLException, SqliteDriverNotFoundException {
+        return transactionLease != null ? SqliteSchemaCache.read(this) : schemaCache.get(this);
+    }
+
+    /**
+     * This method copies the live database into a file with the SQLite online backup API
+     *
+     * @param destinationFile String
+     * @return SqliteBackupResult
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public SqliteBackupResult backup(String destinationFile) throws SQLException, SqliteDriverNotFoundException {
+        return backup(destinationFile, new SqliteBackupOptions());
+    }
+
+    /**
+     * This method copies the live database into a file a few pages at a time on a read connection.
+     * Writers are only held off while a step runs. A write made through another connection between steps
+     * makes SQLite start the copy over, so under constant write load use larger steps or snapshot instead
+     *
+     * @param destinationFile String
+     * @param options         SqliteBackupOptions with step size, pauses, throughput limit and listener
+     * @return SqliteBackupResult
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public SqliteBackupResult backup(String destinationFile, SqliteBackupOptions options) throws SQLException, SqliteDriverNotFoundException {
+        try (SqliteConnectionLease lease = acquireConnection(false)) {
+            return SqliteOnlineBackup.backup(lease.getConnection(), destinationFile, options);
+        }
+    }
+
+    /**
+     * This method replaces the database content with a backup file through the write connection.
+     * Readers see either the old or the restored content. Cached results and statements are discarded
+     *
+     * @param sourceFile String
+     * @param options    SqliteBackupOptions
+     * @return SqliteBackupResult
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public SqliteBackupResult restore(String sourceFile, SqliteBackupOptions options) throws SQLException, SqliteDriverNotFoundException {
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            return SqliteOnlineBackup.restore(lease.getConnection(), sourceFile, options);
+        } finally {
+            if (connectionPool != null) {
+                connectionPool.invalidateStatements();
+            }
+            schemaCache.invalidate();
+            invalidateResultCache((String) null);
+        }
+    }
+
+    public SqliteBackupResult restore(String sourceFile) throws SQLException, SqliteDriverNotFoundException {
+        return restore(sourceFile, new SqliteBackupOptions());
+    }
+
+    /**
+     * This method writes a compacted, consistent copy of the database with VACUUM INTO. It runs as a single
+     * read transaction, so in WAL mode writers are never blocked, but it cannot be paused or throttled.
+     * The destination file must not exist
+     *
+     * @param destinationFile String
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    public void snapshot(String destinationFile) throws SQLException, SqliteDriverNotFoundException {
+        try (SqliteConnectionLease lease = acquireConnection(false);
+             PreparedStatement preparedStatement = lease.getConnection().prepareStatement("VACUUM INTO ?")) {
+            preparedStatement.setString(1, destinationFile);
+            preparedStatement.execute();
+        }
     }
 
     /**
@@ -173,10 +1095,159 @@ public class SqliteRepository implements SqliteRepositoryInterface {
      * @throws SQLException
      */
     private void tableSqlExecutor(String sql) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection(false)) {
-            Statement statement = connection.createStatement();
-            statement.executeUpdate(sql);
+        if (connectionPool == null && transactionLease == null) {
+            try (Connection connection = getConnection(false);
+                 Statement statement = connection.createStatement()) {
+                statement.executeUpdate(sql);
+            } finally {
+                schemaCache.invalidate();
+                invalidateResultCache((String) null);
+            }
+            return;
+        }
+
+        // PRAGMA foreign_keys is a no-op inside a transaction, so the toggle only applies to autocommit leases
+        try (SqliteConnectionLease lease = acquireConnection(true);
+             Statement statement = lease.getConnection().createStatement()) {
+            statement.execute("PRAGMA foreign_keys=false");
+            try {
+                statement.executeUpdate(sql);
+            } finally {
+                statement.execute("PRAGMA foreign_keys=true");
+            }
+        } finally {
+            if (connectionPool != null) {
+                connectionPool.invalidateStatements();
+            }
+            schemaCache.invalidate();
+            if (transactionLease != null) {
+                schemaChanged = true;
+            }
+            invalidateResultCache((String) null);
+        }
+    }
+
+    /**
+     * The async writer thread is only started once the first async write is queued
+     *
+     * @return SqliteWriteQueue
+     */
+    private synchronized SqliteWriteQueue getWriteQueue() {
+        if (transactionLease != null) {
+            throw new IllegalStateException("Async writes are not available inside a transaction");
+        }
+        if (writeQueue == null) {
+            writeQueue = new SqliteWriteQueue(this, sqliteConfig);
+        }
+        return writeQueue;
+    }
+
+    /**
+     * This method invalidates the cached results of the tables a write statement touches.
+     * DDL and statements whose tables cannot be determined pass null and invalidate everything.
+     * Inside a transaction the tables are remembered and invalidated again after the commit, because
+     * other connections may have cached the old rows while the transaction was still open
+     *
+     * @param sql
+     */
+    void invalidateResultCache(String sql) {
+        if (resultCache == null) {
+            return;
+        }
+        Set<String> tables = sql == null ? Collections.emptySet() : SqliteResultCache.tablesOf(sql);
+        resultCache.invalidate(tables);
+        if (transactionTables != null) {
+            transactionTables.addAll(tables.isEmpty() ? Collections.singleton(ALL_TABLES) : tables);
+        }
+    }
+
+    private void invalidateResultCache(Set<String> tables) {
+        if (resultCache == null || tables.isEmpty()) {
+            return;
+        }
+        if (tables.contains(ALL_TABLES)) {
+            resultCache.invalidateAll();
+        } else {
+            resultCache.invalidate(tables);
+        }
+    }
+
+    /**
+     * This method borrows a connection for a single operation. Writes are routed to the dedicated
+     * write connection and reads to the read-only connections when pooling is enabled
+     *
+     * @param write boolean
+     * @return SqliteConnectionLease
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    SqliteConnectionLease acquireConnection(boolean write) throws SQLException, SqliteDriverNotFoundException {
+        if (transactionLease != null) {
+            return transactionLease.share();
+        }
+        if (connectionPool != null) {
+            return connectionPool.acquire(write);
+        }
+        return new SqliteConnectionLease(getConnection());
+    }
+
+    /**
+     * This method leases every pooled connection, or opens one connection without the pool
+     *
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private List<SqliteConnectionLease> acquireAll() throws SQLException, SqliteDriverNotFoundException {
+        if (connectionPool != null) {
+            return connectionPool.acquireAll();
+        }
+        List<SqliteConnectionLease> leases = new ArrayList<>();
+        leases.add(new SqliteConnectionLease(getConnection()));
+        return leases;
+    }
+
+    /**
+     * This method closes every lease. Close failures are added to the pending failure, or thrown when there is none
+     *
+     * @param leases
+     * @param failure null when nothing failed so far
+     * @return number of leases
+     * @throws SQLException
+     */
+    private static int releaseAll(List<SqliteConnectionLease> leases, Throwable failure) throws SQLException {
+        SQLException closeFailure = null;
+        for (SqliteConnectionLease lease : leases) {
+            try {
+                lease.close();
+            } catch (SQLException sqlException) {
+                if (failure != null) {
+                    failure.addSuppressed(sqlException);
+                } else if (closeFailure == null) {
+                    closeFailure = sqlException;
+                }
+            }
+        }
+        if (closeFailure != null) {
+            throw closeFailure;
+        }
+        return leases.size();
+    }
+
+    /**
+     * This method retries the operation under the configured retry policy. Inside a transaction the busy error
+     * is passed on instead, the enclosing runInTransaction retries the transaction as a whole
+     *
+     * @param attempt
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private <T> T withRetry(SqliteRetrier.Attempt<T> attempt) throws SQLException, SqliteDriverNotFoundException {
+        if (retrier == null || transactionLease != null) {
+            return attempt.run();
         }
+        return retrier.call(attempt);
     }
 
     /**
@@ -186,7 +1257,7 @@ public class SqliteRepository implements SqliteRepositoryInterface {
      * @param preparedStatement
      * @throws SQLException
      */
-    private void injectParameterToPreparedStatement(Map<Integer, Object> parameters, PreparedStatement preparedStatement) throws SQLException {
+    private static void injectParameterToPreparedStatement(Map<Integer, Object> parameters, PreparedStatement preparedStatement) throws SQLException {
         if (parameters != null && preparedStatement != null) {
             for (Map.Entry entry : parameters.entrySet()) {
                 preparedStatement.setObject((int) entry.getKey(), entry.getValue());
@@ -194,6 +1265,16 @@ public class SqliteRepository implements SqliteRepositoryInterface {
         }
     }
 
+    /**
+     * This wraps the legacy parameter map so it binds through the same path as SqliteParameters
+     *
+     * @param parameters
+     * @return null when there are no parameters
+     */
+    private SqliteStatementBinder binderOf(Map<Integer, Object> parameters) {
+        return parameters == null ? null : new MapBinder(parameters);
+    }
+
     /**
      * A bit of rainbow and sugar string sanitation
      *
@@ -216,10 +1297,11 @@ public class SqliteRepository implements SqliteRepositoryInterface {
      */
     private int getLastInsertedId(Connection connection) throws SQLException {
         if (connection != null) {
-            Statement statement = connection.createStatement();
-            ResultSet resultSet = statement.executeQuery(SqlStatements.LAST_INSERT_ID);
-            if (resultSet != null) {
-                return resultSet.getInt(1);
+            try (Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(SqlStatements.LAST_INSERT_ID)) {
+                if (resultSet != null) {
+                    return resultSet.getInt(1);
+                }
             }
         }
         return -1;
@@ -229,39 +1311,275 @@ public class SqliteRepository implements SqliteRepositoryInterface {
      * This method handles the execution of prepared statements
      * returns the number of affected records
      *
+     * @param operation
      * @param sql
-     * @param parameters
+     * @param binder
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private int execute(SqliteOperation operation, String sql, SqliteStatementBinder binder) throws SQLException, SqliteDriverNotFoundException {
+        SqliteStatementEvent event = startEvent(operation, sql);
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            if (event != null) {
+                event.acquired();
+            }
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            if (binder != null) {
+                binder.bindTo(preparedStatement);
+            }
+            if (event != null) {
+                event.bound();
+            }
+            int affectedRows = preparedStatement.executeUpdate();
+            if (event != null) {
+                event.executed(affectedRows);
+            }
+            return affectedRows;
+        } catch (Throwable throwable) {
+            if (event != null) {
+                event.failed(throwable);
+            }
+            throw throwable;
+        } finally {
+            if (event != null) {
+                finishEvent(event, binder);
+            }
+            invalidateResultCache(sql);
+        }
+    }
+
+    /**
+     * This method runs the parameter sets through addBatch/executeBatch in chunks of the configured
+     * batch size inside a single transaction and returns the affected rows per parameter set
+     *
+     * @param sql
+     * @param parameterSets
      * @return
      * @throws SQLException
      * @throws SqliteDriverNotFoundException
      */
-    private int execute(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException {
-        try (Connection connection = getConnection()) {
-            try (PreparedStatement preparedStatement = connection.prepareStatement(sanitizeSqlString(sql))) {
-                if (parameters != null) {
-                    injectParameterToPreparedStatement(parameters, preparedStatement);
+    private int[] executeBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException {
+        int[] affectedRows = new int[parameterSets.size()];
+        int batchSize = Math.max(1, sqliteConfig.getBatchSize());
+        try (SqliteConnectionLease lease = acquireConnection(true)) {
+            PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+            executeInTransaction(lease.getConnection(), () -> {
+                int offset = 0;
+                int pending = 0;
+                try {
+                    for (Map<Integer, Object> parameters : parameterSets) {
+                        preparedStatement.clearParameters();
+                        injectParameterToPreparedStatement(parameters, preparedStatement);
+                        preparedStatement.addBatch();
+                        if (++pending == batchSize) {
+                            int[] counts = preparedStatement.executeBatch();
+                            System.arraycopy(counts, 0, affectedRows, offset, counts.length);
+                            offset += pending;
+                            pending = 0;
+                        }
+                    }
+                    if (pending > 0) {
+                        int[] counts = preparedStatement.executeBatch();
+                        System.arraycopy(counts, 0, affectedRows, offset, counts.length);
+                    }
+                } finally {
+                    preparedStatement.clearBatch();
                 }
-                return preparedStatement.executeUpdate();
+            });
+        } finally {
+            invalidateResultCache(sql);
+        }
+        return affectedRows;
+    }
+
+    /**
+     * This method runs the work in a transaction that commits once, or joins the transaction
+     * that is already open on the connection
+     *
+     * @param connection
+     * @param work
+     * @throws SQLException
+     */
+    private void executeInTransaction(Connection connection, TransactionWork work) throws SQLException {
+        if (!connection.getAutoCommit()) {
+            work.execute();
+            return;
+        }
+        beginTransaction(connection, SqliteTransactionMode.DEFERRED);
+        try {
+            work.execute();
+            commitTransaction(connection);
+        } catch (Throwable throwable) {
+            rollbackTransaction(connection, throwable);
+            throw throwable;
+        }
+    }
+
+    /**
+     * This method runs a nested transaction callback inside a savepoint of the current transaction
+     *
+     * @param callback
+     * @return
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    private <T> T runInSavepoint(SqliteTransactionCallback<T> callback) throws SQLException, SqliteDriverNotFoundException {
+        Connection connection = transactionLease.getConnection();
+        Savepoint savepoint = connection.setSavepoint();
+        try {
+            T result = callback.execute(this);
+            connection.releaseSavepoint(savepoint);
+            return result;
+        } catch (Throwable throwable) {
+            try {
+                connection.rollback(savepoint);
+                connection.releaseSavepoint(savepoint);
+            } catch (SQLException sqlException) {
+                throwable.addSuppressed(sqlException);
             }
+            throw throwable;
+        }
+    }
+
+    /**
+     * This method begins a transaction in the given mode. The driver re-begins a transaction after every
+     * commit or rollback while autocommit is off, so the mode is reset to deferred straight away to keep
+     * that follow-up begin lock free
+     *
+     * @param connection
+     * @param transactionMode
+     * @throws SQLException
+     */
+    private void beginTransaction(Connection connection, SqliteTransactionMode transactionMode) throws SQLException {
+        SQLiteConnection sqliteConnection = connection.unwrap(SQLiteConnection.class);
+        sqliteConnection.setCurrentTransactionMode(transactionMode.getDriverMode());
+        try {
+            connection.setAutoCommit(false);
+        } finally {
+            sqliteConnection.setCurrentTransactionMode(SQLiteConfig.TransactionMode.DEFERRED);
+        }
+    }
+
+    private void commitTransaction(Connection connection) throws SQLException {
+        connection.commit();
+        connection.setAutoCommit(true);
+    }
+
+    private void rollbackTransaction(Connection connection, Throwable cause) {
+        try {
+            connection.rollback();
+            connection.setAutoCommit(true);
+        } catch (SQLException sqlException) {
+            cause.addSuppressed(sqlException);
         }
     }
 
+    /**
+     * This method executes a query whose rows are read incrementally by the caller
+     *
+     * @param lease
+     * @param sql
+     * @param binder null when there are no parameters
+     * @return
+     * @throws SQLException
+     */
+    private ResultSet openStreamingResultSet(SqliteConnectionLease lease, String sql, SqliteStatementBinder binder) throws SQLException {
+        PreparedStatement preparedStatement = lease.prepareStatement(sanitizeSqlString(sql));
+        if (binder != null) {
+            binder.bindTo(preparedStatement);
+        }
+        if (sqliteConfig.getFetchSize() > 0) {
+            preparedStatement.setFetchSize(sqliteConfig.getFetchSize());
+        }
+        return preparedStatement.executeQuery();
+    }
+
     /**
      * This method handles the execution of prepared statements
      * returns the result as a list
      *
      * @param resultSet
      * @param sqliteObjectAssembler
+     * @param event null when instrumentation is off
      * @return
      * @throws SQLException
      */
     @SuppressWarnings("unchecked")
-    private <T> List<T> executeListQuery(ResultSet resultSet, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException {
+    private <T> List<T> executeListQuery(ResultSet resultSet, SqliteObjectAssembler sqliteObjectAssembler,
+                                         SqliteStatementEvent event) throws SQLException {
         List<T> results = new ArrayList<>();
-        while (resultSet != null && resultSet.next()) {
-            results.add((T) sqliteObjectAssembler.assemble(resultSet));
+        if (resultSet == null) {
+            return results;
+        }
+        SqliteObjectAssembler rowAssembler = sqliteObjectAssembler.bind(resultSet.getMetaData());
+        if (event == null) {
+            while (resultSet.next()) {
+                results.add((T) rowAssembler.assemble(resultSet));
+            }
+            return results;
+        }
+        while (resultSet.next()) {
+            event.stepped();
+            results.add((T) rowAssembler.assemble(resultSet));
+            event.assembled();
         }
+        event.stepped();
         return results;
     }
 
+    /**
+     * This method starts timing a statement, or returns null without reading the clock when no listener is set
+     *
+     * @param operation
+     * @param sql
+     * @return
+     */
+    private SqliteStatementEvent startEvent(SqliteOperation operation, String sql) {
+        return statementListener != null || slowQueryLog != null ? new SqliteStatementEvent(operation, sql) : null;
+    }
+
+    /**
+     * This method notifies the listener and hands statements over the threshold to the slow query log
+     *
+     * @param event
+     * @param binder
+     */
+    private void finishEvent(SqliteStatementEvent event, SqliteStatementBinder binder) {
+        event.finish(statementListener);
+        if (slowQueryLog != null && slowQueryLog.isSlow(event)) {
+            Map<Integer, Object> parameters;
+            if (binder instanceof SqliteParameters) {
+                parameters = ((SqliteParameters) binder).toMap();
+            } else if (binder instanceof MapBinder) {
+                parameters = new LinkedHashMap<>(((MapBinder) binder).parameters);
+            } else {
+                parameters = Collections.emptyMap();
+            }
+            slowQueryLog.record(this, event, binder, parameters);
+        }
+    }
+
+    /**
+     * Binder of the legacy parameter map, which the slow query log can read the values back from
+     */
+    private static final class MapBinder implements SqliteStatementBinder {
+        private final Map<Integer, Object> parameters;
+
+        private MapBinder(Map<Integer, Object> parameters) {
+            this.parameters = parameters;
+        }
+
+        @Override
+        public void bindTo(PreparedStatement preparedStatement) throws SQLException {
+            injectParameterToPreparedStatement(parameters, preparedStatement);
+        }
+    }
+
+    /**
+     * Unit of work executed on a connection inside a transaction
+     */
+    private interface TransactionWork {
+        void execute() throws SQLException;
+    }
 }
@@ -2,10 +2,15 @@ package com.johnpili.sqliter;
 
 import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
+import java.util.stream.Stream;
 
 public interface SqliteRepositoryInterface {
 
@@ -46,6 +51,17 @@ public interface SqliteRepositoryInterface {
      */
     int insert(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException;
 
+    /**
+     * Insert into SQLite with typed parameters and return the generated primary ID
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @return int
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int insertTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException;
+
     /**
      * Update rows in SQLite and return the number of affected rows
      *
@@ -57,6 +73,17 @@ public interface SqliteRepositoryInterface {
      */
     int update(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException;
 
+    /**
+     * Update rows in SQLite with typed parameters and return the number of affected rows
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @return int
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int updateTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException;
+
     /**
      * Delete rows in SQLite and return the number of affected rows
      *
@@ -68,6 +95,113 @@ public interface SqliteRepositoryInterface {
      */
     int delete(String sql, Map<Integer, Object> parameters) throws SQLException, SqliteDriverNotFoundException;
 
+    /**
+     * Delete rows in SQLite with typed parameters and return the number of affected rows
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters
+     * @return int
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int deleteTyped(String sql, SqliteParameters parameters) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Insert every parameter set in a single transaction, executed as JDBC batches of SqliteConfig.getBatchSize rows,
+     * and return the generated primary IDs in the same order as the parameter sets. The IDs are derived from the
+     * last rowid of every batch, so they are exact when SQLite assigns the rowid and the statement inserts one row
+     * per parameter set. Parameter sets the statement skipped, such as INSERT OR IGNORE conflicts, get -1
+     *
+     * @param sql           String
+     * @param parameterSets Collection&lt;Map&lt;Integer, Object&gt;&gt;
+     * @return long[]
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    long[] insertBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Update rows for every parameter set in a single transaction and return the affected rows per parameter set
+     *
+     * @param sql           String
+     * @param parameterSets Collection&lt;Map&lt;Integer, Object&gt;&gt;
+     * @return int[]
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int[] updateBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Delete rows for every parameter set in a single transaction and return the affected rows per parameter set
+     *
+     * @param sql           String
+     * @param parameterSets Collection&lt;Map&lt;Integer, Object&gt;&gt;
+     * @return int[]
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int[] deleteBatch(String sql, Collection<Map<Integer, Object>> parameterSets) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Insert the rows or update the existing rows that conflict on the conflict columns, in a single transaction.
+     * Every column except the conflict columns is overwritten with the new value
+     *
+     * @param table           String
+     * @param columns         List&lt;String&gt; in the order of the row values
+     * @param conflictColumns List&lt;String&gt; of a primary key or unique index
+     * @param rows            Collection&lt;Object[]&gt;
+     * @return the number of inserted or updated rows
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int upsert(String table, List<String> columns, List<String> conflictColumns, Collection<Object[]> rows)
+            throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Insert the rows or update the update columns of the existing rows that conflict on the conflict columns,
+     * in a single transaction. Conflicting rows are left alone when there are no update columns
+     *
+     * @param table           String
+     * @param columns         List&lt;String&gt; in the order of the row values
+     * @param conflictColumns List&lt;String&gt; of a primary key or unique index
+     * @param updateColumns   List&lt;String&gt;
+     * @param rows            Collection&lt;Object[]&gt;
+     * @return the number of inserted or updated rows
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    int upsert(String table, List<String> columns, List<String> conflictColumns, List<String> updateColumns,
+               Collection<Object[]> rows) throws SQLException, SqliteDriverNotFoundException;
+
+    //endregion
+
+    //region Transaction Methods
+
+    /**
+     * Run the callback in a deferred transaction. Every call made through the repository handed to the callback
+     * shares one connection and commits once. Nested calls on that repository use savepoints.
+     * With a SqliteRetryPolicy the callback runs again after a busy rollback, so it should only change the database
+     *
+     * @param callback SqliteTransactionCallback&lt;T&gt;
+     * @return the value returned by the callback
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> T runInTransaction(SqliteTransactionCallback<T> callback) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Run the callback in a transaction started with the given mode. The mode is ignored for nested calls
+     *
+     * @param transactionMode SqliteTransactionMode
+     * @param callback        SqliteTransactionCallback&lt;T&gt;
+     * @return the value returned by the callback
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> T runInTransaction(SqliteTransactionMode transactionMode, SqliteTransactionCallback<T> callback) throws SQLException, SqliteDriverNotFoundException;
+
     //endregion
 
     //region DQL METHODS
@@ -97,6 +231,19 @@ public interface SqliteRepositoryInterface {
      */
     <T> T getSingle(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException;
 
+    /**
+     * Query a single item using sql and typed parameters. Convert resultset to POJO via dependency injection
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters
+     * @param sqliteObjectAssembler SqliteObjectAssembler
+     * @return returns an Object or null
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> T getSingleTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException;
+
     /**
      * Query a list items using sql. Convert resultset to POJO via dependency injection
      *
@@ -122,6 +269,146 @@ public interface SqliteRepositoryInterface {
      */
     <T> List<T> getList(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException;
 
+    /**
+     * Query a list items using sql and typed parameters. Convert resultset to POJO via dependency injection
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters
+     * @param sqliteObjectAssembler SqliteObjectAssembler
+     * @return returns a List&lt;T&gt; or an empty list
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> List<T> getListTyped(String sql, SqliteParameters parameters, SqliteObjectAssembler sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Query items lazily using sql and map of parameters. Rows are assembled one at a time as the stream is pulled.
+     * The result set and connection are released when the stream is fully consumed or closed, so use it in a
+     * try-with-resources block. SQLExceptions raised while pulling rows are thrown as SqliteStreamException
+     *
+     * @param sql                   String
+     * @param parameters            Map&lt;Integer, Object&gt;
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @return returns a Stream&lt;T&gt;
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> Stream<T> stream(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Query items using sql and map of parameters and hand each assembled row to the callback without collecting them
+     *
+     * @param sql                   String
+     * @param parameters            Map&lt;Integer, Object&gt;
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @param callback              SqliteRowCallback&lt;T&gt;
+     * @return returns the number of rows processed
+     * @param <T> generic type
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> long forEach(String sql, Map<Integer, Object> parameters, SqliteObjectAssembler<T> sqliteObjectAssembler,
+                     SqliteRowCallback<T> callback) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Query rows into a column-oriented batch of primitive arrays for analytic scans. Numeric columns are read
+     * without boxing and text columns are dictionary-encoded. The batch is cleared first and grows by doubling,
+     * so reusing one batch across calls avoids allocating new arrays
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters or null
+     * @param batch      SqliteColumnBatch with one SqliteColumnType per result column
+     * @return the batch that was passed in
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    SqliteColumnBatch getColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Stream rows through a column-oriented batch of at most batchSize rows. The same batch is refilled for every
+     * chunk, so the callback must copy anything it keeps. Dictionary codes are only valid within one chunk
+     *
+     * @param sql        String
+     * @param parameters SqliteParameters or null
+     * @param batch      SqliteColumnBatch with one SqliteColumnType per result column
+     * @param batchSize  int
+     * @param callback   SqliteRowCallback&lt;SqliteColumnBatch&gt;
+     * @return returns the number of rows processed
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    long forEachColumnBatch(String sql, SqliteParameters parameters, SqliteColumnBatch batch, int batchSize,
+                            SqliteRowCallback<SqliteColumnBatch> callback) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Open a BLOB value for reading in chunks of SqliteConfig.getBlobChunkSize bytes read with substr, so the value
+     * is never on the Java heap as a whole. The driver has no incremental blob API, so SQLite loads the whole value
+     * for every chunk and reading costs O(length&sup2; / chunk size). All chunks come from one read snapshot.
+     * The connection is held until the stream is read to the end or closed, so use it in a try-with-resources block
+     *
+     * @param table  String
+     * @param column String
+     * @param rowId  long, rowid or INTEGER PRIMARY KEY of the row
+     * @return InputStream, or null when the value is NULL
+     * @throws SQLException                  when the row does not exist or the value is not a BLOB
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    InputStream openBlob(String table, String column, long rowId) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Copy a BLOB value to the output stream chunk by chunk
+     *
+     * @param table        String
+     * @param column       String
+     * @param rowId        long, rowid or INTEGER PRIMARY KEY of the row
+     * @param outputStream OutputStream, left open
+     * @return returns the number of bytes copied, or -1 when the value is NULL
+     * @throws SQLException                  when the row does not exist or the value is not a BLOB
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     * @throws IOException                   when writing to the output stream fails
+     */
+    long readBlob(String table, String column, long rowId, OutputStream outputStream)
+            throws SQLException, SqliteDriverNotFoundException, IOException;
+
+    /**
+     * Replace a BLOB value with the content of the input stream inside one transaction. The value is reserved with
+     * zeroblob(length) and filled chunk by chunk, so only one chunk is on the Java heap. Like reads, every chunk
+     * statement rewrites the whole value inside SQLite. Readers keep seeing the old value until the transaction
+     * commits, and a failed read or a stream of the wrong length rolls it back
+     *
+     * @param table       String
+     * @param column      String
+     * @param rowId       long, rowid or INTEGER PRIMARY KEY of an existing row
+     * @param inputStream InputStream, read up to length bytes and left open
+     * @param length      long, exact number of bytes in the stream
+     * @return returns the number of bytes written
+     * @throws SQLException                  when the row does not exist or the stream is not length bytes long
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     * @throws IOException                   when reading the input stream fails
+     */
+    long writeBlob(String table, String column, long rowId, InputStream inputStream, long length)
+            throws SQLException, SqliteDriverNotFoundException, IOException;
+
+    /**
+     * Page through an ordered scan with keyset pagination. Each page seeks past the last key of the previous
+     * page with WHERE key &gt; ?, so deep pages cost the same as the first one.
+     * The key column must be unique and the query must be a plain SELECT, see SqliteKeysetPager for the queries
+     * that are rejected. Rows with a NULL key are skipped
+     *
+     * @param sql                   String
+     * @param parameters            SqliteParameters or null
+     * @param keyColumn             String, label of the unique ordering column in the query
+     * @param pageSize              int
+     * @param sqliteObjectAssembler SqliteObjectAssembler&lt;T&gt;
+     * @param cursor                String, token from SqliteKeysetPager.getCursor to resume from, or null to start at the beginning
+     * @return SqliteKeysetPager&lt;T&gt;
+     * @param <T> generic type
+     */
+    <T> SqliteKeysetPager<T> paginate(String sql, SqliteParameters parameters, String keyColumn, int pageSize,
+                                      SqliteObjectAssembler<T> sqliteObjectAssembler, String cursor);
+
     //endregion
 
     //region DDL METHODS
@@ -165,4 +452,27 @@ public interface SqliteRepositoryInterface {
     List<String> getTables() throws SQLException, SqliteDriverNotFoundException;
 
     boolean tableExists(String name) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Get the columns of a table in declaration order from the schema cache
+     *
+     * @param table String
+     * @return List&lt;SqliteColumn&gt;, empty when the table does not exist
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    List<SqliteColumn> getColumns(String table) throws SQLException, SqliteDriverNotFoundException;
+
+    boolean columnExists(String table, String column) throws SQLException, SqliteDriverNotFoundException;
+
+    /**
+     * Get the indexes of a table from the schema cache, including the automatic indexes of UNIQUE and
+     * PRIMARY KEY constraints
+     *
+     * @param table String
+     * @return List&lt;SqliteIndex&gt;, empty when the table does not exist
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    List<SqliteIndex> getIndexes(String table) throws SQLException, SqliteDriverNotFoundException;
 }
@@ -0,0 +1,288 @@
+package com.johnpili.sqliter;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded LRU cache of query results with TTL expiry and table-level invalidation.
+ * Every table has a version counter that writes bump. Entries remember the versions they were loaded at
+ * and are discarded on lookup once any of their tables moved on, so a write never has to scan the cache.
+ * Queries whose tables cannot be resolved, such as views and common table expressions, are snapshotted
+ * against a write version that every write bumps instead. A load that raced with a write is not stored at all
+ *
+ * @author John Pili
+ */
+class SqliteResultCache {
+    private static final String IDENTIFIER = "[`\"\\[]?[\\w.$]+[`\"\\]]?";
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "\\b(FROM|JOIN|INTO|UPDATE|TABLE(?:\\s+IF\\s+(?:NOT\\s+)?EXISTS)?)\\s+(" + IDENTIFIER + ")",
+            Pattern.CASE_INSENSITIVE);
+    // The next table of a comma separated FROM list, after an optional alias that is not a clause keyword
+    private static final Pattern FROM_LIST_PATTERN = Pattern.compile(
+            "(?:\\s+(?:AS\\s+)?(?!(?:WHERE|GROUP|HAVING|ORDER|LIMIT|WINDOW|UNION|EXCEPT|INTERSECT|ON|USING|JOIN|"
+                    + "INNER|LEFT|RIGHT|FULL|CROSS|NATURAL|OUTER|INDEXED|NOT|RETURNING)\\b)" + IDENTIFIER + ")?"
+                    + "\\s*,\\s*(" + IDENTIFIER + ")",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern WITH_PATTERN = Pattern.compile("\\bWITH\\s+", Pattern.CASE_INSENSITIVE);
+
+    private static final Object NULL_VALUE = new Object();
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final LinkedHashMap<Key, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final ConcurrentHashMap<String, AtomicLong> tableVersions = new ConcurrentHashMap<>();
+    private final AtomicLong globalVersion = new AtomicLong();
+    private final AtomicLong writeVersion = new AtomicLong();
+
+    private final LongAdder hitCount = new LongAdder();
+    private final LongAdder missCount = new LongAdder();
+    private final LongAdder evictionCount = new LongAdder();
+    private final LongAdder invalidationCount = new LongAdder();
+
+    SqliteResultCache(int maxEntries, long ttlMillis) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttlMillis);
+    }
+
+    /**
+     * This method extracts the table names a statement reads or writes, including every table of a comma
+     * separated FROM list. An empty set means unknown
+     *
+     * @param sql String
+     * @return Set&lt;String&gt;
+     */
+    static Set<String> tablesOf(String sql) {
+        if (sql == null) {
+            return Collections.emptySet();
+        }
+        Set<String> tables = new LinkedHashSet<>();
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        Matcher listMatcher = FROM_LIST_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            tables.add(tableName(matcher.group(2)));
+            if (!"FROM".equalsIgnoreCase(matcher.group(1))) {
+                continue;
+            }
+            int position = matcher.end();
+            while (listMatcher.region(position, sql.length()).lookingAt()) {
+                tables.add(tableName(listMatcher.group(1)));
+                position = listMatcher.end();
+            }
+        }
+        return tables;
+    }
+
+    /**
+     * This method returns true when a statement declares common table expressions, whose names
+     * {@link #tablesOf(String)} cannot tell apart from tables
+     *
+     * @param sql String
+     * @return boolean
+     */
+    static boolean hasCommonTableExpression(String sql) {
+        return sql != null && WITH_PATTERN.matcher(sql).find();
+    }
+
+    private static String tableName(String identifier) {
+        String table = identifier.replaceAll("[`\"\\[\\]]", "").toLowerCase(Locale.ROOT);
+        int dot = table.lastIndexOf('.');
+        return dot >= 0 ? table.substring(dot + 1) : table;
+    }
+
+    /**
+     * Returns the cached value, NULL_VALUE for a cached null, or null on a miss
+     */
+    Object get(Key key) {
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+            if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.loadedAtNanos > ttlNanos) {
+                entries.remove(key);
+                evictionCount.increment();
+                entry = null;
+            } else if (entry != null && !isCurrent(entry.snapshot)) {
+                entries.remove(key);
+                invalidationCount.increment();
+                entry = null;
+            }
+        }
+        if (entry == null) {
+            missCount.increment();
+            return null;
+        }
+        hitCount.increment();
+        return entry.value;
+    }
+
+    /**
+     * Captures the table versions before a query runs. A null set means the tables are unknown and
+     * the snapshot is invalidated by any write
+     */
+    Snapshot snapshot(Set<String> tables) {
+        if (tables == null) {
+            return new Snapshot(new String[0], new long[0], globalVersion.get(), writeVersion.get());
+        }
+        String[] names = tables.toArray(new String[0]);
+        long[] versions = new long[names.length];
+        for (int i = 0; i < names.length; i++) {
+            versions[i] = versionOf(names[i]).get();
+        }
+        return new Snapshot(names, versions, globalVersion.get(), -1);
+    }
+
+    /**
+     * Stores the loaded value unless one of its tables was written while it was loading
+     */
+    void put(Key key, Snapshot snapshot, Object value) {
+        if (!isCurrent(snapshot)) {
+            return;
+        }
+        Entry entry = new Entry(value == null ? NULL_VALUE : value, snapshot, System.nanoTime());
+        synchronized (entries) {
+            entries.put(key, entry);
+            if (entries.size() > maxEntries) {
+                Iterator<Map.Entry<Key, Entry>> iterator = entries.entrySet().iterator();
+                iterator.next();
+                iterator.remove();
+                evictionCount.increment();
+            }
+        }
+    }
+
+    /**
+     * This method invalidates the tables a write touched. An empty set invalidates everything
+     *
+     * @param tables Set&lt;String&gt;
+     */
+    void invalidate(Set<String> tables) {
+        if (tables.isEmpty()) {
+            invalidateAll();
+            return;
+        }
+        for (String table : tables) {
+            versionOf(table).incrementAndGet();
+        }
+        writeVersion.incrementAndGet();
+    }
+
+    void invalidateAll() {
+        globalVersion.incrementAndGet();
+        synchronized (entries) {
+            invalidationCount.add(entries.size());
+            entries.clear();
+        }
+    }
+
+    static boolean isNullValue(Object value) {
+        return value == NULL_VALUE;
+    }
+
+    SqliteResultCacheStatistics getStatistics() {
+        int size;
+        synchronized (entries) {
+            size = entries.size();
+        }
+        return new SqliteResultCacheStatistics(hitCount.sum(), missCount.sum(), evictionCount.sum(),
+                invalidationCount.sum(), size);
+    }
+
+    private boolean isCurrent(Snapshot snapshot) {
+        if (snapshot.globalVersion != globalVersion.get()) {
+            return false;
+        }
+        if (snapshot.writeVersion >= 0 && snapshot.writeVersion != writeVersion.get()) {
+            return false;
+        }
+        for (int i = 0; i < snapshot.tables.length; i++) {
+            if (versionOf(snapshot.tables[i]).get() != snapshot.versions[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private AtomicLong versionOf(String table) {
+        return tableVersions.computeIfAbsent(table, name -> new AtomicLong());
+    }
+
+    /**
+     * Cache key made of the query kind, SQL, a copy of the parameters and the assembler
+     */
+    static final class Key {
+        private final boolean single;
+        private final String sql;
+        private final Object parameters;
+        private final Object assembler;
+        private final int hashCode;
+
+        /**
+         * The parameters are a Map or SqliteParameters and are copied, callers may reuse theirs
+         */
+        Key(boolean single, String sql, Object parameters, Object assembler) {
+            this.single = single;
+            this.sql = sql;
+            if (parameters instanceof SqliteParameters) {
+                this.parameters = ((SqliteParameters) parameters).copy();
+            } else {
+                this.parameters = parameters == null ? Collections.emptyMap() : new LinkedHashMap<>((Map<?, ?>) parameters);
+            }
+            this.assembler = assembler;
+            this.hashCode = Objects.hash(single, sql, this.parameters, assembler);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (this == other) {
+                return true;
+            }
+            if (!(other instanceof Key)) {
+                return false;
+            }
+            Key key = (Key) other;
+            return single == key.single && Objects.equals(assembler, key.assembler) && sql.equals(key.sql) && parameters.equals(key.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hashCode;
+        }
+    }
+
+    static final class Snapshot {
+        private final String[] tables;
+        private final long[] versions;
+        private final long globalVersion;
+        private final long writeVersion;
+
+        private Snapshot(String[] tables, long[] versions, long globalVersion, long writeVersion) {
+            this.tables = tables;
+            this.versions = versions;
+            this.globalVersion = globalVersion;
+            this.writeVersion = writeVersion;
+        }
+    }
+
+    private static final class Entry {
+        private final Object value;
+        private final Snapshot snapshot;
+        private final long loadedAtNanos;
+
+        private Entry(Object value, Snapshot snapshot, long loadedAtNanos) {
+            this.value = value;
+            this.snapshot = snapshot;
+            this.loadedAtNanos = loadedAtNanos;
+        }
+    }
+}
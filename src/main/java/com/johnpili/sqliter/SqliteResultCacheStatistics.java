@@ -0,0 +1,63 @@
+package com.johnpili.sqliter;
+
+/**
+ * Point in time snapshot of the query result cache counters
+ *
+ * @author John Pili
+ */
+public class SqliteResultCacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+    private final long invalidationCount;
+    private final int size;
+
+    public SqliteResultCacheStatistics(long hitCount, long missCount, long evictionCount, long invalidationCount, int size) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+        this.invalidationCount = invalidationCount;
+        this.size = size;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Entries removed because the cache was full or their TTL expired
+     *
+     * @return long
+     */
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    /**
+     * Entries discarded because a write touched one of their tables
+     *
+     * @return long
+     */
+    public long getInvalidationCount() {
+        return invalidationCount;
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteResultCacheStatistics{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                ", invalidationCount=" + invalidationCount +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,68 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteStreamException;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+
+/**
+ * Pulls one row at a time from an open result set. The result set and the connection lease are released
+ * as soon as the last row is read, when assembling fails or when the owning stream is closed
+ *
+ * @author John Pili
+ */
+class SqliteResultSetSpliterator<T> extends Spliterators.AbstractSpliterator<T> implements AutoCloseable {
+    private final SqliteConnectionLease lease;
+    private final ResultSet resultSet;
+    private final SqliteObjectAssembler<T> sqliteObjectAssembler;
+    private boolean closed;
+
+    SqliteResultSetSpliterator(SqliteConnectionLease lease, ResultSet resultSet, SqliteObjectAssembler<T> sqliteObjectAssembler) {
+        super(Long.MAX_VALUE, Spliterator.ORDERED);
+        this.lease = lease;
+        this.resultSet = resultSet;
+        this.sqliteObjectAssembler = sqliteObjectAssembler;
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super T> action) {
+        if (closed) {
+            return false;
+        }
+        try {
+            if (!resultSet.next()) {
+                close();
+                return false;
+            }
+            action.accept(sqliteObjectAssembler.assemble(resultSet));
+            return true;
+        } catch (SQLException sqlException) {
+            close();
+            throw new SqliteStreamException(sqlException);
+        } catch (RuntimeException runtimeException) {
+            close();
+            throw runtimeException;
+        }
+    }
+
+    @Override
+    public void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            resultSet.close();
+        } catch (SQLException ignored) {
+            // The lease below still releases the statement and the connection
+        }
+        try {
+            lease.close();
+        } catch (SQLException sqlException) {
+            throw new SqliteStreamException(sqlException);
+        }
+    }
+}
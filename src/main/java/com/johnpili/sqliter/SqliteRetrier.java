@@ -0,0 +1,79 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.SQLException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs operations under a SqliteRetryPolicy and counts busy errors, retries and give-ups
+ *
+ * @author John Pili
+ */
+class SqliteRetrier {
+    private final SqliteRetryPolicy retryPolicy;
+    private final LongAdder busyCount = new LongAdder();
+    private final LongAdder retryCount = new LongAdder();
+    private final LongAdder recoveredCount = new LongAdder();
+    private final LongAdder giveUpCount = new LongAdder();
+
+    SqliteRetrier(SqliteRetryPolicy retryPolicy) {
+        this.retryPolicy = retryPolicy;
+    }
+
+    /**
+     * This method runs the attempt until it succeeds, fails with anything but a busy error or runs out of attempts.
+     * An interrupt during the backoff gives up at once and keeps the interrupt flag set
+     *
+     * @param attempt Attempt&lt;T&gt;
+     * @return T
+     * @throws SQLException                  the last busy error when giving up
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    <T> T call(Attempt<T> attempt) throws SQLException, SqliteDriverNotFoundException {
+        int attempts = 0;
+        double backoffMillis = retryPolicy.getInitialBackoffMillis();
+        while (true) {
+            attempts++;
+            try {
+                T result = attempt.run();
+                if (attempts > 1) {
+                    recoveredCount.increment();
+                }
+                return result;
+            } catch (SQLException sqlException) {
+                if (!SqliteRetryPolicy.isBusy(sqlException)) {
+                    throw sqlException;
+                }
+                busyCount.increment();
+                if (attempts >= retryPolicy.getMaxAttempts()) {
+                    giveUpCount.increment();
+                    throw sqlException;
+                }
+                long ceilingNanos = TimeUnit.MICROSECONDS.toNanos(
+                        (long) (Math.min(backoffMillis, retryPolicy.getMaxBackoffMillis()) * 1000));
+                long sleepNanos = ceilingNanos / 2 + ThreadLocalRandom.current().nextLong(ceilingNanos / 2 + 1);
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException interruptedException) {
+                    Thread.currentThread().interrupt();
+                    giveUpCount.increment();
+                    sqlException.addSuppressed(interruptedException);
+                    throw sqlException;
+                }
+                backoffMillis *= retryPolicy.getBackoffMultiplier();
+                retryCount.increment();
+            }
+        }
+    }
+
+    SqliteRetryStatistics getStatistics() {
+        return new SqliteRetryStatistics(busyCount.sum(), retryCount.sum(), recoveredCount.sum(), giveUpCount.sum());
+    }
+
+    interface Attempt<T> {
+        T run() throws SQLException, SqliteDriverNotFoundException;
+    }
+}
@@ -0,0 +1,95 @@
+package com.johnpili.sqliter;
+
+import java.sql.SQLException;
+
+/**
+ * Retry policy for operations that failed with SQLITE_BUSY or SQLITE_LOCKED after the busy timeout ran out.
+ * Reads, single statements outside a transaction and whole runInTransaction callbacks are retried with
+ * jittered exponential backoff, statements inside a transaction never are because only the whole
+ * transaction can be repeated safely
+ *
+ * @author John Pili
+ */
+public class SqliteRetryPolicy {
+    private static final int SQLITE_BUSY = 5;
+    private static final int SQLITE_LOCKED = 6;
+
+    private int maxAttempts;
+    private long initialBackoffMillis;
+    private long maxBackoffMillis;
+    private double backoffMultiplier;
+
+    public SqliteRetryPolicy() {
+        this.maxAttempts = 5;
+        this.initialBackoffMillis = 10;
+        this.maxBackoffMillis = 1000;
+        this.backoffMultiplier = 2;
+    }
+
+    /**
+     * This method tells whether the exception or one of its causes is SQLITE_BUSY or SQLITE_LOCKED,
+     * including their extended result codes such as SQLITE_BUSY_SNAPSHOT
+     *
+     * @param throwable Throwable
+     * @return boolean
+     */
+    public static boolean isBusy(Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof SQLException) {
+                int primaryCode = ((SQLException) cause).getErrorCode() & 0xFF;
+                if (primaryCode == SQLITE_BUSY || primaryCode == SQLITE_LOCKED) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    public int getMaxAttempts() {
+        return maxAttempts;
+    }
+
+    /**
+     * Total number of attempts including the first one. One disables retrying but keeps the counters
+     *
+     * @param maxAttempts int
+     */
+    public void setMaxAttempts(int maxAttempts) {
+        this.maxAttempts = maxAttempts;
+    }
+
+    public long getInitialBackoffMillis() {
+        return initialBackoffMillis;
+    }
+
+    /**
+     * Backoff before the first retry. Every wait is drawn at random from the upper half of the current backoff
+     * so contending threads spread out instead of retrying in lockstep
+     *
+     * @param initialBackoffMillis long
+     */
+    public void setInitialBackoffMillis(long initialBackoffMillis) {
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    public long getMaxBackoffMillis() {
+        return maxBackoffMillis;
+    }
+
+    public void setMaxBackoffMillis(long maxBackoffMillis) {
+        this.maxBackoffMillis = maxBackoffMillis;
+    }
+
+    public double getBackoffMultiplier() {
+        return backoffMultiplier;
+    }
+
+    /**
+     * Growth of the backoff after every retry
+     *
+     * @param backoffMultiplier double
+     */
+    public void setBackoffMultiplier(double backoffMultiplier) {
+        this.backoffMultiplier = backoffMultiplier;
+    }
+}
@@ -0,0 +1,61 @@
+package com.johnpili.sqliter;
+
+/**
+ * Point in time snapshot of the busy retry counters
+ *
+ * @author John Pili
+ */
+public class SqliteRetryStatistics {
+    private final long busyCount;
+    private final long retryCount;
+    private final long recoveredCount;
+    private final long giveUpCount;
+
+    public SqliteRetryStatistics(long busyCount, long retryCount, long recoveredCount, long giveUpCount) {
+        this.busyCount = busyCount;
+        this.retryCount = retryCount;
+        this.recoveredCount = recoveredCount;
+        this.giveUpCount = giveUpCount;
+    }
+
+    /**
+     * Attempts that failed with SQLITE_BUSY or SQLITE_LOCKED
+     *
+     * @return long
+     */
+    public long getBusyCount() {
+        return busyCount;
+    }
+
+    public long getRetryCount() {
+        return retryCount;
+    }
+
+    /**
+     * Operations that succeeded after at least one retry
+     *
+     * @return long
+     */
+    public long getRecoveredCount() {
+        return recoveredCount;
+    }
+
+    /**
+     * Operations that were still busy after the last attempt and threw
+     *
+     * @return long
+     */
+    public long getGiveUpCount() {
+        return giveUpCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteRetryStatistics{" +
+                "busyCount=" + busyCount +
+                ", retryCount=" + retryCount +
+                ", recoveredCount=" + recoveredCount +
+                ", giveUpCount=" + giveUpCount +
+                '}';
+    }
+}
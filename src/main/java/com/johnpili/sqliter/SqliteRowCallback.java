@@ -0,0 +1,14 @@
+package com.johnpili.sqliter;
+
+import java.sql.SQLException;
+
+public interface SqliteRowCallback<T> {
+
+    /**
+     * This method receives every assembled row of a forEach query while the result set is still open
+     *
+     * @param item T
+     * @throws SQLException SQLException
+     */
+    void process(T item) throws SQLException;
+}
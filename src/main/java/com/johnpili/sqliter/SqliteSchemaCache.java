@@ -0,0 +1,202 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.constants.SqlStatements;
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * In-memory copy of the table, column and index metadata. The table list is loaded at once and the columns
+ * and indexes of a table on first use. DDL through the repository drops the copy, and changes made by other
+ * connections or processes are caught by comparing PRAGMA schema_version, which SQLite bumps on every
+ * schema change and answers from the database header without touching sqlite_schema
+ *
+ * @author John Pili
+ */
+class SqliteSchemaCache {
+    private final long revalidateNanos;
+    private final AtomicLong generation = new AtomicLong();
+    private volatile Snapshot snapshot;
+
+    SqliteSchemaCache(long revalidateMillis) {
+        this.revalidateNanos = TimeUnit.MILLISECONDS.toNanos(revalidateMillis);
+    }
+
+    /**
+     * This method returns the cached schema, revalidated against PRAGMA schema_version once the
+     * revalidation interval has passed
+     *
+     * @param sqliteRepository SqliteRepository
+     * @return Snapshot
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    Snapshot get(SqliteRepository sqliteRepository) throws SQLException, SqliteDriverNotFoundException {
+        Snapshot current = snapshot;
+        long now = System.nanoTime();
+        if (current != null && now - current.checkedAtNanos < revalidateNanos) {
+            return current;
+        }
+        long loadGeneration = generation.get();
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+            long version = schemaVersion(lease);
+            if (current != null && current.version == version) {
+                current.checkedAtNanos = now;
+                return current;
+            }
+            Snapshot loaded = load(lease, version);
+            synchronized (this) {
+                // A DDL statement that ran while loading may not be part of what was read
+                if (generation.get() == loadGeneration) {
+                    snapshot = loaded;
+                }
+            }
+            return loaded;
+        }
+    }
+
+    /**
+     * This method reads the schema without caching it, used inside transactions whose DDL is not committed yet
+     *
+     * @param sqliteRepository SqliteRepository
+     * @return Snapshot
+     * @throws SQLException
+     * @throws SqliteDriverNotFoundException
+     */
+    static Snapshot read(SqliteRepository sqliteRepository) throws SQLException, SqliteDriverNotFoundException {
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+            return load(lease, schemaVersion(lease));
+        }
+    }
+
+    void invalidate() {
+        synchronized (this) {
+            generation.incrementAndGet();
+            snapshot = null;
+        }
+    }
+
+    private static long schemaVersion(SqliteConnectionLease lease) throws SQLException {
+        try (ResultSet resultSet = lease.prepareStatement(SqlStatements.SCHEMA_VERSION).executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+    }
+
+    private static Snapshot load(SqliteConnectionLease lease, long version) throws SQLException {
+        List<String> tables = new ArrayList<>();
+        try (ResultSet resultSet = lease.prepareStatement(SqlStatements.GET_TABLES).executeQuery()) {
+            while (resultSet.next()) {
+                tables.add(resultSet.getString(1));
+            }
+        }
+        return new Snapshot(version, Collections.unmodifiableList(tables));
+    }
+
+    private static Table loadTable(SqliteConnectionLease lease, String table) throws SQLException {
+        List<SqliteColumn> columns = new ArrayList<>();
+        PreparedStatement columnStatement = lease.prepareStatement(SqlStatements.GET_COLUMNS);
+        columnStatement.setString(1, table);
+        try (ResultSet resultSet = columnStatement.executeQuery()) {
+            while (resultSet.next()) {
+                columns.add(new SqliteColumn(resultSet.getString(1), resultSet.getString(2), resultSet.getBoolean(3),
+                        resultSet.getString(4), resultSet.getInt(5)));
+            }
+        }
+
+        List<SqliteIndex> indexes = new ArrayList<>();
+        PreparedStatement indexStatement = lease.prepareStatement(SqlStatements.GET_INDEXES);
+        indexStatement.setString(1, table);
+        try (ResultSet resultSet = indexStatement.executeQuery()) {
+            while (resultSet.next()) {
+                indexes.add(new SqliteIndex(resultSet.getString(1), resultSet.getBoolean(2), resultSet.getString(3),
+                        resultSet.getBoolean(4), null));
+            }
+        }
+        PreparedStatement indexColumnStatement = lease.prepareStatement(SqlStatements.GET_INDEX_COLUMNS);
+        for (int i = 0; i < indexes.size(); i++) {
+            SqliteIndex index = indexes.get(i);
+            List<String> indexColumns = new ArrayList<>();
+            indexColumnStatement.setString(1, index.getName());
+            try (ResultSet resultSet = indexColumnStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    indexColumns.add(resultSet.getString(1));
+                }
+            }
+            indexes.set(i, new SqliteIndex(index.getName(), index.isUnique(), index.getOrigin(), index.isPartial(),
+                    Collections.unmodifiableList(indexColumns)));
+        }
+        return new Table(Collections.unmodifiableList(columns), Collections.unmodifiableList(indexes));
+    }
+
+    /**
+     * Schema at one schema_version. Table details are filled in on first use
+     */
+    static final class Snapshot {
+        private final long version;
+        private final List<String> tables;
+        private final Set<String> tableKeys = new HashSet<>();
+        private final ConcurrentHashMap<String, Table> details = new ConcurrentHashMap<>();
+        private volatile long checkedAtNanos;
+
+        private Snapshot(long version, List<String> tables) {
+            this.version = version;
+            this.tables = tables;
+            this.checkedAtNanos = System.nanoTime();
+            for (String table : tables) {
+                tableKeys.add(table.toLowerCase(Locale.ROOT));
+            }
+        }
+
+        List<String> getTables() {
+            return tables;
+        }
+
+        /**
+         * True when the lower case name is a base table, false for views and anything else
+         */
+        boolean isTable(String lowerCaseName) {
+            return tableKeys.contains(lowerCaseName);
+        }
+
+        Table getTable(SqliteRepository sqliteRepository, String table) throws SQLException, SqliteDriverNotFoundException {
+            String key = table.toLowerCase(Locale.ROOT);
+            Table details = this.details.get(key);
+            if (details == null) {
+                try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+                    details = loadTable(lease, table);
+                }
+                this.details.putIfAbsent(key, details);
+            }
+            return details;
+        }
+    }
+
+    static final class Table {
+        private final List<SqliteColumn> columns;
+        private final List<SqliteIndex> indexes;
+
+        private Table(List<SqliteColumn> columns, List<SqliteIndex> indexes) {
+            this.columns = columns;
+            this.indexes = indexes;
+        }
+
+        List<SqliteColumn> getColumns() {
+            return columns;
+        }
+
+        List<SqliteIndex> getIndexes() {
+            return indexes;
+        }
+    }
+}
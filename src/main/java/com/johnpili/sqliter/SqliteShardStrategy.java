@@ -0,0 +1,26 @@
+package com.johnpili.sqliter;
+
+/**
+ * Decides which shard owns a routing key
+ *
+ * @author John Pili
+ */
+public interface SqliteShardStrategy {
+    /**
+     * This method returns the shard index of the routing key, between 0 and shardCount - 1.
+     * The result must never change for the same key and shard count
+     *
+     * @param routingKey Object
+     * @param shardCount int
+     * @return int
+     */
+    int shardFor(Object routingKey, int shardCount);
+
+    /**
+     * Called once by the sharded repository so a strategy can reject a shard count it cannot serve
+     *
+     * @param shardCount int
+     */
+    default void checkShardCount(int shardCount) {
+    }
+}
@@ -0,0 +1,144 @@
+package com.johnpili.sqliter;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A statement that ran longer than the slow query threshold, with its parameters, its EXPLAIN QUERY PLAN
+ * and what the plan says about it. The plan is captured after the statement ran, so it is the plan SQLite
+ * would pick now, which normally is the one it used
+ *
+ * @author John Pili
+ */
+public class SqliteSlowQuery {
+    private final SqliteOperation operation;
+    private final String sql;
+    private final String fingerprint;
+    private final Map<Integer, Object> parameters;
+    private final long totalNanos;
+    private final long rows;
+    private final long timestampMillis;
+    private final List<String> plan;
+    private final List<String> fullScanTables;
+    private final List<String> tempBTrees;
+    private final List<String> suggestedIndexes;
+
+    public SqliteSlowQuery(SqliteOperation operation, String sql, String fingerprint, Map<Integer, Object> parameters,
+                           long totalNanos, long rows, long timestampMillis, List<String> plan, List<String> fullScanTables,
+                           List<String> tempBTrees, List<String> suggestedIndexes) {
+        this.operation = operation;
+        this.sql = sql;
+        this.fingerprint = fingerprint;
+        this.parameters = parameters;
+        this.totalNanos = totalNanos;
+        this.rows = rows;
+        this.timestampMillis = timestampMillis;
+        this.plan = plan;
+        this.fullScanTables = fullScanTables;
+        this.tempBTrees = tempBTrees;
+        this.suggestedIndexes = suggestedIndexes;
+    }
+
+    public SqliteOperation getOperation() {
+        return operation;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * Bound parameters by index
+     *
+     * @return Map&lt;Integer, Object&gt;
+     */
+    public Map<Integer, Object> getParameters() {
+        return parameters;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getTotalMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(totalNanos);
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getTimestampMillis() {
+        return timestampMillis;
+    }
+
+    /**
+     * Detail column of every EXPLAIN QUERY PLAN row, empty when the plan could not be captured
+     *
+     * @return List&lt;String&gt;
+     */
+    public List<String> getPlan() {
+        return plan;
+    }
+
+    /**
+     * Tables the plan reads with a full table SCAN
+     *
+     * @return List&lt;String&gt;
+     */
+    public List<String> getFullScanTables() {
+        return fullScanTables;
+    }
+
+    /**
+     * What the plan builds temporary B-trees for, such as ORDER BY, GROUP BY or DISTINCT
+     *
+     * @return List&lt;String&gt;
+     */
+    public List<String> getTempBTrees() {
+        return tempBTrees;
+    }
+
+    public boolean isFullScan() {
+        return !fullScanTables.isEmpty();
+    }
+
+    public boolean isTempBTreeForOrderBy() {
+        for (String tempBTree : tempBTrees) {
+            if (tempBTree.contains("ORDER BY")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * CREATE INDEX statements that would let SQLite search instead of scan, derived from the columns the
+     * statement filters and sorts on. They are candidates to check, not something to apply blindly
+     *
+     * @return List&lt;String&gt;
+     */
+    public List<String> getSuggestedIndexes() {
+        return suggestedIndexes;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteSlowQuery{" +
+                "operation=" + operation +
+                ", sql='" + sql + '\'' +
+                ", parameters=" + parameters +
+                ", totalMillis=" + getTotalMillis() +
+                ", rows=" + rows +
+                ", plan=" + plan +
+                ", fullScanTables=" + fullScanTables +
+                ", tempBTrees=" + tempBTrees +
+                ", suggestedIndexes=" + suggestedIndexes +
+                '}';
+    }
+}
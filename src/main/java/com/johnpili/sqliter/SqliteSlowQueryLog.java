@@ -0,0 +1,281 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Bounded log of the statements that ran longer than the threshold. The plan of a slow statement is captured
+ * with EXPLAIN QUERY PLAN on the same parameters, full table scans and temporary B-trees are flagged, and an
+ * index is suggested from the columns the statement filters and sorts on, checked against the schema cache
+ *
+ * @author John Pili
+ */
+class SqliteSlowQueryLog {
+    private static final String IDENTIFIER = "[`\"\\[]?[\\w$]+[`\"\\]]?";
+    private static final Pattern TABLE_PATTERN = Pattern.compile(
+            "\\b(?:FROM|JOIN|UPDATE|INTO)\\s+(?:" + IDENTIFIER + "\\.)?(" + IDENTIFIER + ")(?:\\s+(?:AS\\s+)?([\\w$]+))?",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern SCAN_PATTERN = Pattern.compile("^SCAN (?:TABLE )?(\\S+)(?: AS (\\S+))?(.*)$");
+    private static final Pattern TEMP_B_TREE_PATTERN = Pattern.compile("^USE TEMP B-TREE FOR (.+)$");
+    private static final Pattern AUTOMATIC_INDEX_PATTERN = Pattern.compile("^SEARCH (\\S+) USING AUTOMATIC .*INDEX \\((.*)\\)$");
+    private static final Pattern AUTOMATIC_INDEX_COLUMN_PATTERN = Pattern.compile("([\\w$]+)(=|>|<)");
+    private static final Pattern PREDICATE_CLAUSE_PATTERN = Pattern.compile(
+            "\\b(?:WHERE|ON)\\b(.*?)(?=\\b(?:WHERE|GROUP\\s+BY|ORDER\\s+BY|LIMIT|HAVING|RETURNING|WINDOW|JOIN|LEFT|INNER|CROSS)\\b|$)",
+            Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Pattern PREDICATE_PATTERN = Pattern.compile(
+            "(?:([\\w$]+)\\.)?([\\w$]+)\\s*(==|=|<=|>=|<>|!=|<|>|\\bIN\\b|\\bBETWEEN\\b|\\bLIKE\\b|\\bGLOB\\b)",
+            Pattern.CASE_INSENSITIVE);
+    private static final Pattern ORDER_BY_PATTERN = Pattern.compile(
+            "\\bORDER\\s+BY\\s+(.*?)(?=\\bLIMIT\\b|$)", Pattern.CASE_INSENSITIVE | Pattern.DOTALL);
+    private static final Set<String> KEYWORDS = new HashSet<>(Arrays.asList(
+            "where", "join", "on", "left", "right", "full", "inner", "outer", "cross", "natural", "order", "group",
+            "limit", "having", "set", "using", "values", "select", "default", "union", "except", "intersect",
+            "window", "returning", "indexed", "not"));
+
+    private final long thresholdNanos;
+    private final int capacity;
+    private final ArrayDeque<SqliteSlowQuery> reports;
+
+    SqliteSlowQueryLog(long thresholdMillis, int capacity) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.capacity = Math.max(1, capacity);
+        this.reports = new ArrayDeque<>(this.capacity);
+    }
+
+    boolean isSlow(SqliteStatementEvent event) {
+        return event.getTotalNanos() >= thresholdNanos;
+    }
+
+    /**
+     * This method explains and records a slow statement. Failing to explain it never fails the caller
+     *
+     * @param sqliteRepository SqliteRepository the statement ran on
+     * @param event            SqliteStatementEvent
+     * @param binder           SqliteStatementBinder, rebinds the parameters to the EXPLAIN statement
+     * @param parameters       Map&lt;Integer, Object&gt;
+     */
+    void record(SqliteRepository sqliteRepository, SqliteStatementEvent event, SqliteStatementBinder binder,
+                Map<Integer, Object> parameters) {
+        String sql = event.getSql() == null ? "" : event.getSql().trim();
+        List<String> plan = explain(sqliteRepository, sql, binder);
+
+        Map<String, String> tables = tablesByAlias(sql);
+        Set<String> fullScanTables = new LinkedHashSet<>();
+        List<String> tempBTrees = new ArrayList<>();
+        Map<String, List<String>> automaticIndexes = new HashMap<>();
+        for (String detail : plan) {
+            Matcher scan = SCAN_PATTERN.matcher(detail);
+            if (scan.matches() && !scan.group(3).contains("USING") && !detail.startsWith("SCAN CONSTANT")) {
+                String name = unquote(scan.group(2) != null ? scan.group(2) : scan.group(1));
+                if (!name.startsWith("(")) {
+                    fullScanTables.add(tables.getOrDefault(name.toLowerCase(Locale.ROOT), name));
+                }
+                continue;
+            }
+            Matcher tempBTree = TEMP_B_TREE_PATTERN.matcher(detail);
+            if (tempBTree.matches()) {
+                tempBTrees.add(tempBTree.group(1));
+                continue;
+            }
+            Matcher automaticIndex = AUTOMATIC_INDEX_PATTERN.matcher(detail);
+            if (automaticIndex.matches()) {
+                List<String> columns = new ArrayList<>();
+                Matcher column = AUTOMATIC_INDEX_COLUMN_PATTERN.matcher(automaticIndex.group(2));
+                while (column.find()) {
+                    columns.add(column.group(1));
+                }
+                String name = unquote(automaticIndex.group(1)).toLowerCase(Locale.ROOT);
+                automaticIndexes.put(tables.getOrDefault(name, name), columns);
+            }
+        }
+
+        boolean sortsInTempBTree = tempBTrees.stream().anyMatch(tempBTree -> tempBTree.contains("ORDER BY"));
+        Set<String> suggestedIndexes = new LinkedHashSet<>();
+        for (String table : fullScanTables) {
+            suggest(sqliteRepository, table, indexColumns(sqliteRepository, sql, table, tables, sortsInTempBTree), suggestedIndexes);
+        }
+        for (Map.Entry<String, List<String>> automaticIndex : automaticIndexes.entrySet()) {
+            suggest(sqliteRepository, automaticIndex.getKey(), automaticIndex.getValue(), suggestedIndexes);
+        }
+
+        SqliteSlowQuery report = new SqliteSlowQuery(event.getOperation(), sql, event.getFingerprint(),
+                Collections.unmodifiableMap(parameters), event.getTotalNanos(), event.getRows(), System.currentTimeMillis(),
+                Collections.unmodifiableList(plan), Collections.unmodifiableList(new ArrayList<>(fullScanTables)),
+                Collections.unmodifiableList(tempBTrees), Collections.unmodifiableList(new ArrayList<>(suggestedIndexes)));
+        synchronized (reports) {
+            if (reports.size() == capacity) {
+                reports.removeLast();
+            }
+            reports.addFirst(report);
+        }
+    }
+
+    /**
+     * Newest first
+     *
+     * @return List&lt;SqliteSlowQuery&gt;
+     */
+    List<SqliteSlowQuery> getReports() {
+        synchronized (reports) {
+            return new ArrayList<>(reports);
+        }
+    }
+
+    void clear() {
+        synchronized (reports) {
+            reports.clear();
+        }
+    }
+
+    private static List<String> explain(SqliteRepository sqliteRepository, String sql, SqliteStatementBinder binder) {
+        List<String> plan = new ArrayList<>();
+        try (SqliteConnectionLease lease = sqliteRepository.acquireConnection(false)) {
+            PreparedStatement preparedStatement = lease.prepareStatement("EXPLAIN QUERY PLAN " + sql);
+            if (binder != null) {
+                binder.bindTo(preparedStatement);
+            }
+            try (ResultSet resultSet = preparedStatement.executeQuery()) {
+                while (resultSet.next()) {
+                    plan.add(resultSet.getString(4));
+                }
+            }
+        } catch (SQLException | SqliteDriverNotFoundException | RuntimeException ignored) {
+            // Statements that failed or cannot be explained are still recorded, without a plan
+        }
+        return plan;
+    }
+
+    /**
+     * Equality columns first, then one range column, or the ORDER BY columns when SQLite had to sort
+     */
+    private static List<String> indexColumns(SqliteRepository sqliteRepository, String sql, String table,
+                                             Map<String, String> tables, boolean sortsInTempBTree) {
+        Set<String> tableColumns = columnsOf(sqliteRepository, table);
+        if (tableColumns.isEmpty()) {
+            return Collections.emptyList();
+        }
+        Set<String> equalities = new LinkedHashSet<>();
+        String range = null;
+        Matcher clause = PREDICATE_CLAUSE_PATTERN.matcher(sql);
+        while (clause.find()) {
+            Matcher predicate = PREDICATE_PATTERN.matcher(clause.group(1));
+            while (predicate.find()) {
+                String column = predicate.group(2);
+                String operator = predicate.group(3).toUpperCase(Locale.ROOT);
+                if (!belongsTo(predicate.group(1), column, table, tables, tableColumns)
+                        || operator.equals("<>") || operator.equals("!=")) {
+                    continue;
+                }
+                if (operator.equals("=") || operator.equals("==") || operator.equals("IN")) {
+                    equalities.add(column);
+                } else if (range == null) {
+                    range = column;
+                }
+            }
+        }
+
+        List<String> columns = new ArrayList<>(equalities);
+        if (range != null && !equalities.contains(range)) {
+            columns.add(range);
+        } else if (range == null && sortsInTempBTree) {
+            Matcher orderBy = ORDER_BY_PATTERN.matcher(sql);
+            if (orderBy.find()) {
+                for (String term : orderBy.group(1).split(",")) {
+                    String[] parts = term.trim().split("\\s+")[0].split("\\.");
+                    String column = unquote(parts[parts.length - 1]);
+                    String qualifier = parts.length > 1 ? parts[0] : null;
+                    if (!belongsTo(qualifier, column, table, tables, tableColumns)) {
+                        break;
+                    }
+                    if (!columns.contains(column)) {
+                        columns.add(column);
+                    }
+                }
+            }
+        }
+        return columns;
+    }
+
+    private static void suggest(SqliteRepository sqliteRepository, String table, List<String> columns, Set<String> suggestions) {
+        if (columns.isEmpty()) {
+            return;
+        }
+        try {
+            for (SqliteIndex index : sqliteRepository.getIndexes(table)) {
+                List<String> indexed = index.getColumns();
+                if (indexed.size() >= columns.size() && indexed.subList(0, columns.size()).toString()
+                        .equalsIgnoreCase(columns.toString())) {
+                    return;
+                }
+            }
+        } catch (SQLException | SqliteDriverNotFoundException ignored) {
+            // Suggest it anyway
+        }
+        StringBuilder name = new StringBuilder("idx_").append(table);
+        StringBuilder list = new StringBuilder();
+        for (String column : columns) {
+            name.append('_').append(column);
+            list.append(list.length() == 0 ? "" : ", ").append(SqliteBulkTransfer.quoteIdentifier(column));
+        }
+        suggestions.add("CREATE INDEX " + SqliteBulkTransfer.quoteIdentifier(name.toString().toLowerCase(Locale.ROOT))
+                + " ON " + SqliteBulkTransfer.quoteIdentifier(table) + " (" + list + ")");
+    }
+
+    private static boolean belongsTo(String qualifier, String column, String table, Map<String, String> tables,
+                                     Set<String> tableColumns) {
+        if (!tableColumns.contains(column.toLowerCase(Locale.ROOT))) {
+            return false;
+        }
+        return qualifier == null || table.equalsIgnoreCase(tables.getOrDefault(qualifier.toLowerCase(Locale.ROOT), qualifier));
+    }
+
+    private static Set<String> columnsOf(SqliteRepository sqliteRepository, String table) {
+        Set<String> columns = new HashSet<>();
+        try {
+            for (SqliteColumn column : sqliteRepository.getColumns(table)) {
+                columns.add(column.getName().toLowerCase(Locale.ROOT));
+            }
+        } catch (SQLException | SqliteDriverNotFoundException ignored) {
+            // No columns, no suggestion
+        }
+        return columns;
+    }
+
+    /**
+     * Maps every alias and table name of the statement, lower case, to its table
+     */
+    private static Map<String, String> tablesByAlias(String sql) {
+        Map<String, String> tables = new HashMap<>();
+        Matcher matcher = TABLE_PATTERN.matcher(sql);
+        while (matcher.find()) {
+            String table = unquote(matcher.group(1));
+            tables.put(table.toLowerCase(Locale.ROOT), table);
+            String alias = matcher.group(2);
+            if (alias != null && !KEYWORDS.contains(alias.toLowerCase(Locale.ROOT))) {
+                tables.put(alias.toLowerCase(Locale.ROOT), table);
+            }
+        }
+        return tables;
+    }
+
+    private static String unquote(String identifier) {
+        return identifier.replaceAll("[`\"\\[\\]]", "");
+    }
+}
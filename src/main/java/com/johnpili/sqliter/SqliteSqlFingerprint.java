@@ -0,0 +1,49 @@
+package com.johnpili.sqliter;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Normalizes SQL into a fingerprint so statements that only differ in literal values or whitespace
+ * are reported as one statement
+ *
+ * @author John Pili
+ */
+class SqliteSqlFingerprint {
+    private static final int MAX_CACHED = 4096;
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("(?<![\\w$.])-?\\d+(?:\\.\\d+)?(?:[eE][-+]?\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PLACEHOLDER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+    private static final ConcurrentHashMap<String, String> CACHE = new ConcurrentHashMap<>();
+
+    private SqliteSqlFingerprint() {
+    }
+
+    /**
+     * This method returns the fingerprint of a statement, literals become ? and IN lists of any length collapse to (?+)
+     *
+     * @param sql String
+     * @return String
+     */
+    static String of(String sql) {
+        if (sql == null) {
+            return "";
+        }
+        String fingerprint = CACHE.get(sql);
+        if (fingerprint == null) {
+            fingerprint = normalize(sql);
+            if (CACHE.size() < MAX_CACHED) {
+                CACHE.putIfAbsent(sql, fingerprint);
+            }
+        }
+        return fingerprint;
+    }
+
+    private static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return PLACEHOLDER_LIST.matcher(normalized).replaceAll("(?+)");
+    }
+}
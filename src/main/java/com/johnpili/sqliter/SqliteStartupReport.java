@@ -0,0 +1,121 @@
+package com.johnpili.sqliter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Time spent in each phase of SqliteRepository.initialize
+ *
+ * @author John Pili
+ */
+public class SqliteStartupReport {
+    private final long driverNanos;
+    private final long connectionNanos;
+    private final long pragmaNanos;
+    private final long statementNanos;
+    private final long warmupNanos;
+    private final int connectionCount;
+    private final int statementCount;
+    private final int warmedObjectCount;
+
+    public SqliteStartupReport(long driverNanos, long connectionNanos, long pragmaNanos, long statementNanos, long warmupNanos,
+                               int connectionCount, int statementCount, int warmedObjectCount) {
+        this.driverNanos = driverNanos;
+        this.connectionNanos = connectionNanos;
+        this.pragmaNanos = pragmaNanos;
+        this.statementNanos = statementNanos;
+        this.warmupNanos = warmupNanos;
+        this.connectionCount = connectionCount;
+        this.statementCount = statementCount;
+        this.warmedObjectCount = warmedObjectCount;
+    }
+
+    /**
+     * Loading the JDBC driver, close to zero when it was already loaded
+     *
+     * @return long
+     */
+    public long getDriverNanos() {
+        return driverNanos;
+    }
+
+    /**
+     * Opening the connections, without the pragmas applied to them
+     *
+     * @return long
+     */
+    public long getConnectionNanos() {
+        return connectionNanos;
+    }
+
+    /**
+     * Applying the foreign key pragma and the pragma profile to the new connections
+     *
+     * @return long
+     */
+    public long getPragmaNanos() {
+        return pragmaNanos;
+    }
+
+    /**
+     * Compiling the precompiled statements on every connection
+     *
+     * @return long
+     */
+    public long getStatementNanos() {
+        return statementNanos;
+    }
+
+    /**
+     * Reading the warm tables and their indexes into the page cache
+     *
+     * @return long
+     */
+    public long getWarmupNanos() {
+        return warmupNanos;
+    }
+
+    public long getTotalNanos() {
+        return driverNanos + connectionNanos + pragmaNanos + statementNanos + warmupNanos;
+    }
+
+    /**
+     * Connections primed, the write connection and every read connection in pooled mode
+     *
+     * @return int
+     */
+    public int getConnectionCount() {
+        return connectionCount;
+    }
+
+    /**
+     * Statements compiled, counted once per connection
+     *
+     * @return int
+     */
+    public int getStatementCount() {
+        return statementCount;
+    }
+
+    /**
+     * Tables and indexes read, counted once per connection
+     *
+     * @return int
+     */
+    public int getWarmedObjectCount() {
+        return warmedObjectCount;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteStartupReport{" +
+                "driverMillis=" + TimeUnit.NANOSECONDS.toMillis(driverNanos) +
+                ", connectionMillis=" + TimeUnit.NANOSECONDS.toMillis(connectionNanos) +
+                ", pragmaMillis=" + TimeUnit.NANOSECONDS.toMillis(pragmaNanos) +
+                ", statementMillis=" + TimeUnit.NANOSECONDS.toMillis(statementNanos) +
+                ", warmupMillis=" + TimeUnit.NANOSECONDS.toMillis(warmupNanos) +
+                ", connectionCount=" + connectionCount +
+                ", statementCount=" + statementCount +
+                ", warmedObjectCount=" + warmedObjectCount +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package com.johnpili.sqliter;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/**
+ * Binds the parameters of one call to a prepared statement
+ *
+ * @author John Pili
+ */
+interface SqliteStatementBinder {
+    void bindTo(PreparedStatement preparedStatement) throws SQLException;
+}
@@ -0,0 +1,44 @@
+package com.johnpili.sqliter;
+
+/**
+ * Point in time snapshot of the prepared statement cache counters
+ *
+ * @author John Pili
+ */
+public class SqliteStatementCacheStatistics {
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    public SqliteStatementCacheStatistics(long hitCount, long missCount, long evictionCount) {
+        this.hitCount = hitCount;
+        this.missCount = missCount;
+        this.evictionCount = evictionCount;
+    }
+
+    public long getHitCount() {
+        return hitCount;
+    }
+
+    public long getMissCount() {
+        return missCount;
+    }
+
+    public long getEvictionCount() {
+        return evictionCount;
+    }
+
+    public double getHitRatio() {
+        long total = hitCount + missCount;
+        return total == 0 ? 0 : (double) hitCount / total;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteStatementCacheStatistics{" +
+                "hitCount=" + hitCount +
+                ", missCount=" + missCount +
+                ", evictionCount=" + evictionCount +
+                '}';
+    }
+}
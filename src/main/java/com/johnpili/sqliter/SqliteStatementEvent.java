@@ -0,0 +1,151 @@
+package com.johnpili.sqliter;
+
+/**
+ * Timings of one repository statement. Acquire is the time spent getting a connection, bind the time spent
+ * preparing the statement and setting its parameters, execute the time SQLite spent running it and stepping
+ * through the rows, and assemble the time spent in the object assembler.
+ * Rows is the number of rows returned by a query or affected by a write
+ *
+ * @author John Pili
+ */
+public final class SqliteStatementEvent {
+    private final SqliteOperation operation;
+    private final String sql;
+    private final long startNanos;
+    private long markNanos;
+    private long acquireNanos;
+    private long bindNanos;
+    private long executeNanos;
+    private long assembleNanos;
+    private long totalNanos;
+    private long rows;
+    private Throwable error;
+    private String fingerprint;
+
+    SqliteStatementEvent(SqliteOperation operation, String sql) {
+        this.operation = operation;
+        this.sql = sql;
+        this.startNanos = System.nanoTime();
+        this.markNanos = startNanos;
+    }
+
+    void acquired() {
+        acquireNanos = lap();
+    }
+
+    void bound() {
+        bindNanos = lap();
+    }
+
+    void executed(long rows) {
+        executeNanos += lap();
+        this.rows = rows;
+    }
+
+    /**
+     * Query rows are stepped and assembled in turns, so both phases accumulate
+     */
+    void stepped() {
+        executeNanos += lap();
+    }
+
+    void assembled() {
+        assembleNanos += lap();
+        rows++;
+    }
+
+    void failed(Throwable error) {
+        this.error = error;
+    }
+
+    /**
+     * This method completes the timings and notifies the listener
+     *
+     * @param listener SqliteStatementListener, may be null when only the slow query log is on
+     */
+    void finish(SqliteStatementListener listener) {
+        totalNanos = System.nanoTime() - startNanos;
+        if (listener == null) {
+            return;
+        }
+        try {
+            listener.onStatement(this);
+        } catch (RuntimeException ignored) {
+            // A failing listener must not fail the statement
+        }
+    }
+
+    private long lap() {
+        long now = System.nanoTime();
+        long elapsed = now - markNanos;
+        markNanos = now;
+        return elapsed;
+    }
+
+    public SqliteOperation getOperation() {
+        return operation;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * The SQL with literals replaced by ? and whitespace collapsed, computed on first use
+     *
+     * @return String
+     */
+    public String getFingerprint() {
+        if (fingerprint == null) {
+            fingerprint = SqliteSqlFingerprint.of(sql);
+        }
+        return fingerprint;
+    }
+
+    public long getAcquireNanos() {
+        return acquireNanos;
+    }
+
+    public long getBindNanos() {
+        return bindNanos;
+    }
+
+    public long getExecuteNanos() {
+        return executeNanos;
+    }
+
+    public long getAssembleNanos() {
+        return assembleNanos;
+    }
+
+    public long getTotalNanos() {
+        return totalNanos;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public Throwable getError() {
+        return error;
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteStatementEvent{" +
+                "operation=" + operation +
+                ", fingerprint='" + getFingerprint() + '\'' +
+                ", acquireNanos=" + acquireNanos +
+                ", bindNanos=" + bindNanos +
+                ", executeNanos=" + executeNanos +
+                ", assembleNanos=" + assembleNanos +
+                ", totalNanos=" + totalNanos +
+                ", rows=" + rows +
+                ", error=" + error +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package com.johnpili.sqliter;
+
+/**
+ * Listener notified after every instrumented statement with its timings, row count and error.
+ * It is called on the thread that ran the statement, so implementations must be thread safe and cheap.
+ * Exceptions thrown by the listener are ignored and never fail the repository operation.
+ * When no listener is configured the repository does not take any timings
+ *
+ * @author John Pili
+ */
+public interface SqliteStatementListener {
+    void onStatement(SqliteStatementEvent event);
+}
@@ -0,0 +1,208 @@
+package com.johnpili.sqliter;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Default statement listener that keeps lock-free latency histograms per statement fingerprint.
+ * Use {@link #dump()} for a human readable table or {@link #toPrometheus()} for the Prometheus text format
+ *
+ * @author John Pili
+ */
+public class SqliteStatementMetrics implements SqliteStatementListener {
+    private static final double[] PERCENTILES = {50d, 90d, 99d};
+
+    private final ConcurrentHashMap<String, Statement> statements = new ConcurrentHashMap<>();
+    private final SqliteLatencyHistogram acquireLatency = new SqliteLatencyHistogram();
+
+    @Override
+    public void onStatement(SqliteStatementEvent event) {
+        String fingerprint = event.getFingerprint();
+        Statement statement = statements.get(fingerprint);
+        if (statement == null) {
+            statement = statements.computeIfAbsent(fingerprint, key -> new Statement(key, event.getOperation()));
+        }
+        statement.record(event);
+        acquireLatency.record(event.getAcquireNanos());
+    }
+
+    /**
+     * Live metrics per statement fingerprint
+     *
+     * @return Map&lt;String, Statement&gt;
+     */
+    public Map<String, Statement> getStatements() {
+        return Collections.unmodifiableMap(statements);
+    }
+
+    /**
+     * Time spent getting a connection over all statements
+     *
+     * @return SqliteLatencyHistogram
+     */
+    public SqliteLatencyHistogram getAcquireLatency() {
+        return acquireLatency;
+    }
+
+    /**
+     * This method renders the statements ordered by total time spent, slowest first
+     *
+     * @return String
+     */
+    public String dump() {
+        StringBuilder builder = new StringBuilder();
+        builder.append(String.format("%-10s %10s %8s %12s %12s %12s %12s %12s  %s%n",
+                "operation", "count", "errors", "rows", "p50 us", "p99 us", "max us", "total ms", "statement"));
+        for (Statement statement : sortedStatements()) {
+            SqliteLatencyHistogram total = statement.getTotalLatency();
+            builder.append(String.format("%-10s %10d %8d %12d %12.1f %12.1f %12.1f %12.1f  %s%n",
+                    statement.getOperation(), statement.getCount(), statement.getErrorCount(), statement.getRows(),
+                    total.getPercentileNanos(50) / 1e3, total.getPercentileNanos(99) / 1e3, total.getMaxNanos() / 1e3,
+                    total.getSumNanos() / 1e6, statement.getFingerprint()));
+        }
+        return builder.toString();
+    }
+
+    /**
+     * This method renders the metrics in the Prometheus text exposition format, latencies in seconds
+     *
+     * @return String
+     */
+    public String toPrometheus() {
+        StringBuilder builder = new StringBuilder();
+        builder.append("# TYPE sqliter_statement_seconds summary\n");
+        for (Statement statement : sortedStatements()) {
+            appendSummary(builder, statement, "total", statement.getTotalLatency());
+            appendSummary(builder, statement, "bind", statement.getBindLatency());
+            appendSummary(builder, statement, "execute", statement.getExecuteLatency());
+            appendSummary(builder, statement, "assemble", statement.getAssembleLatency());
+        }
+        builder.append("# TYPE sqliter_statement_rows_total counter\n");
+        for (Statement statement : sortedStatements()) {
+            builder.append("sqliter_statement_rows_total{").append(labels(statement)).append("} ")
+                    .append(statement.getRows()).append('\n');
+        }
+        builder.append("# TYPE sqliter_statement_errors_total counter\n");
+        for (Statement statement : sortedStatements()) {
+            builder.append("sqliter_statement_errors_total{").append(labels(statement)).append("} ")
+                    .append(statement.getErrorCount()).append('\n');
+        }
+        builder.append("# TYPE sqliter_connection_acquire_seconds summary\n");
+        for (double percentile : PERCENTILES) {
+            builder.append("sqliter_connection_acquire_seconds{quantile=\"").append(percentile / 100d).append("\"} ")
+                    .append(seconds(acquireLatency.getPercentileNanos(percentile))).append('\n');
+        }
+        builder.append("sqliter_connection_acquire_seconds_sum ").append(seconds(acquireLatency.getSumNanos())).append('\n');
+        builder.append("sqliter_connection_acquire_seconds_count ").append(acquireLatency.getCount()).append('\n');
+        return builder.toString();
+    }
+
+    /**
+     * Forget all recorded statements
+     */
+    public void reset() {
+        statements.clear();
+    }
+
+    private List<Statement> sortedStatements() {
+        List<Statement> sorted = new ArrayList<>(statements.values());
+        sorted.sort(Comparator.comparingLong((Statement statement) -> statement.getTotalLatency().getSumNanos()).reversed());
+        return sorted;
+    }
+
+    private void appendSummary(StringBuilder builder, Statement statement, String phase, SqliteLatencyHistogram histogram) {
+        String labels = labels(statement) + ",phase=\"" + phase + "\"";
+        for (double percentile : PERCENTILES) {
+            builder.append("sqliter_statement_seconds{").append(labels).append(",quantile=\"").append(percentile / 100d)
+                    .append("\"} ").append(seconds(histogram.getPercentileNanos(percentile))).append('\n');
+        }
+        builder.append("sqliter_statement_seconds_sum{").append(labels).append("} ")
+                .append(seconds(histogram.getSumNanos())).append('\n');
+        builder.append("sqliter_statement_seconds_count{").append(labels).append("} ")
+                .append(histogram.getCount()).append('\n');
+    }
+
+    private String labels(Statement statement) {
+        return "operation=\"" + statement.getOperation().name().toLowerCase(Locale.ROOT) + "\",statement=\""
+                + statement.getFingerprint().replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n") + "\"";
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / (double) TimeUnit.SECONDS.toNanos(1);
+    }
+
+    /**
+     * Live counters and histograms of one statement fingerprint
+     */
+    public static final class Statement {
+        private final String fingerprint;
+        private final SqliteOperation operation;
+        private final LongAdder errorCount = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final SqliteLatencyHistogram bindLatency = new SqliteLatencyHistogram();
+        private final SqliteLatencyHistogram executeLatency = new SqliteLatencyHistogram();
+        private final SqliteLatencyHistogram assembleLatency = new SqliteLatencyHistogram();
+        private final SqliteLatencyHistogram totalLatency = new SqliteLatencyHistogram();
+
+        private Statement(String fingerprint, SqliteOperation operation) {
+            this.fingerprint = fingerprint;
+            this.operation = operation;
+        }
+
+        private void record(SqliteStatementEvent event) {
+            if (!event.isSuccess()) {
+                errorCount.increment();
+            }
+            rows.add(event.getRows());
+            bindLatency.record(event.getBindNanos());
+            executeLatency.record(event.getExecuteNanos());
+            if (event.getOperation() == SqliteOperation.GET_SINGLE || event.getOperation() == SqliteOperation.GET_LIST) {
+                assembleLatency.record(event.getAssembleNanos());
+            }
+            totalLatency.record(event.getTotalNanos());
+        }
+
+        public String getFingerprint() {
+            return fingerprint;
+        }
+
+        public SqliteOperation getOperation() {
+            return operation;
+        }
+
+        public long getCount() {
+            return totalLatency.getCount();
+        }
+
+        public long getErrorCount() {
+            return errorCount.sum();
+        }
+
+        public long getRows() {
+            return rows.sum();
+        }
+
+        public SqliteLatencyHistogram getBindLatency() {
+            return bindLatency;
+        }
+
+        public SqliteLatencyHistogram getExecuteLatency() {
+            return executeLatency;
+        }
+
+        public SqliteLatencyHistogram getAssembleLatency() {
+            return assembleLatency;
+        }
+
+        public SqliteLatencyHistogram getTotalLatency() {
+            return totalLatency;
+        }
+    }
+}
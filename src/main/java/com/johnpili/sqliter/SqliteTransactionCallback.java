@@ -0,0 +1,19 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.SQLException;
+
+public interface SqliteTransactionCallback<T> {
+
+    /**
+     * This method runs inside a transaction. Every call made through the given repository shares one connection
+     * and is committed together when the method returns, or rolled back when it throws
+     *
+     * @param repository SqliteRepositoryInterface bound to the transaction
+     * @return T
+     * @throws SQLException                  SQLException
+     * @throws SqliteDriverNotFoundException SqliteDriverNotFoundException
+     */
+    T execute(SqliteRepositoryInterface repository) throws SQLException, SqliteDriverNotFoundException;
+}
@@ -0,0 +1,35 @@
+package com.johnpili.sqliter;
+
+import org.sqlite.SQLiteConfig;
+
+/**
+ * SQLite transaction begin modes
+ *
+ * @author John Pili
+ */
+public enum SqliteTransactionMode {
+    /**
+     * Locks are acquired on first read or write
+     */
+    DEFERRED(SQLiteConfig.TransactionMode.DEFERRED),
+
+    /**
+     * The write lock is acquired when the transaction begins
+     */
+    IMMEDIATE(SQLiteConfig.TransactionMode.IMMEDIATE),
+
+    /**
+     * The write lock is acquired when the transaction begins and other readers are blocked in rollback journal mode
+     */
+    EXCLUSIVE(SQLiteConfig.TransactionMode.EXCLUSIVE);
+
+    private final SQLiteConfig.TransactionMode driverMode;
+
+    SqliteTransactionMode(SQLiteConfig.TransactionMode driverMode) {
+        this.driverMode = driverMode;
+    }
+
+    SQLiteConfig.TransactionMode getDriverMode() {
+        return driverMode;
+    }
+}
@@ -0,0 +1,10 @@
+package com.johnpili.sqliter;
+
+/**
+ * Progress callback of a bulk import or export, called after every chunk and once at the end
+ *
+ * @author John Pili
+ */
+public interface SqliteTransferListener {
+    void onProgress(SqliteTransferResult progress);
+}
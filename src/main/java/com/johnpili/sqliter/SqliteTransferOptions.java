@@ -0,0 +1,109 @@
+package com.johnpili.sqliter;
+
+import java.util.List;
+
+/**
+ * Options of a bulk import or export
+ *
+ * @author John Pili
+ */
+public class SqliteTransferOptions {
+    private int chunkSize;
+    private boolean relaxedPragmas;
+    private char delimiter;
+    private boolean header;
+    private boolean emptyAsNull;
+    private List<String> columns;
+    private SqliteTransferListener listener;
+
+    public SqliteTransferOptions() {
+        this.chunkSize = 10000;
+        this.relaxedPragmas = false;
+        this.delimiter = ',';
+        this.header = true;
+        this.emptyAsNull = true;
+    }
+
+    public int getChunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Rows per commit on import and rows between progress reports on both import and export
+     *
+     * @param chunkSize int
+     */
+    public void setChunkSize(int chunkSize) {
+        this.chunkSize = chunkSize;
+    }
+
+    public boolean isRelaxedPragmas() {
+        return relaxedPragmas;
+    }
+
+    /**
+     * Turn fsync off (PRAGMA synchronous=OFF) on the write connection while importing and restore it afterwards.
+     * A power failure during the import may corrupt the database, so only use it for loads that can be rerun.
+     * Ignored when the import joins a transaction, because SQLite cannot change synchronous inside one
+     *
+     * @param relaxedPragmas boolean
+     */
+    public void setRelaxedPragmas(boolean relaxedPragmas) {
+        this.relaxedPragmas = relaxedPragmas;
+    }
+
+    public char getDelimiter() {
+        return delimiter;
+    }
+
+    public void setDelimiter(char delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    public boolean isHeader() {
+        return header;
+    }
+
+    /**
+     * CSV input starts with a header of column names, CSV output is written with one
+     *
+     * @param header boolean
+     */
+    public void setHeader(boolean header) {
+        this.header = header;
+    }
+
+    public boolean isEmptyAsNull() {
+        return emptyAsNull;
+    }
+
+    /**
+     * Import unquoted empty CSV fields as NULL. Quoted empty fields stay empty strings
+     *
+     * @param emptyAsNull boolean
+     */
+    public void setEmptyAsNull(boolean emptyAsNull) {
+        this.emptyAsNull = emptyAsNull;
+    }
+
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Target columns of an import. By default they come from the CSV header or the keys of the first JSON object
+     *
+     * @param columns List&lt;String&gt;
+     */
+    public void setColumns(List<String> columns) {
+        this.columns = columns;
+    }
+
+    public SqliteTransferListener getListener() {
+        return listener;
+    }
+
+    public void setListener(SqliteTransferListener listener) {
+        this.listener = listener;
+    }
+}
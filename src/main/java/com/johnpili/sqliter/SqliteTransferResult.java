@@ -0,0 +1,55 @@
+package com.johnpili.sqliter;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rows transferred so far by a bulk import or export and the time it took
+ *
+ * @author John Pili
+ */
+public class SqliteTransferResult {
+    private final long rows;
+    private final long elapsedNanos;
+    private final boolean finished;
+
+    public SqliteTransferResult(long rows, long elapsedNanos, boolean finished) {
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+        this.finished = finished;
+    }
+
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public double getRowsPerSecond() {
+        return elapsedNanos == 0 ? 0 : rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    /**
+     * False for intermediate progress reports
+     *
+     * @return boolean
+     */
+    public boolean isFinished() {
+        return finished;
+    }
+
+    @Override
+    public String toString() {
+        return "SqliteTransferResult{" +
+                "rows=" + rows +
+                ", elapsedMillis=" + getElapsedMillis() +
+                ", rowsPerSecond=" + String.format("%.1f", getRowsPerSecond()) +
+                ", finished=" + finished +
+                '}';
+    }
+}
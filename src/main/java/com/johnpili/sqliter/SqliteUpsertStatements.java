@@ -0,0 +1,84 @@
+package com.johnpili.sqliter;
+
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Generated multi-row INSERT ... ON CONFLICT statements, cached per table, column lists and row count.
+ * A call sends full chunks and at most one shorter tail, so a sync job reuses two statement shapes
+ * and the pooled statement cache keeps both prepared
+ *
+ * @author John Pili
+ */
+class SqliteUpsertStatements {
+    private static final int MAX_ENTRIES = 256;
+
+    private final ConcurrentHashMap<String, String> statements = new ConcurrentHashMap<>();
+
+    String get(String table, List<String> columns, List<String> conflictColumns, List<String> updateColumns, int rowCount) {
+        String key = table + '\u0000' + columns + '\u0000' + conflictColumns + '\u0000' + updateColumns + '\u0000' + rowCount;
+        String sql = statements.get(key);
+        if (sql == null) {
+            if (statements.size() >= MAX_ENTRIES) {
+                statements.clear();
+            }
+            sql = build(table, columns, conflictColumns, updateColumns, rowCount);
+            statements.putIfAbsent(key, sql);
+        }
+        return sql;
+    }
+
+    /**
+     * This method returns how many rows fit in one statement without exceeding the bind variable limit
+     *
+     * @param columnCount      int
+     * @param maxBindVariables int
+     * @return int
+     */
+    static int rowsPerStatement(int columnCount, int maxBindVariables) {
+        return Math.max(1, maxBindVariables / columnCount);
+    }
+
+    static String build(String table, List<String> columns, List<String> conflictColumns, List<String> updateColumns, int rowCount) {
+        StringBuilder sql = new StringBuilder("INSERT INTO ").append(SqliteBulkTransfer.quoteIdentifier(table)).append(" (");
+        appendIdentifiers(sql, columns);
+        sql.append(") VALUES ");
+
+        StringBuilder row = new StringBuilder("(");
+        for (int i = 0; i < columns.size(); i++) {
+            row.append(i > 0 ? ", ?" : "?");
+        }
+        row.append(')');
+        for (int i = 0; i < rowCount; i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+
+        sql.append(" ON CONFLICT (");
+        appendIdentifiers(sql, conflictColumns);
+        sql.append(')');
+        if (updateColumns.isEmpty()) {
+            return sql.append(" DO NOTHING").toString();
+        }
+        sql.append(" DO UPDATE SET ");
+        for (int i = 0; i < updateColumns.size(); i++) {
+            String column = SqliteBulkTransfer.quoteIdentifier(updateColumns.get(i));
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(column).append(" = excluded.").append(column);
+        }
+        return sql.toString();
+    }
+
+    private static void appendIdentifiers(StringBuilder sql, List<String> identifiers) {
+        for (int i = 0; i < identifiers.size(); i++) {
+            if (i > 0) {
+                sql.append(", ");
+            }
+            sql.append(SqliteBulkTransfer.quoteIdentifier(identifiers.get(i)));
+        }
+    }
+}
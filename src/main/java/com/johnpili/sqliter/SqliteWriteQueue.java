@@ -0,0 +1,166 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
+
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single writer thread that drains queued writes and commits them in groups. Each write runs inside its
+ * own savepoint so a failing statement only fails its own future, and futures complete after the group commits
+ *
+ * @author John Pili
+ */
+class SqliteWriteQueue implements AutoCloseable {
+    private final SqliteRepository sqliteRepository;
+    private final SqliteConfig sqliteConfig;
+    private final BlockingQueue<PendingWrite> queue;
+    private final Thread writerThread;
+    private volatile boolean running = true;
+
+    SqliteWriteQueue(SqliteRepository sqliteRepository, SqliteConfig sqliteConfig) {
+        this.sqliteRepository = sqliteRepository;
+        this.sqliteConfig = sqliteConfig;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, sqliteConfig.getAsyncWriteQueueCapacity()));
+        this.writerThread = new Thread(this::drain, "sqliter-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    /**
+     * This method queues a write. Callers block for at most the connection timeout while the queue is full
+     *
+     * @param sql        String
+     * @param parameters Map&lt;Integer, Object&gt;
+     * @param insert     boolean, complete with the generated ID instead of the affected rows
+     * @return CompletableFuture&lt;Integer&gt;
+     */
+    CompletableFuture<Integer> submit(String sql, Map<Integer, Object> parameters, boolean insert) {
+        PendingWrite pendingWrite = new PendingWrite(sql, parameters, insert);
+        if (!running) {
+            pendingWrite.future.completeExceptionally(new SQLException("Write queue is closed"));
+            return pendingWrite.future;
+        }
+        try {
+            if (!queue.offer(pendingWrite, sqliteConfig.getConnectionTimeoutMillis(), TimeUnit.MILLISECONDS)) {
+                pendingWrite.future.completeExceptionally(new SQLTimeoutException("Timed out waiting for space in the write queue"));
+            } else if (!running && queue.remove(pendingWrite)) {
+                // close() raced with this offer and the writer thread may already have drained the queue and exited
+                pendingWrite.future.completeExceptionally(new SQLException("Write queue is closed"));
+            }
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+            pendingWrite.future.completeExceptionally(interruptedException);
+        }
+        return pendingWrite.future;
+    }
+
+    /**
+     * Stops accepting writes, commits everything already queued and waits for the writer thread
+     */
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writerThread.join();
+        } catch (InterruptedException interruptedException) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void drain() {
+        int maxBatchSize = Math.max(1, sqliteConfig.getAsyncWriteMaxBatchSize());
+        long maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(sqliteConfig.getAsyncWriteMaxDelayMillis());
+        List<PendingWrite> group = new ArrayList<>(maxBatchSize);
+
+        while (running || !queue.isEmpty()) {
+            try {
+                PendingWrite first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                group.add(first);
+                queue.drainTo(group, maxBatchSize - group.size());
+
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (group.size() < maxBatchSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingWrite next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    group.add(next);
+                    queue.drainTo(group, maxBatchSize - group.size());
+                }
+                commitGroup(group);
+            } catch (InterruptedException interruptedException) {
+                running = false;
+            } finally {
+                for (PendingWrite pendingWrite : group) {
+                    pendingWrite.future.completeExceptionally(new SQLException("Write queue stopped before the write was committed"));
+                }
+                group.clear();
+            }
+        }
+    }
+
+    private void commitGroup(List<PendingWrite> group) {
+        try {
+            sqliteRepository.runInTransaction(SqliteTransactionMode.IMMEDIATE, repository -> {
+                for (PendingWrite pendingWrite : group) {
+                    // A retried group starts over, outcomes of the rolled back attempt do not count
+                    pendingWrite.result = null;
+                    pendingWrite.failure = null;
+                }
+                for (PendingWrite pendingWrite : group) {
+                    try {
+                        pendingWrite.result = repository.runInTransaction(savepoint -> pendingWrite.insert
+                                ? savepoint.insert(pendingWrite.sql, pendingWrite.parameters)
+                                : savepoint.update(pendingWrite.sql, pendingWrite.parameters));
+                    } catch (SQLException | RuntimeException exception) {
+                        pendingWrite.failure = exception;
+                    }
+                }
+                return null;
+            });
+        } catch (SQLException | SqliteDriverNotFoundException | RuntimeException exception) {
+            for (PendingWrite pendingWrite : group) {
+                pendingWrite.future.completeExceptionally(exception);
+            }
+            return;
+        }
+
+        for (PendingWrite pendingWrite : group) {
+            if (pendingWrite.failure != null) {
+                pendingWrite.future.completeExceptionally(pendingWrite.failure);
+            } else {
+                pendingWrite.future.complete(pendingWrite.result);
+            }
+        }
+    }
+
+    private static final class PendingWrite {
+        private final String sql;
+        private final Map<Integer, Object> parameters;
+        private final boolean insert;
+        private final CompletableFuture<Integer> future = new CompletableFuture<>();
+        private Integer result;
+        private Exception failure;
+
+        private PendingWrite(String sql, Map<Integer, Object> parameters, boolean insert) {
+            this.sql = sql;
+            this.parameters = parameters;
+            this.insert = insert;
+        }
+    }
+}
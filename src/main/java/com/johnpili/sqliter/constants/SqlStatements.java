@@ -6,4 +6,12 @@ public abstract class SqlStatements {
     public static final String GET_TABLES = "SELECT name FROM sqlite_schema WHERE type = 'table' ORDER BY name";
 
     public static final String GET_TABLE_BY_NAME = "SELECT name FROM sqlite_schema WHERE type = 'table' AND name = ?";
+
+    public static final String SCHEMA_VERSION = "PRAGMA schema_version";
+
+    public static final String GET_COLUMNS = "SELECT name, type, \"notnull\", dflt_value, pk FROM pragma_table_info(?) ORDER BY cid";
+
+    public static final String GET_INDEXES = "SELECT name, \"unique\", origin, partial FROM pragma_index_list(?) ORDER BY name";
+
+    public static final String GET_INDEX_COLUMNS = "SELECT name FROM pragma_index_info(?) ORDER BY seqno";
 }
@@ -0,0 +1,17 @@
+package com.johnpili.sqliter.exceptions;
+
+import java.sql.SQLException;
+
+/**
+ * Carries a SQLException out of a lazily consumed java.util.stream.Stream
+ */
+public class SqliteStreamException extends RuntimeException {
+    public SqliteStreamException(SQLException cause) {
+        super(cause);
+    }
+
+    @Override
+    public synchronized SQLException getCause() {
+        return (SQLException) super.getCause();
+    }
+}
@@ -0,0 +1,474 @@
+package com.johnpili.sqliter;
+
+import com.johnpili.sqliter.constants.TestSqlStatements;
+import org.junit.jupiter.api.*;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Set;
+
+public class TestSqliteConnectionPool {
+    private SqliteRepository sqliteRepository;
+    private static final String testDbFilename = "test_pool.db";
+
+    @BeforeEach
+    void setUp() {
+        try {
+            SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+            sqliteConfig.setPooled(true);
+            sqliteConfig.setMaxReadConnections(2);
+            sqliteConfig.setConnectionTimeoutMillis(2000);
+            sqliteConfig.setPragmaProfile(SqlitePragmaProfile.balanced());
+
+            sqliteRepository = new SqliteRepository(sqliteConfig);
+            this.sqliteRepository.createTable(TestSqlStatements.CREATE_TEST_TABLE);
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @AfterEach
+    void tearDown() {
+        sqliteRepository.close();
+    }
+
+    @Test
+    public void testPooledReadsAndWrites() {
+        try {
+            Map<Integer, Object> parameters = new HashMap<>();
+            parameters.put(1, "Pooled Movie");
+            int newId = this.sqliteRepository.insert(TestSqlStatements.INSERT_MOVIE, parameters);
+
+            parameters = new HashMap<>();
+            parameters.put(1, newId);
+            Movie movie = this.sqliteRepository.getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance());
+            Assertions.assertNotNull(movie);
+            Assertions.assertEquals("Pooled Movie", movie.getTitle());
+            Assertions.assertTrue(this.sqliteRepository.tableExists("movie"));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testConcurrentReadersAreBounded() {
+        ExecutorService executorService = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<List<Movie>>> futures = new ArrayList<>();
+            for (int i = 0; i < 32; i++) {
+                futures.add(executorService.submit(() ->
+                        this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance())));
+            }
+            for (Future<List<Movie>> future : futures) {
+                Assertions.assertEquals(10, future.get().size());
+            }
+
+            SqlitePoolStatistics statistics = this.sqliteRepository.getPoolStatistics();
+            Assertions.assertNotNull(statistics);
+            Assertions.assertTrue(statistics.getOpenReadConnections() <= 2);
+            Assertions.assertTrue(statistics.getAcquireCount() >= 32);
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        } finally {
+            executorService.shutdown();
+        }
+    }
+
+    @Test
+    public void testStatementCacheReuseAndSchemaEviction() {
+        try {
+            for (int i = 1; i <= 5; i++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, i);
+                Movie movie = this.sqliteRepository.getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance());
+                Assertions.assertEquals(i, movie.getId());
+            }
+            SqliteStatementCacheStatistics statistics = this.sqliteRepository.getStatementCacheStatistics();
+            Assertions.assertTrue(statistics.getHitCount() >= 4);
+
+            this.sqliteRepository.createTable(TestSqlStatements.CREATE_TEST_TABLE);
+            long evictions = this.sqliteRepository.getStatementCacheStatistics().getEvictionCount();
+            Assertions.assertEquals(10, this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            Assertions.assertTrue(this.sqliteRepository.getStatementCacheStatistics().getEvictionCount() > evictions);
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testPooledTransactionSharesWriter() {
+        try {
+            long[] newIds = this.sqliteRepository.runInTransaction(repository -> {
+                List<Map<Integer, Object>> parameterSets = new ArrayList<>();
+                for (int i = 0; i < 3; i++) {
+                    Map<Integer, Object> parameters = new HashMap<>();
+                    parameters.put(1, "Pooled Transaction " + i);
+                    parameterSets.add(parameters);
+                }
+                return repository.insertBatch(TestSqlStatements.INSERT_MOVIE, parameterSets);
+            });
+            Assertions.assertEquals(3, newIds.length);
+            Assertions.assertEquals(13, this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testClosedStreamsReleaseConnections() {
+        try {
+            for (int i = 0; i < 5; i++) {
+                try (Stream<Movie> movies = this.sqliteRepository.stream(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance())) {
+                    Assertions.assertEquals(2, movies.limit(2).count());
+                }
+            }
+            Assertions.assertEquals(0, this.sqliteRepository.getPoolStatistics().getTimeoutCount());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testAsyncWritesAreGroupCommitted() {
+        try {
+            List<CompletableFuture<Integer>> futures = new ArrayList<>();
+            for (int i = 0; i < 200; i++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, "Async Movie " + i);
+                futures.add(this.sqliteRepository.insertAsync(TestSqlStatements.INSERT_MOVIE, parameters));
+            }
+            Map<Integer, Object> parameters = new HashMap<>();
+            parameters.put(1, "not a number");
+            parameters.put(2, "too many parameters");
+            CompletableFuture<Integer> failing = this.sqliteRepository.updateAsync(TestSqlStatements.DELETE_MOVIE, parameters);
+
+            Set<Integer> newIds = new HashSet<>();
+            for (CompletableFuture<Integer> future : futures) {
+                newIds.add(future.get());
+            }
+            Assertions.assertEquals(200, newIds.size());
+            Assertions.assertThrows(Exception.class, failing::get);
+            Assertions.assertEquals(210, this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testAsyncRepository() {
+        try (AsyncSqliteRepository asyncRepository = new AsyncSqliteRepository(this.sqliteRepository)) {
+            List<CompletableFuture<Movie>> reads = new ArrayList<>();
+            for (int id = 1; id <= 10; id++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, id);
+                reads.add(asyncRepository.getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance()));
+            }
+            Map<Integer, Object> parameters = new HashMap<>();
+            parameters.put(1, "Async Movie");
+            int newId = asyncRepository.insert(TestSqlStatements.INSERT_MOVIE, parameters).get();
+
+            for (CompletableFuture<Movie> read : reads) {
+                Assertions.assertNotNull(read.get());
+            }
+            Assertions.assertTrue(newId > 10);
+            Assertions.assertEquals(11, asyncRepository.<Movie>getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).get().size());
+
+            int typedId = asyncRepository.insertTyped(TestSqlStatements.INSERT_MOVIE, SqliteParameters.of("Typed Async Movie")).get();
+            Assertions.assertEquals("Typed Async Movie", asyncRepository.<Movie>getSingleTyped(TestSqlStatements.GET_MOVIE_BY_ID,
+                    SqliteParameters.of(typedId), MovieAssembler.getInstance()).get().getTitle());
+            Assertions.assertEquals(12, asyncRepository.update("UPDATE movie SET title = title", null).get());
+            Assertions.assertTrue(asyncRepository.columnExists("movie", "title").get());
+
+            SqliteKeysetPager<Movie> pager = asyncRepository.paginate("SELECT id, title FROM movie", null, "id", 5,
+                    MovieAssembler.getInstance(), null);
+            int paged = 0;
+            for (List<Movie> page = asyncRepository.nextPage(pager).get(); !page.isEmpty(); page = asyncRepository.nextPage(pager).get()) {
+                paged += page.size();
+            }
+            Assertions.assertEquals(12, paged);
+            Assertions.assertEquals(0, asyncRepository.getRejectedCount());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testAsyncBackpressure() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setAsyncMaxPending(2);
+        List<Runnable> parked = new ArrayList<>();
+        try (SqliteRepository repository = new SqliteRepository(sqliteConfig);
+             AsyncSqliteRepository asyncRepository = new AsyncSqliteRepository(repository, parked::add)) {
+            CompletableFuture<Boolean> first = asyncRepository.tableExists("movie");
+            CompletableFuture<Boolean> second = asyncRepository.tableExists("movie");
+            CompletableFuture<Boolean> rejected = asyncRepository.tableExists("movie");
+
+            Assertions.assertTrue(rejected.isCompletedExceptionally());
+            Assertions.assertEquals(1, asyncRepository.getRejectedCount());
+            Assertions.assertEquals(2, asyncRepository.getPendingCount());
+
+            parked.forEach(Runnable::run);
+            Assertions.assertTrue(first.get());
+            Assertions.assertTrue(second.get());
+            Assertions.assertEquals(0, asyncRepository.getPendingCount());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testPragmaProfileIsApplied() {
+        try {
+            Map<String, String> pragmas = this.sqliteRepository.getEffectivePragmas();
+            Assertions.assertEquals("wal", pragmas.get("journal_mode"));
+            Assertions.assertEquals("1", pragmas.get("synchronous"));
+            Assertions.assertEquals("-16000", pragmas.get("cache_size"));
+            Assertions.assertEquals("5000", pragmas.get("busy_timeout"));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testOnlineBackupAndRestore() {
+        String backupFilename = "test_pool_backup.db";
+        String snapshotFilename = "test_pool_snapshot.db";
+        try {
+            List<SqliteBackupResult> progress = new ArrayList<>();
+            SqliteBackupOptions options = new SqliteBackupOptions();
+            options.setPagesPerStep(1);
+            options.setMaxBytesPerSecond(1024 * 1024);
+            options.setListener(progress::add);
+            SqliteBackupResult result = this.sqliteRepository.backup(backupFilename, options);
+            Assertions.assertTrue(result.isFinished());
+            Assertions.assertEquals(result.getPageCount(), progress.size() - 1);
+            Assertions.assertEquals(0, result.getRemainingPages());
+            Assertions.assertTrue(result.getBytesCopied() > 0);
+
+            this.sqliteRepository.deleteTyped("DELETE FROM movie", new SqliteParameters());
+            Assertions.assertEquals(0, this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            this.sqliteRepository.restore(backupFilename);
+            Assertions.assertEquals(10, this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+
+            this.sqliteRepository.snapshot(snapshotFilename);
+            try (SqliteRepository snapshot = new SqliteRepository(snapshotFilename)) {
+                Assertions.assertEquals(10, snapshot.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            }
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        } finally {
+            new File(backupFilename).delete();
+            new File(backupFilename + "-wal").delete();
+            new File(backupFilename + "-shm").delete();
+            new File(snapshotFilename).delete();
+        }
+    }
+
+    @Test
+    public void testHotTierFlush() {
+        String hotDbFilename = "test_hot.db";
+        try (SqliteRepository fileRepository = new SqliteRepository(hotDbFilename)) {
+            fileRepository.createTable(TestSqlStatements.CREATE_TEST_TABLE);
+
+            List<SqliteBackupResult> flushes = new ArrayList<>();
+            SqliteConfig sqliteConfig = new SqliteConfig(hotDbFilename);
+            sqliteConfig.setHotTier(true);
+            sqliteConfig.setHotTierFlushIntervalMillis(0);
+            sqliteConfig.setHotTierFlushListener(flushes::add);
+            try (SqliteRepository hotRepository = new SqliteRepository(sqliteConfig)) {
+                Assertions.assertEquals(10, hotRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+                hotRepository.insertTyped(TestSqlStatements.INSERT_MOVIE, SqliteParameters.of("Hot Movie 1"));
+                Assertions.assertEquals(10, fileRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+
+                SqliteBackupResult flush = hotRepository.flush();
+                Assertions.assertTrue(flush.getBytesCopied() > 0);
+                Assertions.assertSame(flush, hotRepository.getLastFlush());
+                Assertions.assertEquals(11, fileRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+                // Written past the repository, the flush on close still has to notice it
+                try (Connection connection = hotRepository.getConnection();
+                     PreparedStatement preparedStatement = connection.prepareStatement(TestSqlStatements.INSERT_MOVIE)) {
+                    preparedStatement.setString(1, "Hot Movie 2");
+                    preparedStatement.executeUpdate();
+                }
+            }
+            Assertions.assertEquals(12, fileRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            Assertions.assertEquals(2, flushes.size());
+
+            try (SqliteRepository hotRepository = new SqliteRepository(sqliteConfig)) {
+                // The read runs on another thread while the transaction holds uncommitted rows it then rolls back
+                List<CompletableFuture<Integer>> reads = new ArrayList<>();
+                Assertions.assertThrows(SQLException.class, () -> hotRepository.runInTransaction(repository -> {
+                    repository.insertTyped(TestSqlStatements.INSERT_MOVIE, SqliteParameters.of("Hot Movie 3"));
+                    reads.add(CompletableFuture.supplyAsync(() -> {
+                        try {
+                            return hotRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size();
+                        } catch (Exception exception) {
+                            throw new IllegalStateException(exception);
+                        }
+                    }));
+                    LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(30));
+                    throw new SQLException("Rolled back");
+                }));
+                Assertions.assertEquals(12, reads.get(0).get(5, TimeUnit.SECONDS));
+                Assertions.assertTrue(hotRepository.getPoolStatistics().getOpenReadConnections() > 0);
+            }
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        } finally {
+            new File(hotDbFilename).delete();
+        }
+    }
+
+    @Test
+    public void testUnpooledHasNoStatistics() {
+        try (SqliteRepository unpooled = new SqliteRepository(testDbFilename)) {
+            Assertions.assertNull(unpooled.getPoolStatistics());
+        }
+    }
+
+    @Test
+    public void testInitialize() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setPooled(true);
+        sqliteConfig.setMaxReadConnections(2);
+        sqliteConfig.setPragmaProfile(SqlitePragmaProfile.balanced());
+        sqliteConfig.setPrecompiledStatements(List.of(TestSqlStatements.GET_MOVIE_BY_ID, TestSqlStatements.INSERT_MOVIE));
+        sqliteConfig.setWarmTables(List.of("movie"));
+        try {
+            this.sqliteRepository.createTable("CREATE INDEX idx_movie_title ON movie (title)");
+            try (SqliteRepository initializedRepository = new SqliteRepository(sqliteConfig)) {
+                SqliteStartupReport report = initializedRepository.initialize();
+                Assertions.assertEquals(3, report.getConnectionCount());
+                Assertions.assertEquals(6, report.getStatementCount());
+                Assertions.assertEquals(6, report.getWarmedObjectCount());
+                Assertions.assertTrue(report.getPragmaNanos() > 0);
+                Assertions.assertEquals(report.getDriverNanos() + report.getConnectionNanos() + report.getPragmaNanos()
+                        + report.getStatementNanos() + report.getWarmupNanos(), report.getTotalNanos());
+                Assertions.assertEquals(2, initializedRepository.getPoolStatistics().getOpenReadConnections());
+
+                long misses = initializedRepository.getStatementCacheStatistics().getMissCount();
+                Movie movie = initializedRepository.getSingleTyped(TestSqlStatements.GET_MOVIE_BY_ID, SqliteParameters.of(1), MovieAssembler.getInstance());
+                Assertions.assertEquals("Movie 1", movie.getTitle());
+                Assertions.assertEquals(misses, initializedRepository.getStatementCacheStatistics().getMissCount());
+            }
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testStatementCacheEvictionKeepsLeasedStatements() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setPooled(true);
+        sqliteConfig.setStatementCacheSize(2);
+        try (SqliteRepository smallCacheRepository = new SqliteRepository(sqliteConfig)) {
+            List<String> titles = smallCacheRepository.runInTransaction(transaction -> {
+                List<String> collected = new ArrayList<>();
+                try (Stream<Movie> movies = transaction.stream(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance())) {
+                    transaction.getSingle("SELECT count(*) FROM movie", resultSet -> resultSet.getInt(1));
+                    transaction.getSingle("SELECT max(id) FROM movie", resultSet -> resultSet.getInt(1));
+                    transaction.getSingle("SELECT min(id) FROM movie", resultSet -> resultSet.getInt(1));
+                    movies.forEach(movie -> collected.add(movie.getTitle()));
+                }
+                return collected;
+            });
+            Assertions.assertEquals(10, titles.size());
+            Assertions.assertTrue(smallCacheRepository.getStatementCacheStatistics().getEvictionCount() > 0);
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+        sqliteConfig.setStatementCacheSize(1);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> new SqliteRepository(sqliteConfig));
+    }
+
+    @Test
+    public void testNestedQueryInsideStream() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setPooled(true);
+        sqliteConfig.setMaxReadConnections(0);
+        try (SqliteRepository writerOnlyRepository = new SqliteRepository(sqliteConfig)) {
+            List<Integer> nestedSizes = new ArrayList<>();
+            try (Stream<Movie> movies = writerOnlyRepository.stream(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance())) {
+                movies.forEach(movie -> {
+                    try {
+                        if (nestedSizes.isEmpty()) {
+                            writerOnlyRepository.createTable("CREATE TABLE IF NOT EXISTS nested_stream (id INTEGER PRIMARY KEY)");
+                        }
+                        nestedSizes.add(writerOnlyRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+                    } catch (Exception exception) {
+                        throw new IllegalStateException(exception);
+                    }
+                });
+            }
+            Assertions.assertEquals(10, nestedSizes.size());
+            Assertions.assertTrue(nestedSizes.stream().allMatch(size -> size == 10));
+            writerOnlyRepository.dropTable("DROP TABLE nested_stream");
+
+            int streamed = writerOnlyRepository.runInTransaction(transaction -> {
+                int count = 0;
+                try (Stream<Movie> movies = transaction.stream(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance())) {
+                    for (Movie movie : (Iterable<Movie>) movies::iterator) {
+                        Assertions.assertEquals(10, transaction.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+                        count++;
+                    }
+                }
+                return count;
+            });
+            Assertions.assertEquals(10, streamed);
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testCloseDoesNotWaitForeverOnWriter() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setPooled(true);
+        sqliteConfig.setConnectionTimeoutMillis(200);
+        ExecutorService executorService = Executors.newSingleThreadExecutor();
+        try {
+            SqliteRepository closingRepository = new SqliteRepository(sqliteConfig);
+            CountDownLatch started = new CountDownLatch(1);
+            Future<Integer> transaction = executorService.submit(() -> closingRepository.runInTransaction(handle -> {
+                started.countDown();
+                LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(1500));
+                return handle.getSingle("SELECT count(*) FROM movie", resultSet -> resultSet.getInt(1));
+            }));
+            Assertions.assertTrue(started.await(5, TimeUnit.SECONDS));
+            long start = System.nanoTime();
+            closingRepository.close();
+            Assertions.assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1000);
+            ExecutionException executionException = Assertions.assertThrows(ExecutionException.class, transaction::get);
+            Assertions.assertTrue(executionException.getCause() instanceof SQLException);
+            Assertions.assertThrows(SQLException.class, () -> closingRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    @AfterAll
+    static void afterAll() {
+        File file = new File(testDbFilename);
+        file.delete();
+        new File(testDbFilename + "-wal").delete();
+        new File(testDbFilename + "-shm").delete();
+    }
+}
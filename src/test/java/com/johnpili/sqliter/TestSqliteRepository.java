@@ -4,11 +4,25 @@ import com.johnpili.sqliter.constants.TestSqlStatements;
 import com.johnpili.sqliter.exceptions.SqliteDriverNotFoundException;
 import org.junit.jupiter.api.*;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.sql.Connection;
+import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class TestSqliteRepository {
     private SqliteRepository sqliteRepository;
@@ -114,6 +128,511 @@ public class TestSqliteRepository {
         }
     }
 
+    @Test
+    public void testInsertBatch() {
+        try {
+            List<Map<Integer, Object>> parameterSets = new ArrayList<>();
+            for (int i = 0; i < 25; i++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, "Batch Movie " + i);
+                parameterSets.add(parameters);
+            }
+            long[] newIds = this.sqliteRepository.insertBatch(TestSqlStatements.INSERT_MOVIE, parameterSets);
+            Assertions.assertEquals(25, newIds.length);
+            for (int i = 0; i < newIds.length; i++) {
+                Assertions.assertEquals("Batch Movie " + i, getMovie(newIds[i]).getTitle());
+            }
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testInsertBatchChunking() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setBatchSize(10);
+        try (SqliteRepository batchRepository = new SqliteRepository(sqliteConfig)) {
+            batchRepository.createTable("DROP TABLE IF EXISTS batch_item; CREATE TABLE batch_item (id INTEGER PRIMARY KEY, code TEXT UNIQUE)");
+            int inserted = 0;
+            for (int size : new int[]{9, 10, 11, 20, 21}) {
+                List<Map<Integer, Object>> parameterSets = new ArrayList<>();
+                for (int i = 0; i < size; i++) {
+                    Map<Integer, Object> parameters = new HashMap<>();
+                    parameters.put(1, "item-" + size + "-" + i);
+                    parameterSets.add(parameters);
+                }
+                long[] newIds = batchRepository.insertBatch("INSERT INTO batch_item(code) VALUES(?)", parameterSets);
+                Assertions.assertEquals(size, newIds.length);
+                for (int i = 0; i < size; i++) {
+                    Assertions.assertEquals("item-" + size + "-" + i, batchRepository.getSingleTyped(
+                            "SELECT code FROM batch_item WHERE id = ?", SqliteParameters.of(newIds[i]), resultSet -> resultSet.getString(1)));
+                }
+                inserted += size;
+            }
+
+            List<Map<Integer, Object>> parameterSets = new ArrayList<>();
+            for (String code : new String[]{"item-9-0", "fresh-0", "item-20-19", "fresh-1"}) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, code);
+                parameterSets.add(parameters);
+            }
+            long[] newIds = batchRepository.insertBatch("INSERT OR IGNORE INTO batch_item(code) VALUES(?)", parameterSets);
+            Assertions.assertEquals(-1, newIds[0]);
+            Assertions.assertEquals(-1, newIds[2]);
+            Assertions.assertEquals(inserted + 1, newIds[1]);
+            Assertions.assertEquals(inserted + 2, newIds[3]);
+            Assertions.assertEquals("fresh-1", batchRepository.getSingleTyped("SELECT code FROM batch_item WHERE id = ?",
+                    SqliteParameters.of(newIds[3]), resultSet -> resultSet.getString(1)));
+            batchRepository.dropTable("DROP TABLE batch_item");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testUpdateAndDeleteBatch() {
+        try {
+            List<Map<Integer, Object>> parameterSets = new ArrayList<>();
+            for (int i = 1; i <= 3; i++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, "Batch Updated " + i);
+                parameters.put(2, i);
+                parameterSets.add(parameters);
+            }
+            int[] affectedRows = this.sqliteRepository.updateBatch(TestSqlStatements.UPDATE_MOVIE, parameterSets);
+            Assertions.assertArrayEquals(new int[]{1, 1, 1}, affectedRows);
+            Assertions.assertEquals("Batch Updated 2", getMovie(2).getTitle());
+
+            parameterSets = new ArrayList<>();
+            for (int id : new int[]{1, 2, 1000}) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, id);
+                parameterSets.add(parameters);
+            }
+            affectedRows = this.sqliteRepository.deleteBatch(TestSqlStatements.DELETE_MOVIE, parameterSets);
+            Assertions.assertArrayEquals(new int[]{1, 1, 0}, affectedRows);
+            Assertions.assertNull(getMovie(1));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testRunInTransaction() {
+        try {
+            int newId = this.sqliteRepository.runInTransaction(SqliteTransactionMode.IMMEDIATE, repository -> {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, "Transaction Movie");
+                int id = repository.insert(TestSqlStatements.INSERT_MOVIE, parameters);
+
+                parameters = new HashMap<>();
+                parameters.put(1, "Transaction Movie Updated");
+                parameters.put(2, id);
+                repository.update(TestSqlStatements.UPDATE_MOVIE, parameters);
+                return id;
+            });
+            Assertions.assertEquals("Transaction Movie Updated", getMovie(newId).getTitle());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testRunInTransactionRollback() {
+        try {
+            Assertions.assertThrows(SQLException.class, () -> this.sqliteRepository.runInTransaction(repository -> {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, 1);
+                repository.delete(TestSqlStatements.DELETE_MOVIE, parameters);
+                throw new SQLException("Abort transaction");
+            }));
+            Assertions.assertNotNull(getMovie(1));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testNestedTransactionUsesSavepoint() {
+        try {
+            this.sqliteRepository.runInTransaction(repository -> {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, 1);
+                repository.delete(TestSqlStatements.DELETE_MOVIE, parameters);
+                try {
+                    repository.runInTransaction(nested -> {
+                        Map<Integer, Object> nestedParameters = new HashMap<>();
+                        nestedParameters.put(1, 2);
+                        nested.delete(TestSqlStatements.DELETE_MOVIE, nestedParameters);
+                        throw new SQLException("Abort savepoint");
+                    });
+                } catch (SQLException expected) {
+                    // only the savepoint is rolled back
+                }
+                return null;
+            });
+            Assertions.assertNull(getMovie(1));
+            Assertions.assertNotNull(getMovie(2));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testStream() {
+        try (Stream<Movie> movies = this.sqliteRepository.stream(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance())) {
+            List<String> titles = movies.filter(movie -> movie.getId() > 5).map(Movie::getTitle).collect(Collectors.toList());
+            Assertions.assertEquals(5, titles.size());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testForEach() {
+        try {
+            List<Movie> movies = new ArrayList<>();
+            long count = this.sqliteRepository.forEach(TestSqlStatements.GET_ALL_MOVIES, null, MovieAssembler.getInstance(), movies::add);
+            Assertions.assertEquals(10, count);
+            Assertions.assertEquals(10, movies.size());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testMappedAssembler() {
+        try {
+            SqliteObjectAssembler<Movie> assembler = SqliteAssemblers.forClass(Movie.class);
+            List<Movie> movies = this.sqliteRepository.getList(TestSqlStatements.GET_ALL_MOVIES, assembler);
+            Assertions.assertEquals(10, movies.size());
+            Assertions.assertEquals("Movie 1", movies.get(0).getTitle());
+            Assertions.assertEquals(1, movies.get(0).getId());
+
+            Movie renamed = this.sqliteRepository.getSingle("SELECT title AS TITLE, id AS _id_ FROM movie WHERE id = 3", assembler);
+            Assertions.assertEquals(3, renamed.getId());
+            Assertions.assertEquals("Movie 3", renamed.getTitle());
+
+            // The driver hands out the same ResultSet object for every query of a Statement
+            try (Connection connection = this.sqliteRepository.getConnection();
+                 Statement statement = connection.createStatement()) {
+                ResultSet first = statement.executeQuery("SELECT id, title FROM movie WHERE id = 4");
+                first.next();
+                Assertions.assertEquals("Movie 4", assembler.assemble(first).getTitle());
+                ResultSet second = statement.executeQuery("SELECT title, id FROM movie WHERE id = 5");
+                second.next();
+                Movie reordered = assembler.assemble(second);
+                Assertions.assertEquals("Movie 5", reordered.getTitle());
+                Assertions.assertEquals(5, reordered.getId());
+            }
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testResultCacheInvalidation() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setResultCacheSize(16);
+        try (SqliteRepository cachedRepository = new SqliteRepository(sqliteConfig)) {
+            Map<Integer, Object> parameters = new HashMap<>();
+            parameters.put(1, 4);
+            Assertions.assertEquals("Movie 4", cachedRepository.<Movie>getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance()).getTitle());
+            Assertions.assertEquals("Movie 4", cachedRepository.<Movie>getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance()).getTitle());
+            Assertions.assertEquals(1, cachedRepository.getResultCacheStatistics().getHitCount());
+
+            Map<Integer, Object> updateParameters = new HashMap<>();
+            updateParameters.put(1, "Movie 4 Updated");
+            updateParameters.put(2, 4);
+            cachedRepository.update(TestSqlStatements.UPDATE_MOVIE, updateParameters);
+            Assertions.assertEquals("Movie 4 Updated", cachedRepository.<Movie>getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance()).getTitle());
+            Assertions.assertEquals(1, cachedRepository.getResultCacheStatistics().getInvalidationCount());
+
+            Assertions.assertEquals(10, cachedRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            Map<Integer, Object> insertParameters = new HashMap<>();
+            insertParameters.put(1, "Cached Movie");
+            cachedRepository.runInTransaction(repository -> repository.insert(TestSqlStatements.INSERT_MOVIE, insertParameters));
+            Assertions.assertEquals(11, cachedRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testResultCacheTableResolution() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setResultCacheSize(16);
+        try (SqliteRepository cachedRepository = new SqliteRepository(sqliteConfig)) {
+            cachedRepository.createTable("DROP TABLE IF EXISTS award; CREATE TABLE award (movie_id INTEGER); "
+                    + "DROP VIEW IF EXISTS awarded_movie; CREATE VIEW awarded_movie AS SELECT m.* FROM movie m JOIN award a ON a.movie_id = m.id");
+            SqliteObjectAssembler<Integer> countAssembler = resultSet -> resultSet.getInt(1);
+            String commaJoin = "SELECT count(*) FROM movie m, award a WHERE a.movie_id = m.id";
+            String view = "SELECT count(*) FROM awarded_movie";
+            String commonTableExpression = "WITH awarded AS (SELECT movie_id FROM award) SELECT count(*) FROM awarded";
+            Assertions.assertEquals(Set.of("movie", "award"), SqliteResultCache.tablesOf(commaJoin));
+
+            for (String sql : List.of(commaJoin, view, commonTableExpression)) {
+                Assertions.assertEquals(0, cachedRepository.<Integer>getSingle(sql, countAssembler));
+                Assertions.assertEquals(0, cachedRepository.<Integer>getSingle(sql, countAssembler));
+            }
+            Assertions.assertEquals(3, cachedRepository.getResultCacheStatistics().getHitCount());
+
+            cachedRepository.insert("INSERT INTO award (movie_id) VALUES (4)", new HashMap<>());
+            for (String sql : List.of(commaJoin, view, commonTableExpression)) {
+                Assertions.assertEquals(1, cachedRepository.<Integer>getSingle(sql, countAssembler));
+            }
+            cachedRepository.dropTable("DROP VIEW awarded_movie; DROP TABLE award");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testTypedParameters() {
+        try {
+            SqliteParameters parameters = new SqliteParameters().bindString(1, "Typed Movie");
+            int newId = this.sqliteRepository.insertTyped(TestSqlStatements.INSERT_MOVIE, parameters);
+
+            parameters.clear().bindLong(1, newId);
+            Movie movie = this.sqliteRepository.getSingleTyped(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance());
+            Assertions.assertEquals("Typed Movie", movie.getTitle());
+
+            Assertions.assertEquals(1, this.sqliteRepository.updateTyped(TestSqlStatements.UPDATE_MOVIE, SqliteParameters.of("Typed Movie 2", newId)));
+            Assertions.assertEquals(1, this.sqliteRepository.<Movie>getListTyped("SELECT * FROM movie WHERE title = ?",
+                    SqliteParameters.of("Typed Movie 2"), MovieAssembler.getInstance()).size());
+            Assertions.assertEquals(1, this.sqliteRepository.deleteTyped(TestSqlStatements.DELETE_MOVIE, new SqliteParameters().bindInt(1, newId)));
+            Assertions.assertEquals(SqliteParameters.of(1L, "a", 2.5d, null), new SqliteParameters().bindInt(1, 1).bindString(2, "a").bindDouble(3, 2.5d).bindNull(4));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testBulkImportExport() {
+        try {
+            SqliteBulkTransfer bulkTransfer = new SqliteBulkTransfer(this.sqliteRepository);
+            this.sqliteRepository.createTable("DROP TABLE IF EXISTS movie_copy; CREATE TABLE movie_copy (id integer PRIMARY KEY, title TEXT)");
+            Map<Integer, Object> parameters = new HashMap<>();
+            parameters.put(1, "Quoted, \"multi\"\nline");
+            this.sqliteRepository.insert(TestSqlStatements.INSERT_MOVIE, parameters);
+
+            List<SqliteTransferResult> progress = new ArrayList<>();
+            SqliteTransferOptions options = new SqliteTransferOptions();
+            options.setChunkSize(4);
+            options.setRelaxedPragmas(true);
+            options.setListener(progress::add);
+
+            ByteArrayOutputStream csv = new ByteArrayOutputStream();
+            Assertions.assertEquals(11, bulkTransfer.exportCsv("SELECT id, title FROM movie", null, csv, options).getRows());
+            SqliteTransferResult imported = bulkTransfer.importCsv(new ByteArrayInputStream(csv.toByteArray()), "movie_copy", options);
+            Assertions.assertEquals(11, imported.getRows());
+            Assertions.assertTrue(imported.isFinished());
+            Assertions.assertEquals(6, progress.size());
+            Assertions.assertEquals(this.sqliteRepository.<Movie>getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).stream().map(Movie::getTitle).collect(Collectors.toList()),
+                    this.sqliteRepository.<Movie>getList("SELECT * FROM movie_copy ORDER BY title", MovieAssembler.getInstance()).stream().map(Movie::getTitle).collect(Collectors.toList()));
+
+            ByteArrayOutputStream ndjson = new ByteArrayOutputStream();
+            bulkTransfer.exportNdjson("SELECT id + 100 AS id, title FROM movie", null, ndjson, new SqliteTransferOptions());
+            Assertions.assertEquals(11, bulkTransfer.importNdjson(new ByteArrayInputStream(ndjson.toByteArray()), "movie_copy", new SqliteTransferOptions()).getRows());
+            Assertions.assertEquals(22, this.sqliteRepository.getList("SELECT * FROM movie_copy", MovieAssembler.getInstance()).size());
+
+            byte[] moreRows = "id,title\n200,Joined Movie\n".getBytes();
+            Assertions.assertEquals(1L, this.sqliteRepository.<Long>runInTransaction(repository -> {
+                try {
+                    return new SqliteBulkTransfer((SqliteRepository) repository).importCsv(new ByteArrayInputStream(moreRows), "movie_copy", options).getRows();
+                } catch (IOException ioException) {
+                    throw new SQLException(ioException);
+                }
+            }));
+            Assertions.assertEquals(23, this.sqliteRepository.getList("SELECT * FROM movie_copy", MovieAssembler.getInstance()).size());
+            Assertions.assertEquals("2",this.sqliteRepository.getEffectivePragmas().get("synchronous"));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        try {
+            SqliteKeysetPager<Movie> pager = this.sqliteRepository.paginate("SELECT id, title FROM movie WHERE id > ?",
+                    SqliteParameters.of(0), "id", 3, MovieAssembler.getInstance(), null);
+            List<Integer> pageSizes = new ArrayList<>();
+            String cursor = null;
+            while (pager.hasNext()) {
+                pageSizes.add(pager.next().size());
+                if (pageSizes.size() == 2) {
+                    cursor = pager.getCursor();
+                }
+            }
+            Assertions.assertEquals(List.of(3, 3, 3, 1), pageSizes);
+
+            SqliteKeysetPager<Movie> resumed = this.sqliteRepository.paginate("SELECT id, title FROM movie WHERE id > ?",
+                    SqliteParameters.of(0), "id", 3, MovieAssembler.getInstance(), cursor);
+            Assertions.assertEquals(7, resumed.next().get(0).getId());
+            Assertions.assertEquals(1, resumed.next().size());
+            Assertions.assertFalse(resumed.hasNext());
+
+            for (int i = 0; i < 4; i++) {
+                this.sqliteRepository.insert("INSERT INTO movie (title) VALUES (NULL)", null);
+            }
+            SqliteKeysetPager<Movie> byTitle = this.sqliteRepository.paginate("SELECT id, title FROM movie", null, "title", 3,
+                    MovieAssembler.getInstance(), null);
+            int titled = 0;
+            while (byTitle.hasNext()) {
+                titled += byTitle.next().size();
+            }
+            Assertions.assertEquals(10, titled);
+
+            for (String notFlattenable : new String[]{"SELECT DISTINCT id, title FROM movie", "SELECT id, count(*) FROM movie GROUP BY id",
+                    "SELECT max(id) AS id FROM movie", "SELECT id, row_number() OVER (ORDER BY title) AS n FROM movie",
+                    "SELECT id, title FROM movie UNION ALL SELECT id, title FROM movie", "SELECT id, title FROM movie ORDER BY title"}) {
+                Assertions.assertThrows(IllegalArgumentException.class, () -> this.sqliteRepository.paginate(notFlattenable, null, "id", 3,
+                        MovieAssembler.getInstance(), null), notFlattenable);
+            }
+            SqliteKeysetPager<Movie> scalar = this.sqliteRepository.paginate(
+                    "SELECT id, max(title, 'union') AS title FROM movie WHERE id IN (SELECT count(*) FROM movie GROUP BY title)",
+                    null, "id", 3, MovieAssembler.getInstance(), null);
+            Assertions.assertTrue(scalar.hasNext());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testUpsert() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setMaxBindVariables(6);
+        try (SqliteRepository upsertRepository = new SqliteRepository(sqliteConfig)) {
+            List<Object[]> rows = new ArrayList<>();
+            for (int id = 1; id <= 5; id++) {
+                rows.add(new Object[]{id, "Synced " + id});
+            }
+            for (int id = 11; id <= 15; id++) {
+                rows.add(new Object[]{id, "Synced " + id});
+            }
+            Assertions.assertEquals(10, upsertRepository.upsert("movie", List.of("id", "title"), List.of("id"), rows));
+            Assertions.assertEquals(15, upsertRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            Assertions.assertEquals("Synced 1", getMovie(1).getTitle());
+            Assertions.assertEquals("Movie 6", getMovie(6).getTitle());
+
+            List<Object[]> ignored = new ArrayList<>();
+            ignored.add(new Object[]{2, "Ignored"});
+            ignored.add(new Object[]{16, "Synced 16"});
+            Assertions.assertEquals(1, upsertRepository.upsert("movie", List.of("id", "title"), List.of("id"), List.of(), ignored));
+            Assertions.assertEquals("Synced 2", getMovie(2).getTitle());
+            Assertions.assertEquals("Synced 16", getMovie(16).getTitle());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testShardedRepository() {
+        SqliteStatementMetrics metrics = new SqliteStatementMetrics();
+        List<SqliteConfig> shardConfigs = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            SqliteConfig shardConfig = new SqliteConfig("test_shard_" + i + ".db");
+            shardConfig.setStatementListener(metrics);
+            shardConfigs.add(shardConfig);
+        }
+        try (ShardedSqliteRepository shardedRepository = new ShardedSqliteRepository(shardConfigs, new SqliteHashShardStrategy())) {
+            shardedRepository.createTable("DROP TABLE IF EXISTS movie; CREATE TABLE movie (id integer NOT NULL PRIMARY KEY, title TEXT)");
+            int[] routed = new int[3];
+            for (long id = 1; id <= 30; id++) {
+                Assertions.assertEquals(shardedRepository.shardIndexFor(id), shardedRepository.shardIndexFor((int) id));
+                routed[shardedRepository.shardIndexFor(id)]++;
+                shardedRepository.shardFor(id).insertTyped("INSERT INTO movie(id, title) VALUES(?, ?)", SqliteParameters.of(id, "Movie " + id));
+            }
+            for (int i = 0; i < 3; i++) {
+                Assertions.assertTrue(routed[i] > 0);
+                Assertions.assertEquals(routed[i], shardedRepository.getShard(i).getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            }
+
+            Assertions.assertEquals(30, shardedRepository.getList("SELECT id, title FROM movie", MovieAssembler.getInstance()).size());
+            List<Movie> latest = shardedRepository.getListTyped("SELECT id, title FROM movie WHERE id > ? ORDER BY id DESC LIMIT 5",
+                    SqliteParameters.of(0), MovieAssembler.getInstance());
+            Assertions.assertEquals(List.of(30L, 29L, 28L, 27L, 26L), latest.stream().map(Movie::getId).collect(Collectors.toList()));
+            Assertions.assertEquals(3, metrics.getStatements().get("SELECT id, title FROM movie WHERE id > ? ORDER BY id DESC LIMIT ?").getCount());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> shardedRepository.getList(
+                    "SELECT id, title FROM movie ORDER BY id LIMIT 5 OFFSET 5", MovieAssembler.getInstance()));
+            Assertions.assertEquals(4, shardedRepository.getList("SELECT id, title FROM movie LIMIT 4", MovieAssembler.getInstance()).size());
+            Assertions.assertEquals(6, shardedRepository.getList("SELECT id, title FROM movie WHERE id IN (SELECT id FROM movie LIMIT 2)",
+                    MovieAssembler.getInstance()).size());
+            Assertions.assertThrows(IllegalArgumentException.class, () -> shardedRepository.getList(
+                    "SELECT id, title FROM movie LIMIT 4 OFFSET 2", MovieAssembler.getInstance()));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> shardedRepository.getList(
+                    "SELECT id, title FROM movie LIMIT 2, 4", MovieAssembler.getInstance()));
+            Assertions.assertEquals(30, shardedRepository.deleteAll("DELETE FROM movie", new SqliteParameters()));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        } finally {
+            for (int i = 0; i < 3; i++) {
+                new File("test_shard_" + i + ".db").delete();
+            }
+        }
+
+        SqliteRangeShardStrategy<Long> rangeStrategy = new SqliteRangeShardStrategy<>(List.of(10L, 20L));
+        Assertions.assertEquals(0, rangeStrategy.shardFor(9L, 3));
+        Assertions.assertEquals(1, rangeStrategy.shardFor(10L, 3));
+        Assertions.assertEquals(2, rangeStrategy.shardFor(25L, 3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> rangeStrategy.checkShardCount(2));
+    }
+
+    @Test
+    public void testShardMergeOrderMatchesSqlite() {
+        try {
+            this.sqliteRepository.createTable("DROP TABLE IF EXISTS sort_value; CREATE TABLE sort_value (v)");
+            Object[] values = {null, 1L, 1.5, 9007199254740992.0, 9007199254740993L, 9007199254740994.0, -9007199254740993L,
+                    -9007199254740992.0, "_", "B", "a", "\u00c9", "\u00e9", "\ufffd", "\ud83d\ude00", new byte[]{1}, new byte[]{(byte) 0x80}};
+            for (Object value : values) {
+                this.sqliteRepository.insertTyped("INSERT INTO sort_value(v) VALUES(?)", SqliteParameters.of(value));
+            }
+            for (String collation : new String[]{"BINARY", "NOCASE"}) {
+                String sql = "SELECT v FROM sort_value ORDER BY v COLLATE " + collation;
+                SqliteOrderBy orderBy = SqliteOrderBy.parse(sql);
+                List<Object> sorted = this.sqliteRepository.getList(sql, resultSet -> resultSet.getObject(1));
+                Assertions.assertEquals(values.length, sorted.size());
+                for (int i = 1; i < sorted.size(); i++) {
+                    Assertions.assertTrue(orderBy.compare(new Object[]{sorted.get(i - 1)}, new Object[]{sorted.get(i)}) < 0,
+                            collation + " orders " + sorted.get(i - 1) + " before " + sorted.get(i));
+                }
+            }
+            Assertions.assertThrows(IllegalArgumentException.class, () -> SqliteOrderBy.parse("SELECT v FROM sort_value ORDER BY v COLLATE custom"));
+            this.sqliteRepository.dropTable("DROP TABLE sort_value");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testStatementMetrics() {
+        SqliteStatementMetrics metrics = new SqliteStatementMetrics();
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setStatementListener(metrics);
+        try (SqliteRepository instrumentedRepository = new SqliteRepository(sqliteConfig)) {
+            Assertions.assertEquals(10, instrumentedRepository.getList(TestSqlStatements.GET_ALL_MOVIES, MovieAssembler.getInstance()).size());
+            for (int id = 1; id <= 3; id++) {
+                Map<Integer, Object> parameters = new HashMap<>();
+                parameters.put(1, id);
+                Assertions.assertNotNull(instrumentedRepository.getSingle(TestSqlStatements.GET_MOVIE_BY_ID, parameters, MovieAssembler.getInstance()));
+            }
+            Assertions.assertThrows(Exception.class, () -> instrumentedRepository.updateTyped("UPDATE missing_table SET title = 'x' WHERE id = 42", new SqliteParameters()));
+
+            SqliteStatementMetrics.Statement list = metrics.getStatements().get(TestSqlStatements.GET_ALL_MOVIES);
+            Assertions.assertEquals(1, list.getCount());
+            Assertions.assertEquals(10, list.getRows());
+            Assertions.assertEquals(3, metrics.getStatements().get(TestSqlStatements.GET_MOVIE_BY_ID).getCount());
+
+            SqliteStatementMetrics.Statement failed = metrics.getStatements().get("UPDATE missing_table SET title = ? WHERE id = ?");
+            Assertions.assertEquals(SqliteOperation.UPDATE, failed.getOperation());
+            Assertions.assertEquals(1, failed.getErrorCount());
+            Assertions.assertEquals(5, metrics.getAcquireLatency().getCount());
+            Assertions.assertTrue(metrics.toPrometheus().contains("sqliter_statement_seconds_count{operation=\"get_single\""));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
     @Test
     public void testGetTables() {
         try {
@@ -134,6 +653,214 @@ public class TestSqliteRepository {
         }
     }
 
+    @Test
+    public void testSchemaMetadataCache() {
+        try {
+            List<SqliteColumn> columns = this.sqliteRepository.getColumns("movie");
+            Assertions.assertEquals(2, columns.size());
+            Assertions.assertTrue(columns.get(0).isPrimaryKey());
+            Assertions.assertEquals("TEXT", columns.get(1).getType());
+            Assertions.assertFalse(this.sqliteRepository.columnExists("movie", "year"));
+            Assertions.assertTrue(this.sqliteRepository.getIndexes("movie").isEmpty());
+
+            this.sqliteRepository.alterTable("ALTER TABLE movie ADD COLUMN year INTEGER");
+            this.sqliteRepository.createTable("CREATE UNIQUE INDEX movie_title ON movie(title)");
+            Assertions.assertTrue(this.sqliteRepository.columnExists("movie", "YEAR"));
+            List<SqliteIndex> indexes = this.sqliteRepository.getIndexes("movie");
+            Assertions.assertEquals(1, indexes.size());
+            Assertions.assertTrue(indexes.get(0).isUnique());
+            Assertions.assertEquals(List.of("title"), indexes.get(0).getColumns());
+
+            // A change made by another connection is caught through PRAGMA schema_version
+            SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+            sqliteConfig.setSchemaRevalidateMillis(0);
+            try (SqliteRepository cachedRepository = new SqliteRepository(sqliteConfig)) {
+                Assertions.assertFalse(cachedRepository.tableExists("director"));
+                this.sqliteRepository.createTable("CREATE TABLE director (id INTEGER PRIMARY KEY, name TEXT)");
+                Assertions.assertTrue(cachedRepository.tableExists("director"));
+                Assertions.assertEquals(2, cachedRepository.getColumns("director").size());
+            }
+            this.sqliteRepository.dropTable("DROP TABLE director");
+            Assertions.assertFalse(this.sqliteRepository.tableExists("director"));
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testSlowQueryLog() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setSlowQueryThresholdMillis(1);
+        try (SqliteRepository loggedRepository = new SqliteRepository(sqliteConfig)) {
+            loggedRepository.createTable("DROP TABLE IF EXISTS event_log; CREATE TABLE event_log AS "
+                    + "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < 200000) "
+                    + "SELECT x AS id, x % 100 AS kind, 'payload ' || x AS payload FROM c");
+            List<Long> ids = loggedRepository.getListTyped("SELECT e.id, e.payload FROM event_log e WHERE e.kind = ? ORDER BY e.payload",
+                    SqliteParameters.of(7), resultSet -> resultSet.getLong(1));
+            Assertions.assertEquals(2000, ids.size());
+
+            SqliteSlowQuery slowQuery = loggedRepository.getSlowQueries().get(0);
+            Assertions.assertEquals(SqliteOperation.GET_LIST, slowQuery.getOperation());
+            Assertions.assertEquals(7L, slowQuery.getParameters().get(1));
+            Assertions.assertEquals(List.of("event_log"), slowQuery.getFullScanTables());
+            Assertions.assertTrue(slowQuery.isTempBTreeForOrderBy());
+            Assertions.assertEquals(List.of("CREATE INDEX \"idx_event_log_kind_payload\" ON \"event_log\" (\"kind\", \"payload\")"),
+                    slowQuery.getSuggestedIndexes());
+
+            loggedRepository.clearSlowQueries();
+            Assertions.assertTrue(loggedRepository.getSlowQueries().isEmpty());
+            loggedRepository.dropTable("DROP TABLE event_log");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testColumnBatch() {
+        try {
+            this.sqliteRepository.createTable("DROP TABLE IF EXISTS reading; CREATE TABLE reading AS "
+                    + "WITH RECURSIVE c(x) AS (SELECT 1 UNION ALL SELECT x + 1 FROM c WHERE x < 100) "
+                    + "SELECT x AS id, x % 7 AS bucket, CASE WHEN x % 10 = 0 THEN NULL ELSE x * 0.5 END AS value, "
+                    + "'sensor ' || (x % 3) AS sensor FROM c");
+            String sql = "SELECT id, bucket, value, sensor FROM reading WHERE id > ? ORDER BY id";
+            SqliteColumnBatch batch = new SqliteColumnBatch(4, SqliteColumnType.LONG, SqliteColumnType.INT,
+                    SqliteColumnType.DOUBLE, SqliteColumnType.STRING);
+            Assertions.assertSame(batch, this.sqliteRepository.getColumnBatch(sql, SqliteParameters.of(0), batch));
+            Assertions.assertEquals(100, batch.size());
+            Assertions.assertEquals(2, batch.getColumnIndex("value"));
+            Assertions.assertEquals(100L, batch.getLongs(0)[99]);
+            Assertions.assertEquals(5, batch.getInts(1)[11]);
+            Assertions.assertEquals(4.5, batch.getDoubles(2)[8]);
+            Assertions.assertTrue(batch.isNull(2, 9));
+            Assertions.assertFalse(batch.isNull(2, 8));
+            Assertions.assertEquals(List.of("sensor 1", "sensor 2", "sensor 0"), batch.getDictionary(3));
+            Assertions.assertEquals(2, batch.getCodes(3)[2]);
+            Assertions.assertEquals("sensor 0", batch.getString(3, 2));
+            Assertions.assertThrows(IllegalArgumentException.class, () -> batch.getLongs(1));
+
+            List<Integer> sizes = new ArrayList<>();
+            long[] sum = new long[1];
+            long count = this.sqliteRepository.forEachColumnBatch(sql, SqliteParameters.of(50), batch, 16, chunk -> {
+                sizes.add(chunk.size());
+                for (int row = 0; row < chunk.size(); row++) {
+                    sum[0] += chunk.getLongs(0)[row];
+                }
+            });
+            Assertions.assertEquals(50, count);
+            Assertions.assertEquals(List.of(16, 16, 16, 2), sizes);
+            Assertions.assertEquals(3775L, sum[0]);
+
+            SqliteColumnBatch mismatched = new SqliteColumnBatch(SqliteColumnType.LONG);
+            Assertions.assertThrows(SQLException.class, () -> this.sqliteRepository.getColumnBatch(sql, SqliteParameters.of(0), mismatched));
+            this.sqliteRepository.dropTable("DROP TABLE reading");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testBlobStreaming() {
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setBlobChunkSize(1000);
+        try (SqliteRepository blobRepository = new SqliteRepository(sqliteConfig)) {
+            blobRepository.createTable("DROP TABLE IF EXISTS document; CREATE TABLE document (id INTEGER PRIMARY KEY, content BLOB)");
+            byte[] content = new byte[4500];
+            new Random(42).nextBytes(content);
+            content[0] = 0;
+            blobRepository.insertTyped("INSERT INTO document(id, content) VALUES(?, ?)", SqliteParameters.of(1, content));
+            try (InputStream inputStream = blobRepository.openBlob("document", "content", 1)) {
+                Assertions.assertArrayEquals(content, inputStream.readAllBytes());
+            }
+
+            new Random(7).nextBytes(content);
+            Assertions.assertEquals(4500, blobRepository.writeBlob("document", "content", 1, new ByteArrayInputStream(content), content.length));
+            Assertions.assertEquals(4500, (int) blobRepository.getSingle("SELECT length(content) FROM document WHERE id = 1",
+                    resultSet -> resultSet.getInt(1)));
+            Assertions.assertEquals("blob", blobRepository.getSingle("SELECT typeof(content) FROM document WHERE id = 1",
+                    resultSet -> resultSet.getString(1)));
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+            Assertions.assertEquals(4500, blobRepository.readBlob("document", "content", 1, outputStream));
+            Assertions.assertArrayEquals(content, outputStream.toByteArray());
+            try (InputStream inputStream = blobRepository.openBlob("document", "content", 1)) {
+                Assertions.assertArrayEquals(content, inputStream.readAllBytes());
+            }
+
+            InputStream failing = new SequenceInputStream(new ByteArrayInputStream(new byte[2500]), new InputStream() {
+                @Override
+                public int read() throws IOException {
+                    throw new IOException("Upload aborted");
+                }
+            });
+            Assertions.assertThrows(IOException.class, () -> blobRepository.writeBlob("document", "content", 1, failing, 4500));
+            Assertions.assertThrows(SQLException.class, () -> blobRepository.writeBlob("document", "content", 1,
+                    new ByteArrayInputStream(content, 0, 4000), content.length));
+            Assertions.assertThrows(SQLException.class, () -> blobRepository.writeBlob("document", "content", 1,
+                    new ByteArrayInputStream(content), content.length - 1));
+            outputStream.reset();
+            blobRepository.readBlob("document", "content", 1, outputStream);
+            Assertions.assertArrayEquals(content, outputStream.toByteArray());
+
+            blobRepository.updateTyped("UPDATE document SET content = NULL WHERE id = 1", SqliteParameters.of());
+            Assertions.assertEquals(-1, blobRepository.readBlob("document", "content", 1, new ByteArrayOutputStream()));
+            Assertions.assertThrows(SQLException.class, () -> blobRepository.writeBlob("document", "content", 2, new ByteArrayInputStream(content), content.length));
+            Assertions.assertEquals(0, (int) blobRepository.getSingle("SELECT count(*) FROM sqlite_master WHERE name LIKE 'document%' AND name <> 'document'",
+                    resultSet -> resultSet.getInt(1)));
+            blobRepository.dropTable("DROP TABLE document");
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    @Test
+    public void testBusyRetry() {
+        SqliteRetryPolicy retryPolicy = new SqliteRetryPolicy();
+        retryPolicy.setMaxAttempts(100);
+        retryPolicy.setInitialBackoffMillis(2);
+        retryPolicy.setMaxBackoffMillis(10);
+        SqliteConfig sqliteConfig = new SqliteConfig(testDbFilename);
+        sqliteConfig.setBusyTimeoutMillis(0);
+        sqliteConfig.setRetryPolicy(retryPolicy);
+        try (SqliteRepository retryingRepository = new SqliteRepository(sqliteConfig);
+             Connection lockHolder = retryingRepository.getConnection()) {
+            lockHolder.createStatement().execute("BEGIN EXCLUSIVE");
+            CompletableFuture<Void> release = CompletableFuture.runAsync(() -> {
+                try {
+                    Thread.sleep(100);
+                    lockHolder.createStatement().execute("COMMIT");
+                } catch (Exception exception) {
+                    throw new IllegalStateException(exception);
+                }
+            });
+            int[] attempts = new int[1];
+            int updated = retryingRepository.runInTransaction(transaction -> {
+                attempts[0]++;
+                return transaction.updateTyped("UPDATE movie SET title = ? WHERE id = ?", SqliteParameters.of("Retried", 1));
+            });
+            release.join();
+            Assertions.assertEquals(1, updated);
+            Assertions.assertTrue(attempts[0] > 1);
+            Assertions.assertEquals("Retried", getMovie(1).getTitle());
+            SqliteRetryStatistics statistics = retryingRepository.getRetryStatistics();
+            Assertions.assertEquals(attempts[0] - 1, statistics.getRetryCount());
+            Assertions.assertEquals(1, statistics.getRecoveredCount());
+            Assertions.assertEquals(0, statistics.getGiveUpCount());
+
+            retryPolicy.setMaxAttempts(3);
+            lockHolder.createStatement().execute("BEGIN EXCLUSIVE");
+            SQLException busy = Assertions.assertThrows(SQLException.class, () -> getMovieFrom(retryingRepository));
+            lockHolder.createStatement().execute("COMMIT");
+            Assertions.assertTrue(SqliteRetryPolicy.isBusy(busy));
+            Assertions.assertEquals(1, retryingRepository.getRetryStatistics().getGiveUpCount());
+            Assertions.assertEquals("Retried", getMovieFrom(retryingRepository).getTitle());
+        } catch (Exception exception) {
+            Assertions.fail(exception);
+        }
+    }
+
+    private Movie getMovieFrom(SqliteRepository repository) throws SQLException, SqliteDriverNotFoundException {
+        return repository.getSingleTyped(TestSqlStatements.GET_MOVIE_BY_ID, SqliteParameters.of(1), MovieAssembler.getInstance());
+    }
+
     @AfterAll
     static void afterAll() {
         File file = new File(testDbFilename);